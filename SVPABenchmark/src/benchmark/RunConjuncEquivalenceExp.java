@@ -22,7 +22,8 @@ import automata.safa.booleanexpression.PositiveBooleanExpression;
 import automata.sfa.SFA;
 import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
-import utilities.Timers;
+import utilities.AutomataMetrics;
+import utilities.AutomataMetrics.Timer;
 
 public class RunConjuncEquivalenceExp {
 	static FileReader inFile;
@@ -380,13 +381,13 @@ public class RunConjuncEquivalenceExp {
 
 			
 			SAFA<CharPred, Character> tempSAFA = tempTriple.getLeft();
-			Timers.setTimeout(Long.MAX_VALUE);
+			AutomataMetrics.global().reset();
 			
 			SAFA.checkEquivalenceOfTwoConfigurations(tempSAFA, tempTriple.getMiddle(), tempSAFA.getInitialState(),
 					solver, SAFA.getBooleanExpressionFactory(), timeOut - fullTimeSAFAIntersect);
-			fullTimeSAFA = Timers.getFull() + fullTimeSAFAIntersect;
-			solverTimeSAFA = Timers.getSolver() + solverTimeSAFAIntersect;
-			subTimeSAFA = Timers.getSubsumption() + subTimeSAFAIntersect;
+			fullTimeSAFA = AutomataMetrics.global().getMillis(Timer.FULL) + fullTimeSAFAIntersect;
+			solverTimeSAFA = AutomataMetrics.global().getMillis(Timer.SOLVER) + solverTimeSAFAIntersect;
+			subTimeSAFA = AutomataMetrics.global().getMillis(Timer.SUBSUMPTION) + subTimeSAFAIntersect;
 
 		} catch (Exception e) {
 			fullTimeSAFA = timeOut;
@@ -18,7 +18,8 @@ import automata.safa.SAFA;
 import automata.sfa.SFA;
 import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
-import utilities.Timers;
+import utilities.AutomataMetrics;
+import utilities.AutomataMetrics.Timer;
 
 /**
  * This class runs the intersection and run emptiness check on SFAs and SAFAs
@@ -293,12 +294,12 @@ public class RunIntersectionExp {
 		}
 		if (safaList.size() == 2) {
 			try {
-				Timers.setTimeout(Long.MAX_VALUE);
+				AutomataMetrics.global().reset();
 				result = safaList.get(0).intersectionWith(safaList.get(1), solver);
 				if (!SAFA.isEmpty(result, solver, timeOut)) {
-					fullTimeSAFA = Timers.getFull();
-					solverTimeSAFA = Timers.getSolver();
-					subTimeSAFA = Timers.getSubsumption();
+					fullTimeSAFA = AutomataMetrics.global().getMillis(Timer.FULL);
+					solverTimeSAFA = AutomataMetrics.global().getMillis(Timer.SOLVER);
+					subTimeSAFA = AutomataMetrics.global().getMillis(Timer.SUBSUMPTION);
 					returnNull = false;
 				} else {
 					returnNull = true;
@@ -321,15 +322,15 @@ public class RunIntersectionExp {
 
 		} else { // size >2
 			try {
-				Timers.setTimeout(Long.MAX_VALUE);
+				AutomataMetrics.global().reset();
 				result = safaList.get(0).intersectionWith(safaList.get(1), solver);
 				for (int i = 2; i < safaList.size(); i++) {
 					result = result.intersectionWith(safaList.get(i), solver);
 				}
 				if (!SAFA.isEmpty(result, solver, timeOut)) {
-					fullTimeSAFA = Timers.getFull();
-					solverTimeSAFA = Timers.getSolver();
-					subTimeSAFA = Timers.getSubsumption();
+					fullTimeSAFA = AutomataMetrics.global().getMillis(Timer.FULL);
+					solverTimeSAFA = AutomataMetrics.global().getMillis(Timer.SOLVER);
+					subTimeSAFA = AutomataMetrics.global().getMillis(Timer.SUBSUMPTION);
 					returnNull = false;
 				} else {
 					returnNull = true;
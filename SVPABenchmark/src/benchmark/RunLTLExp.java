@@ -22,7 +22,8 @@ import logic.ltl.LTLFormula;
 import theory.bdd.BDD;
 import theory.bddalgebra.BDDSolver;
 import utilities.Pair;
-import utilities.Timers;
+import utilities.AutomataMetrics;
+import utilities.AutomataMetrics.Timer;
 
 public class RunLTLExp {
 	static long timeout = 60000;
@@ -51,6 +52,13 @@ public class RunLTLExp {
 		//RunLTLEquivChangeState();
 	}
 
+	// full, solver and subsumption times of the last check in ms
+	private static String times() {
+		AutomataMetrics metrics = AutomataMetrics.global();
+		return metrics.getMillis(Timer.FULL) + ", " + metrics.getMillis(Timer.SOLVER) + ", "
+				+ metrics.getMillis(Timer.SUBSUMPTION) + ", ";
+	}
+
 	public static void RunLTLEmptiness() {
 		try {
 			FileWriter fw = new FileWriter(emptinessOutputFile + (useBDDs ? "BDD" : "") + ".csv");
@@ -77,7 +85,7 @@ public class RunLTLExp {
 							fw.append(", ");
 
 							if (counter >= fromCounter) {
-								Timers.setTimeout(Long.MAX_VALUE);
+								AutomataMetrics.global().reset();
 								Pair<BDDSolver, LTLFormula<BDD, BDD>> pair = LTLConverter.getLTLBDD(ltl);
 								BDDSolver bdds = pair.first;
 								LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
@@ -101,10 +109,8 @@ public class RunLTLExp {
 										result = SAFA.isEquivalent(safa, SAFA.getEmptySAFA(bdds), bdds,
 												SAFA.getBooleanExpressionFactory(), timeout).getFirst();
 									}
-									fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-									System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
+									fw.append(times());
+									System.out.print(times());
 								} catch (TimeoutException toe) {
 									to1 = true;
 									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
@@ -187,7 +193,7 @@ public class RunLTLExp {
 							fw.append(", ");
 
 							if (counter >= fromCounter) {
-								Timers.setTimeout(Long.MAX_VALUE);
+								AutomataMetrics.global().reset();
 								Pair<BDDSolver, LTLFormula<BDD, BDD>> pair = LTLConverter.getLTLBDD(ltl);
 								BDDSolver bdds = pair.first;
 								LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
@@ -221,10 +227,8 @@ public class RunLTLExp {
 										result = SAFA.isEquivalent(safa1, safa2, bdds,
 												SAFA.getBooleanExpressionFactory(), timeout).getFirst();
 									}
-									fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-									System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
+									fw.append(times());
+									System.out.print(times());
 								} catch (TimeoutException toe) {
 									to1 = true;
 									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
@@ -306,7 +310,7 @@ public class RunLTLExp {
 							fw.append(", ");
 
 							if (counter >= fromCounter) {
-								Timers.setTimeout(Long.MAX_VALUE);
+								AutomataMetrics.global().reset();
 								Pair<BDDSolver, LTLFormula<BDD, BDD>> pair = LTLConverter.getLTLBDD(ltl);
 								BDDSolver bdds = pair.first;
 								LTLFormula<BDD, BDD> tot = pair.second.pushNegations(bdds);
@@ -330,10 +334,8 @@ public class RunLTLExp {
 												timeout).getFirst();
 									}
 
-									fw.append(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
-									System.out.print(Timers.getFull() + ", " + Timers.getSolver() + ", "
-											+ Timers.getSubsumption() + ", ");
+									fw.append(times());
+									System.out.print(times());
 								} catch (TimeoutException toe) {
 									to1 = true;
 									fw.append(timeout + ", " + timeout + ", " + timeout + ", ");
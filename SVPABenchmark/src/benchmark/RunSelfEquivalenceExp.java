@@ -23,7 +23,9 @@ import automata.safa.booleanexpression.SumOfProductsFactory;
 import automata.sfa.SFA;
 import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
-import utilities.Timers;
+import utilities.AutomataMetrics;
+import utilities.AutomataMetrics.Counter;
+import utilities.AutomataMetrics.Timer;
 
 public class RunSelfEquivalenceExp {
 	static FileReader inFile;
@@ -371,15 +373,15 @@ public class RunSelfEquivalenceExp {
 			long subTimeSAFAIntersect = 0;
 
 			SAFA<CharPred, Character> tempSAFA = tempTriple.getLeft();
-			Timers.setTimeout(Long.MAX_VALUE);
+			AutomataMetrics.global().reset();
 			SAFA.checkEquivalenceOfTwoConfigurations(tempSAFA, tempTriple.getMiddle(), tempSAFA.getInitialState(),
 					solver, SAFA.getBooleanExpressionFactory(), timeOut - fullTimeSAFAIntersect);
-			fullTimeSAFA = Timers.getFull() + fullTimeSAFAIntersect;
-			solverTimeSAFA = Timers.getSolver() + solverTimeSAFAIntersect;
-			subTimeSAFA = Timers.getSubsumption() + subTimeSAFAIntersect;
+			fullTimeSAFA = AutomataMetrics.global().getMillis(Timer.FULL) + fullTimeSAFAIntersect;
+			solverTimeSAFA = AutomataMetrics.global().getMillis(Timer.SOLVER) + solverTimeSAFAIntersect;
+			subTimeSAFA = AutomataMetrics.global().getMillis(Timer.SUBSUMPTION) + subTimeSAFAIntersect;
 			
-			exploredStatesSAFA = Timers.exploredStates;
-			successfulSubsumptionsSAFA = Timers.successfulSubs;
+			exploredStatesSAFA = AutomataMetrics.global().getCount(Counter.EXPLORED_STATES);
+			successfulSubsumptionsSAFA = AutomataMetrics.global().getCount(Counter.SUCCESSFUL_SUBSUMPTIONS);
 
 		} catch (TimeoutException e) {
 			fullTimeSAFA = timeOut;
@@ -396,6 +398,7 @@ public class RunSelfEquivalenceExp {
 		}
 
 		try {
+			AutomataMetrics.global().reset();
 			long totalTimeLeft = timeOut;
 			long startDate = System.currentTimeMillis();
 			SFA<CharPred, Character> tempLeftSFA = IntersectedSFA(sfaLHS, totalTimeLeft);
@@ -410,7 +413,7 @@ public class RunSelfEquivalenceExp {
 			endDate = System.currentTimeMillis();
 			totalTimeLeft -= endDate - startDate;
 			totalTimeSFA = timeOut-totalTimeLeft;
-			exploredStatesSFA = Timers.exploredStates;
+			exploredStatesSFA = AutomataMetrics.global().getCount(Counter.EXPLORED_STATES);
 		} catch (Exception e) {
 			totalTimeSFA = timeOut;
 			exploredStatesSFA = -1;
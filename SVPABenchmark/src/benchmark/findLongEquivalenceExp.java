@@ -23,7 +23,9 @@ import automata.safa.booleanexpression.SumOfProductsFactory;
 import automata.sfa.SFA;
 import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
-import utilities.Timers;
+import utilities.AutomataMetrics;
+import utilities.AutomataMetrics.Counter;
+import utilities.AutomataMetrics.Timer;
 
 public class findLongEquivalenceExp {
 	static FileReader inFile;
@@ -409,15 +411,15 @@ public class findLongEquivalenceExp {
 			long subTimeSAFAIntersect = 0;
 
 			SAFA<CharPred, Character> tempSAFA = tempTriple.getLeft();
-			Timers.setTimeout(Long.MAX_VALUE);
+			AutomataMetrics.global().reset();
 			SAFA.checkEquivalenceOfTwoConfigurations(tempSAFA, tempTriple.getMiddle(), tempSAFA.getInitialState(),
 					solver, SAFA.getBooleanExpressionFactory(), timeOut - fullTimeSAFAIntersect);
-			fullTimeSAFA = Timers.getFull() + fullTimeSAFAIntersect;
-			solverTimeSAFA = Timers.getSolver() + solverTimeSAFAIntersect;
-			subTimeSAFA = Timers.getSubsumption() + subTimeSAFAIntersect;
+			fullTimeSAFA = AutomataMetrics.global().getMillis(Timer.FULL) + fullTimeSAFAIntersect;
+			solverTimeSAFA = AutomataMetrics.global().getMillis(Timer.SOLVER) + solverTimeSAFAIntersect;
+			subTimeSAFA = AutomataMetrics.global().getMillis(Timer.SUBSUMPTION) + subTimeSAFAIntersect;
 			
-			exploredStatesSAFA = Timers.exploredStates;
-			successfulSubsumptionsSAFA = Timers.successfulSubs;
+			exploredStatesSAFA = AutomataMetrics.global().getCount(Counter.EXPLORED_STATES);
+			successfulSubsumptionsSAFA = AutomataMetrics.global().getCount(Counter.SUCCESSFUL_SUBSUMPTIONS);
 
 		} catch (TimeoutException e) {
 			System.err.println("Timeout in SAFA");
@@ -436,6 +438,7 @@ public class findLongEquivalenceExp {
 		}
 
 		try {
+			AutomataMetrics.global().reset();
 			long totalTimeLeft = timeOut;
 			long startDate = System.currentTimeMillis();
 			SFA<CharPred, Character> tempLeftSFA = IntersectedSFA(sfaLHS, totalTimeLeft);
@@ -450,7 +453,7 @@ public class findLongEquivalenceExp {
 			endDate = System.currentTimeMillis();
 			totalTimeLeft -= endDate - startDate;
 			totalTimeSFA = timeOut-totalTimeLeft;
-			exploredStatesSFA = Timers.exploredStates;
+			exploredStatesSFA = AutomataMetrics.global().getCount(Counter.EXPLORED_STATES);
 		} 
 		catch (TimeoutException e) {
 			System.err.println("Timeout in SFA");
@@ -11,6 +11,7 @@ import org.sat4j.specs.TimeoutException;
 import algebralearning.AlgebraLearner;
 import algebralearning.oracles.*;
 import theory.BooleanAlgebra;
+import utilities.Deadline;
 
 /**
  * For details see the paper and the comments below.
@@ -109,6 +110,7 @@ public class EqualityAlgebraLearner <P,D> extends AlgebraLearner <P,D> {
 		D ce;
 		P model = getModel();
 		while ((ce = equiv.getCounterexample(model)) != null) {
+			Deadline.checkCurrent();
 			model = updateModel(ce);
 		}
 		return model;
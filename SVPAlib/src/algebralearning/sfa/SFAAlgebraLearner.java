@@ -26,6 +26,7 @@ import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
 import automata.sfa.SFAMove;
 import theory.BooleanAlgebra;
+import utilities.Deadline;
 import utilities.Pair;
 
 /**
@@ -169,6 +170,7 @@ public class SFAAlgebraLearner <P,D> extends AlgebraLearner <SFA <P,D>, List <D>
     		List <D> ceTargetAs;
      		
     		while (true) {
+    			Deadline.checkCurrent();
         		List <D> counterexample = new LinkedList <>(srcAs);
     			for (Integer trgState = 0; trgState < totalStates; trgState ++) {
     				stPair = new Pair <>(srcState, trgState);
@@ -229,6 +231,7 @@ public class SFAAlgebraLearner <P,D> extends AlgebraLearner <SFA <P,D>, List <D>
     		P g1, g2, newGuard, pand;
     		
     		while (true) {
+    			Deadline.checkCurrent();
     			updatedRound = false;
 	    		for (Integer t1 = 0; t1 < totalStates; t1 ++) {
 	    			for (Integer t2 = 0; t2 < totalStates; t2 ++) {
@@ -562,6 +565,7 @@ public class SFAAlgebraLearner <P,D> extends AlgebraLearner <SFA <P,D>, List <D>
         List <D> ce;
         SFA <P,D> cleanModel = getModel();
         while ((ce = equiv.getCounterexample(cleanModel)) != null) {
+        		Deadline.checkCurrent();
         		cleanModel = updateModel(ce);
         }
         return cleanModel;
@@ -19,6 +19,7 @@ import java.util.Map;
 import org.sat4j.specs.TimeoutException;
 
 import theory.BooleanAlgebra;
+import utilities.Deadline;
 
 /**
  * Automaton abstract class
@@ -174,6 +175,7 @@ public abstract class Automaton<P, S> {
 		HashSet<Integer> barreer = new HashSet<Integer>(getFinalStates());
 
 		while (!barreer.isEmpty()) {
+			Deadline.checkCurrent();
 
 			ArrayList<Move<P, S>> moves = new ArrayList<Move<P, S>>(getMovesTo(barreer));
 
@@ -0,0 +1,542 @@
+package automata;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.safa.BooleanExpressionFactory;
+import automata.safa.SAFA;
+import automata.safa.SAFAInputMove;
+import automata.safa.booleanexpression.PositiveAnd;
+import automata.safa.booleanexpression.PositiveBooleanExpression;
+import automata.safa.booleanexpression.PositiveFalse;
+import automata.safa.booleanexpression.PositiveId;
+import automata.safa.booleanexpression.PositiveOr;
+import automata.safa.booleanexpression.PositiveTrue;
+import automata.sfa.SFA;
+import automata.sfa.SFAEpsilon;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.characters.CharConstant;
+import theory.characters.CharFunc;
+import theory.characters.CharOffset;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import transducers.sft.SFT;
+import transducers.sft.SFTEpsilon;
+import transducers.sft.SFTInputMove;
+import transducers.sft.SFTMove;
+
+/**
+ * Compact binary format for character SFAs, SFTs and SAFAs. Every automaton
+ * starts with a header made of the bytes <code>SVPA</code>, the format
+ * version and the kind of automaton. Integers are written as varints (state
+ * ids are zigzag-encoded) and guards as lists of intervals, each one given by
+ * its distance from the previous interval and its width. Automata can be
+ * written one after the other in the same stream and read back in the same
+ * order from one buffer, for instance a file mapped with {@link #map(Path)}.
+ * Reading rebuilds each automaton exactly as it was written, without
+ * normalizing it.
+ */
+public class CharAutomataSerializer {
+
+	/**
+	 * Version of the format written by this class
+	 */
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = { 'S', 'V', 'P', 'A' };
+
+	private static final int SFA_KIND = 1;
+	private static final int SFT_KIND = 2;
+	private static final int SAFA_KIND = 3;
+
+	// tags of the output functions
+	private static final int OFFSET_FUNCTION = 0;
+	private static final int CONSTANT_FUNCTION = 1;
+
+	// tags of the nodes of Boolean expressions, written in prefix order
+	private static final int FALSE_EXPRESSION = 0;
+	private static final int TRUE_EXPRESSION = 1;
+	private static final int ID_EXPRESSION = 2;
+	private static final int AND_EXPRESSION = 3;
+	private static final int OR_EXPRESSION = 4;
+
+	// ------------------------------------------------------
+	// Writing
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>
+	 *
+	 * @throws IOException
+	 */
+	public static void write(SFA<CharPred, Character> aut, OutputStream out) throws IOException {
+		Encoder enc = new Encoder(SFA_KIND);
+		enc.writeState(aut.getInitialState());
+		enc.writeStates(aut.getFinalStates());
+
+		Collection<SFAInputMove<CharPred, Character>> inputMoves = aut.getInputMovesFrom(aut.getStates());
+		enc.writeVarint(inputMoves.size());
+		for (SFAInputMove<CharPred, Character> move : inputMoves) {
+			enc.writeState(move.from);
+			enc.writeState(move.to);
+			enc.writeGuard(move.guard);
+		}
+
+		Collection<SFAEpsilon<CharPred, Character>> epsMoves = aut.getEpsilonFrom(aut.getStates());
+		enc.writeVarint(epsMoves.size());
+		for (SFAEpsilon<CharPred, Character> move : epsMoves) {
+			enc.writeState(move.from);
+			enc.writeState(move.to);
+		}
+		enc.writeTo(out);
+	}
+
+	/**
+	 * Writes <code>sft</code> to <code>out</code>
+	 *
+	 * @throws IOException
+	 */
+	public static void write(SFT<CharPred, CharFunc, Character> sft, OutputStream out) throws IOException {
+		Encoder enc = new Encoder(SFT_KIND);
+		enc.writeState(sft.getInitialState());
+
+		Map<Integer, Set<List<Character>>> finalStatesAndTails = sft.getFinalStatesAndTails();
+		enc.writeVarint(finalStatesAndTails.size());
+		for (Map.Entry<Integer, Set<List<Character>>> entry : finalStatesAndTails.entrySet()) {
+			enc.writeState(entry.getKey());
+			enc.writeVarint(entry.getValue().size());
+			for (List<Character> tail : entry.getValue())
+				enc.writeChars(tail);
+		}
+
+		Collection<SFTInputMove<CharPred, CharFunc, Character>> inputMoves = sft.getInputMovesFrom(sft.getStates());
+		enc.writeVarint(inputMoves.size());
+		for (SFTInputMove<CharPred, CharFunc, Character> move : inputMoves) {
+			enc.writeState(move.from);
+			enc.writeState(move.to);
+			enc.writeGuard(move.guard);
+			enc.writeVarint(move.outputFunctions.size());
+			for (CharFunc f : move.outputFunctions)
+				enc.writeFunction(f);
+		}
+
+		Collection<SFTEpsilon<CharPred, CharFunc, Character>> epsMoves = sft.getEpsilonMovesFrom(sft.getStates());
+		enc.writeVarint(epsMoves.size());
+		for (SFTEpsilon<CharPred, CharFunc, Character> move : epsMoves) {
+			enc.writeState(move.from);
+			enc.writeState(move.to);
+			enc.writeChars(move.outputs);
+		}
+		enc.writeTo(out);
+	}
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>
+	 *
+	 * @throws IOException
+	 */
+	public static void write(SAFA<CharPred, Character> aut, OutputStream out) throws IOException {
+		Encoder enc = new Encoder(SAFA_KIND);
+		enc.writeExpression(aut.getInitialState());
+		enc.writeStates(aut.getFinalStates());
+
+		Collection<SAFAInputMove<CharPred, Character>> moves = aut.getInputMoves();
+		enc.writeVarint(moves.size());
+		for (SAFAInputMove<CharPred, Character> move : moves) {
+			enc.writeState(move.from);
+			enc.writeGuard(move.guard);
+			enc.writeExpression(move.to);
+		}
+		enc.writeTo(out);
+	}
+
+	// ------------------------------------------------------
+	// Reading
+	// ------------------------------------------------------
+
+	/**
+	 * @return the contents of the file at <code>path</code>, mapped in memory
+	 *         read-only. Files can be up to 2GB.
+	 * @throws IOException
+	 */
+	public static ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Reads an SFA from <code>in</code>, starting at its position and leaving
+	 * the position after the SFA
+	 *
+	 * @throws IOException
+	 *             if <code>in</code> does not contain an SFA in a known
+	 *             version of the format
+	 * @throws TimeoutException
+	 */
+	public static SFA<CharPred, Character> readSFA(ByteBuffer in, UnaryCharIntervalSolver ba)
+			throws IOException, TimeoutException {
+		Decoder dec = new Decoder(in, SFA_KIND);
+		try {
+			Integer initialState = dec.readState();
+			Collection<Integer> finalStates = new HashSet<Integer>(dec.readStates());
+
+			int inputCount = dec.readVarint();
+			Collection<SFAMove<CharPred, Character>> transitions = new ArrayList<SFAMove<CharPred, Character>>();
+			for (int i = 0; i < inputCount; i++)
+				transitions.add(new SFAInputMove<CharPred, Character>(dec.readState(), dec.readState(), dec.readGuard()));
+			int epsCount = dec.readVarint();
+			for (int i = 0; i < epsCount; i++)
+				transitions.add(new SFAEpsilon<CharPred, Character>(dec.readState(), dec.readState()));
+
+			return SFA.MkSFA(transitions, initialState, finalStates, ba, false, false, true);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated SFA");
+		}
+	}
+
+	/**
+	 * Reads an SFT from <code>in</code>, starting at its position and leaving
+	 * the position after the SFT
+	 *
+	 * @throws IOException
+	 *             if <code>in</code> does not contain an SFT in a known
+	 *             version of the format
+	 */
+	public static SFT<CharPred, CharFunc, Character> readSFT(ByteBuffer in, UnaryCharIntervalSolver ba)
+			throws IOException {
+		Decoder dec = new Decoder(in, SFT_KIND);
+		try {
+			Integer initialState = dec.readState();
+
+			int finalCount = dec.readVarint();
+			Map<Integer, Set<List<Character>>> finalStatesAndTails = new HashMap<Integer, Set<List<Character>>>();
+			for (int i = 0; i < finalCount; i++) {
+				Integer state = dec.readState();
+				int tailCount = dec.readVarint();
+				Set<List<Character>> tails = new HashSet<List<Character>>();
+				for (int j = 0; j < tailCount; j++)
+					tails.add(dec.readChars());
+				finalStatesAndTails.put(state, tails);
+			}
+
+			Collection<SFTMove<CharPred, CharFunc, Character>> transitions = new ArrayList<SFTMove<CharPred, CharFunc, Character>>();
+			int inputCount = dec.readVarint();
+			for (int i = 0; i < inputCount; i++) {
+				Integer from = dec.readState();
+				Integer to = dec.readState();
+				CharPred guard = dec.readGuard();
+				int outputCount = dec.readVarint();
+				List<CharFunc> outputFunctions = new ArrayList<CharFunc>(outputCount);
+				for (int j = 0; j < outputCount; j++)
+					outputFunctions.add(dec.readFunction());
+				transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(from, to, guard, outputFunctions));
+			}
+			int epsCount = dec.readVarint();
+			for (int i = 0; i < epsCount; i++)
+				transitions.add(new SFTEpsilon<CharPred, CharFunc, Character>(dec.readState(), dec.readState(),
+						dec.readChars()));
+
+			if (finalStatesAndTails.isEmpty() && transitions.isEmpty())
+				return SFT.getEmptySFT(ba);
+			return SFT.MkSFT(transitions, initialState, finalStatesAndTails, ba);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated SFT");
+		}
+	}
+
+	/**
+	 * Reads an SAFA from <code>in</code>, starting at its position and leaving
+	 * the position after the SAFA
+	 *
+	 * @throws IOException
+	 *             if <code>in</code> does not contain an SAFA in a known
+	 *             version of the format
+	 * @throws TimeoutException
+	 */
+	public static SAFA<CharPred, Character> readSAFA(ByteBuffer in, UnaryCharIntervalSolver ba)
+			throws IOException, TimeoutException {
+		Decoder dec = new Decoder(in, SAFA_KIND);
+		try {
+			PositiveBooleanExpression initialState = dec.readExpression();
+			List<Integer> finalStates = dec.readStates();
+
+			int moveCount = dec.readVarint();
+			Collection<SAFAInputMove<CharPred, Character>> transitions = new ArrayList<SAFAInputMove<CharPred, Character>>();
+			for (int i = 0; i < moveCount; i++) {
+				Integer from = dec.readState();
+				CharPred guard = dec.readGuard();
+				transitions.add(new SAFAInputMove<CharPred, Character>(from, dec.readExpression(), guard));
+			}
+			return SAFA.MkSAFA(transitions, initialState, finalStates, ba, false, false, false);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated SAFA");
+		}
+	}
+
+	// ------------------------------------------------------
+	// Encoding
+	// ------------------------------------------------------
+
+	// Writes one automaton in a growing array, then copies it to the stream
+	private static final class Encoder {
+		private byte[] buf = new byte[256];
+		private int size = 0;
+
+		Encoder(int kind) {
+			for (byte b : MAGIC)
+				writeByte(b);
+			writeVarint(VERSION);
+			writeVarint(kind);
+		}
+
+		void writeByte(int b) {
+			if (size == buf.length)
+				buf = Arrays.copyOf(buf, 2 * size);
+			buf[size++] = (byte) b;
+		}
+
+		void writeVarint(long value) {
+			while ((value & ~0x7FL) != 0) {
+				writeByte((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			writeByte((int) value);
+		}
+
+		void writeState(int state) {
+			writeVarint(((state << 1) ^ (state >> 31)) & 0xFFFFFFFFL);
+		}
+
+		void writeStates(Collection<Integer> states) {
+			writeVarint(states.size());
+			for (Integer state : states)
+				writeState(state);
+		}
+
+		void writeGuard(CharPred guard) {
+			writeVarint(guard.intervalCount());
+			int previous = 0;
+			for (int i = 0; i < guard.intervalCount(); i++) {
+				writeVarint(guard.getLow(i) - previous);
+				writeVarint(guard.getHigh(i) - guard.getLow(i));
+				previous = guard.getHigh(i);
+			}
+		}
+
+		void writeChars(List<Character> chars) {
+			writeVarint(chars.size());
+			for (Character c : chars)
+				writeVarint(c);
+		}
+
+		void writeFunction(CharFunc f) {
+			if (f instanceof CharOffset) {
+				long increment = ((CharOffset) f).increment;
+				writeVarint(OFFSET_FUNCTION);
+				writeVarint((increment << 1) ^ (increment >> 63));
+			} else if (f instanceof CharConstant) {
+				writeVarint(CONSTANT_FUNCTION);
+				writeVarint(((CharConstant) f).c);
+			} else
+				throw new IllegalArgumentException("Cannot serialize the function " + f);
+		}
+
+		// Writes the nodes of e in prefix order, without recursion so that
+		// deep expressions do not overflow the stack
+		void writeExpression(PositiveBooleanExpression e) {
+			List<PositiveBooleanExpression> pending = new ArrayList<PositiveBooleanExpression>();
+			pending.add(e);
+			while (!pending.isEmpty()) {
+				PositiveBooleanExpression next = pending.remove(pending.size() - 1);
+				if (next instanceof PositiveFalse)
+					writeVarint(FALSE_EXPRESSION);
+				else if (next instanceof PositiveTrue)
+					writeVarint(TRUE_EXPRESSION);
+				else if (next instanceof PositiveId) {
+					writeVarint(ID_EXPRESSION);
+					writeState(((PositiveId) next).state);
+				} else if (next instanceof PositiveAnd) {
+					writeVarint(AND_EXPRESSION);
+					pending.add(((PositiveAnd) next).right);
+					pending.add(((PositiveAnd) next).left);
+				} else if (next instanceof PositiveOr) {
+					writeVarint(OR_EXPRESSION);
+					pending.add(((PositiveOr) next).right);
+					pending.add(((PositiveOr) next).left);
+				} else
+					throw new IllegalArgumentException("Cannot serialize the expression " + next);
+			}
+		}
+
+		void writeTo(OutputStream out) throws IOException {
+			out.write(buf, 0, size);
+		}
+	}
+
+	// ------------------------------------------------------
+	// Decoding
+	// ------------------------------------------------------
+
+	// Reads one automaton from the current position of a buffer
+	private static final class Decoder {
+		private final ByteBuffer in;
+		private final BooleanExpressionFactory<PositiveBooleanExpression> bexpr = SAFA.getBooleanExpressionFactory();
+
+		Decoder(ByteBuffer in, int kind) throws IOException {
+			this.in = in;
+			try {
+				for (byte b : MAGIC)
+					if (in.get() != b)
+						throw new IOException("Not a serialized automaton");
+				int version = readVarint();
+				if (version != VERSION)
+					throw new IOException("Unsupported format version " + version);
+				if (readVarint() != kind)
+					throw new IOException("Unexpected kind of automaton");
+			} catch (BufferUnderflowException e) {
+				throw new IOException("Truncated automaton");
+			}
+		}
+
+		long readLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = in.get();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new IOException("Malformed varint");
+		}
+
+		int readVarint() throws IOException {
+			long value = readLong();
+			if (value < 0 || value > Integer.MAX_VALUE)
+				throw new IOException("Malformed varint");
+			return (int) value;
+		}
+
+		Integer readState() throws IOException {
+			int value = (int) readLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		List<Integer> readStates() throws IOException {
+			int count = readVarint();
+			List<Integer> states = new ArrayList<Integer>(count);
+			for (int i = 0; i < count; i++)
+				states.add(readState());
+			return states;
+		}
+
+		CharPred readGuard() throws IOException {
+			int count = readVarint();
+			char[] bounds = new char[2 * count];
+			int previous = 0;
+			for (int i = 0; i < count; i++) {
+				int low = previous + readVarint();
+				int high = low + readVarint();
+				if (high > CharPred.MAX_CHAR)
+					throw new IOException("Malformed guard");
+				bounds[2 * i] = (char) low;
+				bounds[2 * i + 1] = (char) high;
+				previous = high;
+			}
+			try {
+				return CharPred.ofBounds(bounds);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Malformed guard");
+			}
+		}
+
+		char readChar() throws IOException {
+			int c = readVarint();
+			if (c > Character.MAX_VALUE)
+				throw new IOException("Malformed character");
+			return (char) c;
+		}
+
+		List<Character> readChars() throws IOException {
+			int count = readVarint();
+			List<Character> chars = new ArrayList<Character>(count);
+			for (int i = 0; i < count; i++)
+				chars.add(readChar());
+			return chars;
+		}
+
+		CharFunc readFunction() throws IOException {
+			switch (readVarint()) {
+			case OFFSET_FUNCTION:
+				long value = readLong();
+				return new CharOffset((value >>> 1) ^ -(value & 1));
+			case CONSTANT_FUNCTION:
+				return new CharConstant(readChar());
+			default:
+				throw new IOException("Unknown output function");
+			}
+		}
+
+		// Reads the nodes of an expression in prefix order, without recursion
+		// so that deep or malicious inputs cannot overflow the stack. The
+		// operators are rebuilt through the factory, so that equal
+		// subexpressions are shared as in the rest of the library.
+		PositiveBooleanExpression readExpression() throws IOException {
+			// the operators whose operands are still being read, and their
+			// left operand once it is read
+			List<Integer> operators = new ArrayList<Integer>();
+			List<PositiveBooleanExpression> lefts = new ArrayList<PositiveBooleanExpression>();
+			while (true) {
+				int tag = readVarint();
+				PositiveBooleanExpression e;
+				switch (tag) {
+				case FALSE_EXPRESSION:
+					e = bexpr.False();
+					break;
+				case TRUE_EXPRESSION:
+					e = bexpr.True();
+					break;
+				case ID_EXPRESSION:
+					e = bexpr.MkState(readState());
+					break;
+				case AND_EXPRESSION:
+				case OR_EXPRESSION:
+					operators.add(tag);
+					lefts.add(null);
+					continue;
+				default:
+					throw new IOException("Unknown Boolean expression");
+				}
+
+				// completes the operators whose operands are both read
+				while (true) {
+					int top = operators.size() - 1;
+					if (top < 0)
+						return e;
+					if (lefts.get(top) == null) {
+						lefts.set(top, e);
+						break;
+					}
+					PositiveBooleanExpression left = lefts.remove(top);
+					e = operators.remove(top) == AND_EXPRESSION ? bexpr.MkAnd(left, e) : bexpr.MkOr(left, e);
+				}
+			}
+		}
+	}
+}
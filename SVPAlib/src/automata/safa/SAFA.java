@@ -17,6 +17,12 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.tuple.Triple;
@@ -30,8 +36,9 @@ import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
 import automata.sfa.SFAMove;
 import theory.BooleanAlgebra;
+import utilities.AutomataMetrics;
+import utilities.Deadline;
 import utilities.Pair;
-import utilities.Timers;
 import utilities.UnionFindHopKarp;
 
 /**
@@ -425,9 +432,21 @@ public class SAFA<P, S> {
 					BooleanAlgebra<P, S> ba, BooleanExpressionFactory<E> boolexpr, long timeout)
 					throws TimeoutException {
 
-		Timers.setForCongruence();
-		Timers.startFull();
-		Timers.setTimeout(timeout);
+		AutomataMetrics metrics = AutomataMetrics.current();
+		metrics.startFull(timeout);
+		try {
+			return bisimulationUpToCongruence(aut, c1, c2, ba, boolexpr, metrics);
+		} finally {
+			metrics.stopFull();
+		}
+	}
+
+	private static <P, S, E extends BooleanExpression> Pair<Boolean, List<S>> bisimulationUpToCongruence(
+			SAFA<P, S> aut, PositiveBooleanExpression c1, PositiveBooleanExpression c2, BooleanAlgebra<P, S> ba,
+			BooleanExpressionFactory<E> boolexpr, AutomataMetrics metrics) throws TimeoutException {
+
+		// start of the timed phase
+		long start;
 
 		SAFARelation similar = new SATRelation();
 
@@ -440,8 +459,9 @@ public class SAFA<P, S> {
 		similar.add(leftInitial, rightInitial);
 		worklist.add(new Pair<>(new Pair<>(leftInitial, rightInitial), new LinkedList<>()));
 		while (!worklist.isEmpty()) {
-			Timers.assertFullTO(timeout);
-			Timers.oneMoreState();
+			metrics.assertNotTimedOut();
+			Deadline.checkCurrent();
+			metrics.oneMoreState();
 
 			Pair<Pair<E, E>, List<S>> next = worklist.remove();
 
@@ -452,11 +472,11 @@ public class SAFA<P, S> {
 			P guard = ba.True();
 			boolean isSat = true;
 			do {
-				Timers.assertFullTO(timeout);
+				metrics.assertNotTimedOut();
 
-				Timers.startSolver();
+				start = metrics.start();
 				S model = ba.generateWitness(guard);
-				Timers.stopSolver();
+				metrics.stopSolver(start);
 
 				P implicant = ba.True();
 				Map<Integer, E> move = new HashMap<>();
@@ -467,27 +487,27 @@ public class SAFA<P, S> {
 				for (Integer s : states) {
 					E succ = boolexpr.False();
 					for (SAFAInputMove<P, S> tr : aut.getInputMovesFrom(s)) {
-						Timers.assertFullTO(timeout);
+						metrics.assertNotTimedOut();
 
-						Timers.startSolver();
+						start = metrics.start();
 						boolean hm = ba.HasModel(tr.guard, model);
-						Timers.stopSolver();
+						metrics.stopSolver(start);
 
 						if (hm) {
 							succ = boolexpr.MkOr(succ, coerce.apply(tr.to));
-							Timers.startSolver();
+							start = metrics.start();
 							implicant = ba.MkAnd(implicant, tr.guard);
-							Timers.stopSolver();
+							metrics.stopSolver(start);
 						} else {
-							Timers.startSolver();
+							start = metrics.start();
 							implicant = ba.MkAnd(implicant, ba.MkNot(tr.guard));
-							Timers.stopSolver();
+							metrics.stopSolver(start);
 						}
 					}
 					move.put(s, succ);
 				}
 
-				Timers.startSubsumption();
+				start = metrics.start();
 				E leftSucc = boolexpr.substitute((lit) -> move.get(lit)).apply(left);
 				E rightSucc = boolexpr.substitute((lit) -> move.get(lit)).apply(right);
 				List<S> succWitness = new LinkedList<>();
@@ -495,35 +515,32 @@ public class SAFA<P, S> {
 				succWitness.add(model);
 				
 				boolean checkIfDiff = leftSucc.hasModel(aut.finalStates) != rightSucc.hasModel(aut.finalStates);
-				Timers.stopSubsumption();
+				metrics.stopSubsumption(start);
 
 				if (checkIfDiff) {
 					// leftSucc is accepting and rightSucc is rejecting or
 					// vice versa
-					Timers.stopFull();
 					return new Pair<>(false, succWitness);
 				} else{ 
-					Timers.startSubsumption();
+					start = metrics.start();
 					if (!similar.isMember(leftSucc, rightSucc)) {
 						if (!similar.add(leftSucc, rightSucc)) {
-							Timers.stopSubsumption();
-							Timers.stopFull();
+							metrics.stopSubsumption(start);
 							return new Pair<>(false, succWitness);
 						}
 						worklist.add(new Pair<>(new Pair<>(leftSucc, rightSucc), succWitness));
 					}else{
-						Timers.oneMoreSub();
+						metrics.oneMoreSub();
 					}
-					Timers.stopSubsumption();
+					metrics.stopSubsumption(start);
 				}
-				Timers.startSolver();
+				start = metrics.start();
 				guard = ba.MkAnd(guard, ba.MkNot(implicant));
 				
 				isSat =  ba.IsSatisfiable(guard);
-				Timers.stopSolver();
+				metrics.stopSolver(start);
 			} while (isSat);
 		}
-		Timers.stopFull();
 		return new Pair<>(true, null);
 	}
 
@@ -538,6 +555,272 @@ public class SAFA<P, S> {
 		return checkEquivalenceOfTwoConfigurations(triple.getLeft(), triple.getMiddle(), triple.getRight(), ba, boolexpr, timeout);
 	}
 
+	/**
+	 * Checks whether laut and raut are equivalent using bisimulation up to
+	 * congruence, expanding the pairs of configurations with
+	 * <code>workers</code> parallel tasks run by <code>executor</code>.
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <P, S, E extends BooleanExpression> Pair<Boolean, List<S>> isEquivalentParallel(SAFA<P, S> laut,
+			SAFA<P, S> raut, BooleanAlgebra<P, S> ba, BooleanExpressionFactory<E> boolexpr, ExecutorService executor,
+			int workers, long timeout) throws TimeoutException {
+		Triple<SAFA<P, S>, PositiveBooleanExpression, PositiveBooleanExpression> triple = binaryOp(laut, raut, ba,
+				BoolOp.Union);
+		return checkEquivalenceOfTwoConfigurationsParallel(triple.getLeft(), triple.getMiddle(), triple.getRight(),
+				ba, boolexpr, executor, workers, timeout);
+	}
+
+	/**
+	 * Parallel version of <code>checkEquivalenceOfTwoConfigurations</code>.
+	 * The pairs are expanded in rounds: in each round the workers claim the
+	 * pairs found in the previous one, smallest first, and check the
+	 * successor pairs against their own congruence, which contains the pairs
+	 * of all the workers up to the previous round and the ones they added
+	 * since. The pairs added by the other workers are merged into it at the
+	 * start of every round. The first counterexample found stops all the
+	 * workers, so the witness may differ from the sequential one.
+	 * <code>boolexpr</code> and the
+	 * expressions it builds are only used while holding its lock, as
+	 * factories such as the BDD one share state between their expressions,
+	 * so only the solver calls run in parallel.
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <P, S, E extends BooleanExpression> Pair<Boolean, List<S>> checkEquivalenceOfTwoConfigurationsParallel(
+			SAFA<P, S> aut, PositiveBooleanExpression c1, PositiveBooleanExpression c2, BooleanAlgebra<P, S> ba,
+			BooleanExpressionFactory<E> boolexpr, ExecutorService executor, int workers, long timeout)
+					throws TimeoutException {
+		if (workers <= 0)
+			throw new IllegalArgumentException("The number of workers must be positive");
+
+		AutomataMetrics metrics = AutomataMetrics.current();
+		metrics.startFull(timeout);
+		try {
+			return bisimulationUpToCongruenceParallel(aut, c1, c2, ba, boolexpr, executor, workers, timeout,
+					metrics);
+		} finally {
+			metrics.stopFull();
+		}
+	}
+
+	private static <P, S, E extends BooleanExpression> Pair<Boolean, List<S>> bisimulationUpToCongruenceParallel(
+			SAFA<P, S> aut, PositiveBooleanExpression c1, PositiveBooleanExpression c2, BooleanAlgebra<P, S> ba,
+			BooleanExpressionFactory<E> boolexpr, ExecutorService executor, int workers, long timeout,
+			AutomataMetrics metrics) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		BooleanExpressionMorphism<E> coerce = new BooleanExpressionMorphism<>((x) -> boolexpr.MkState(x), boolexpr);
+		E leftInitial = coerce.apply(c1);
+		E rightInitial = coerce.apply(c2);
+
+		// every pair added to the congruence so far, in the order of the rounds
+		List<Pair<Pair<E, E>, List<S>>> added = new ArrayList<>();
+		added.add(new Pair<>(new Pair<>(leftInitial, rightInitial), new LinkedList<>()));
+
+		AtomicReference<List<S>> counterexample = new AtomicReference<>();
+		List<CongruenceWorker<P, S, E>> workerTasks = new ArrayList<>();
+		for (int i = 0; i < workers; i++)
+			workerTasks.add(new CongruenceWorker<>(aut, ba, boolexpr, coerce, added, counterexample, startTime,
+					timeout, metrics));
+
+		List<Pair<Pair<E, E>, List<S>>> frontier = new ArrayList<>(added);
+		while (!frontier.isEmpty()) {
+			frontier.sort(new RelationComparator<>());
+			metrics.add(AutomataMetrics.Counter.EXPLORED_STATES, frontier.size());
+
+			AtomicInteger nextPair = new AtomicInteger();
+			List<Callable<List<Pair<Pair<E, E>, List<S>>>>> round = new ArrayList<>();
+			for (CongruenceWorker<P, S, E> worker : workerTasks) {
+				worker.startRound(frontier, nextPair, added.size());
+				round.add(Deadline.propagate(worker));
+			}
+
+			long leftover = timeout - (System.currentTimeMillis() - startTime);
+			if (leftover <= 0)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
+
+			List<Future<List<Pair<Pair<E, E>, List<S>>>>> results;
+			try {
+				results = executor.invokeAll(round, leftover, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TimeoutException(e);
+			}
+
+			frontier = new ArrayList<>();
+			for (Future<List<Pair<Pair<E, E>, List<S>>>> result : results)
+				frontier.addAll(Deadline.getResult(result));
+
+			if (counterexample.get() != null)
+				return new Pair<>(false, counterexample.get());
+			added.addAll(frontier);
+		}
+		return new Pair<>(true, null);
+	}
+
+	// Expands pairs of configurations for
+	// checkEquivalenceOfTwoConfigurationsParallel, keeping its own congruence
+	// across the rounds
+	private static class CongruenceWorker<P, S, E extends BooleanExpression>
+			implements Callable<List<Pair<Pair<E, E>, List<S>>>> {
+		private final SAFA<P, S> aut;
+		private final BooleanAlgebra<P, S> ba;
+		private final BooleanExpressionFactory<E> boolexpr;
+		private final BooleanExpressionMorphism<E> coerce;
+		private final List<Pair<Pair<E, E>, List<S>>> added;
+		private final AtomicReference<List<S>> counterexample;
+		private final long startTime;
+		private final long timeout;
+		private final AutomataMetrics metrics;
+
+		private final SAFARelation similar = new SATRelation();
+		// number of pairs of added already in similar
+		private int merged = 0;
+
+		// the current round
+		private List<Pair<Pair<E, E>, List<S>>> frontier;
+		private AtomicInteger nextPair;
+		private int addedSize;
+
+		CongruenceWorker(SAFA<P, S> aut, BooleanAlgebra<P, S> ba, BooleanExpressionFactory<E> boolexpr,
+				BooleanExpressionMorphism<E> coerce, List<Pair<Pair<E, E>, List<S>>> added,
+				AtomicReference<List<S>> counterexample, long startTime, long timeout, AutomataMetrics metrics) {
+			this.aut = aut;
+			this.ba = ba;
+			this.boolexpr = boolexpr;
+			this.coerce = coerce;
+			this.added = added;
+			this.counterexample = counterexample;
+			this.startTime = startTime;
+			this.timeout = timeout;
+			this.metrics = metrics;
+		}
+
+		void startRound(List<Pair<Pair<E, E>, List<S>>> frontier, AtomicInteger nextPair, int addedSize) {
+			this.frontier = frontier;
+			this.nextPair = nextPair;
+			this.addedSize = addedSize;
+		}
+
+		// Returns the pairs added to the congruence in this round
+		@Override
+		public List<Pair<Pair<E, E>, List<S>>> call() throws TimeoutException {
+			List<Pair<Pair<E, E>, List<S>>> newPairs = new ArrayList<>();
+
+			// merge the pairs added by all the workers in the previous rounds
+			for (; merged < addedSize; merged++) {
+				Pair<Pair<E, E>, List<S>> pair = added.get(merged);
+				boolean isConsistent;
+				synchronized (boolexpr) {
+					isConsistent = similar.add(pair.first.first, pair.first.second);
+				}
+				if (!isConsistent) {
+					counterexample.compareAndSet(null, pair.second);
+					return newPairs;
+				}
+			}
+
+			int i;
+			while (counterexample.get() == null && (i = nextPair.getAndIncrement()) < frontier.size())
+				if (!expand(frontier.get(i), newPairs))
+					break;
+			return newPairs;
+		}
+
+		// Adds to newPairs the successors of next that are not in the
+		// congruence, returns false if a counterexample was found
+		private boolean expand(Pair<Pair<E, E>, List<S>> next, List<Pair<Pair<E, E>, List<S>>> newPairs)
+				throws TimeoutException {
+			E left = next.getFirst().getFirst();
+			E right = next.getFirst().getSecond();
+			List<S> witness = next.getSecond();
+
+			Set<Integer> states = new HashSet<>();
+			synchronized (boolexpr) {
+				states.addAll(left.getStates());
+				states.addAll(right.getStates());
+			}
+
+			P guard = ba.True();
+			while (true) {
+				if (System.currentTimeMillis() - startTime > timeout)
+					throw new TimeoutException();
+				Deadline.checkCurrent();
+				if (counterexample.get() != null)
+					return false;
+
+				long start = metrics.start();
+				S model = ba.generateWitness(guard);
+				metrics.stopSolver(start);
+
+				P implicant = ba.True();
+				Map<Integer, List<PositiveBooleanExpression>> succs = new HashMap<>();
+				for (Integer s : states) {
+					List<PositiveBooleanExpression> succ = new ArrayList<>();
+					// the map is read directly since getInputMovesFrom adds
+					// the missing entries
+					Collection<SAFAInputMove<P, S>> moves = aut.inputMovesFrom.get(s);
+					for (SAFAInputMove<P, S> tr : moves == null ? new ArrayList<SAFAInputMove<P, S>>() : moves) {
+						if (ba.HasModel(tr.guard, model)) {
+							succ.add(tr.to);
+							implicant = ba.MkAnd(implicant, tr.guard);
+						} else {
+							implicant = ba.MkAnd(implicant, ba.MkNot(tr.guard));
+						}
+					}
+					succs.put(s, succ);
+				}
+
+				List<S> succWitness = new LinkedList<>();
+				succWitness.addAll(witness);
+				succWitness.add(model);
+
+				// every read of the expressions holds the lock of boolexpr
+				boolean isMember;
+				boolean isConsistent;
+				synchronized (boolexpr) {
+					Map<Integer, E> move = new HashMap<>();
+					for (Map.Entry<Integer, List<PositiveBooleanExpression>> entry : succs.entrySet()) {
+						E succ = boolexpr.False();
+						for (PositiveBooleanExpression to : entry.getValue())
+							succ = boolexpr.MkOr(succ, coerce.apply(to));
+						move.put(entry.getKey(), succ);
+					}
+					E leftSucc = boolexpr.substitute((lit) -> move.get(lit)).apply(left);
+					E rightSucc = boolexpr.substitute((lit) -> move.get(lit)).apply(right);
+
+					if (leftSucc.hasModel(aut.finalStates) != rightSucc.hasModel(aut.finalStates)) {
+						// leftSucc is accepting and rightSucc is rejecting or
+						// vice versa
+						counterexample.compareAndSet(null, succWitness);
+						return false;
+					}
+					start = metrics.start();
+					isMember = similar.isMember(leftSucc, rightSucc);
+					isConsistent = isMember || similar.add(leftSucc, rightSucc);
+					metrics.stopSubsumption(start);
+					if (isConsistent && !isMember)
+						newPairs.add(new Pair<>(new Pair<>(leftSucc, rightSucc), succWitness));
+				}
+				if (!isConsistent) {
+					counterexample.compareAndSet(null, succWitness);
+					return false;
+				}
+				if (isMember)
+					metrics.oneMoreSub();
+
+				start = metrics.start();
+				guard = ba.MkAnd(guard, ba.MkNot(implicant));
+				boolean isSat = ba.IsSatisfiable(guard);
+				metrics.stopSolver(start);
+				if (!isSat)
+					return true;
+			}
+		}
+	}
+
 	static class RelationComparator<E extends BooleanExpression, A> implements Comparator<Pair<Pair<E, E>, List<A>>> {
 		@Override
 		public int compare(Pair<Pair<E, E>, List<A>> x, Pair<Pair<E, E>, List<A>> y) {
@@ -606,6 +889,7 @@ public class SAFA<P, S> {
 		while (!toVisit.isEmpty()) {
 			if (System.currentTimeMillis() - startTime > timeout)
 				throw new TimeoutException("Timeout in the equivalence check");
+			Deadline.checkCurrent();
 
 			Pair<HashSet<Integer>, HashSet<Integer>> curr = toVisit.removeFirst();
 			HashSet<Integer> curr1 = curr.first;
@@ -634,6 +918,7 @@ public class SAFA<P, S> {
 				for (Pair<P, ArrayList<Integer>> minterm2 : minterms2) {
 					if (System.currentTimeMillis() - startTime > timeout)
 						throw new TimeoutException("Timeout in the equivalence check");
+					Deadline.checkCurrent();
 
 					P conj = ba.MkAnd(minterm1.first, minterm2.first);
 					if (ba.IsSatisfiable(conj)) {
@@ -1,6 +1,8 @@
 package automata.safa;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -138,36 +140,120 @@ public class SATRelation extends SAFARelation {
 	SATFactory factory;
 	BooleanExpressionMorphism<Integer> coerce;
 
+	// literal naming every expression encoded so far, by identity since the
+	// expressions are hash-consed and their equals may be structural
+	private IdentityHashMap<BooleanExpression, Integer> names;
+	// literal naming the iff of every pair of literals encoded so far
+	private HashMap<Long, Integer> iffs;
+
+	// pairs of literals known to be in the relation, which only grows
+	private HashSet<Long> members;
+	// pairs of literals known not to be in the relation, with the generation
+	// in which that was checked
+	private HashMap<Long, Integer> nonMembers;
+	// number of pairs added so far
+	private int generation;
+
+	private long solverCalls;
+	private long cacheHits;
+
 	public SATRelation(ISolver s) {
 		factory = new SATFactory(s);
 		coerce = new BooleanExpressionMorphism<>((state) -> 2 * state + 2, factory);
+		names = new IdentityHashMap<>();
+		iffs = new HashMap<>();
+		members = new HashSet<>();
+		nonMembers = new HashMap<>();
+		generation = 0;
 	}
 
 	public SATRelation() {
 		this(SolverFactory.newDefault());
 	}
-	
-	private int mkIff(BooleanExpression p, BooleanExpression q) throws TimeoutException {
-		int pname = coerce.apply(p);
-		int qname = coerce.apply(q);
-		
-		return factory.MkOr(factory.MkAnd(pname, qname), factory.MkAnd(-pname, -qname));
+
+	private int encode(BooleanExpression p) {
+		Integer name = names.get(p);
+		if (name == null) {
+			name = coerce.apply(p);
+			names.put(p, name);
+		}
+		return name;
+	}
+
+	// Key of the unordered pair of literals pname and qname
+	private static long key(int pname, int qname) {
+		int low = Math.min(pname, qname);
+		int high = Math.max(pname, qname);
+		return ((long) low << 32) | (high & 0xFFFFFFFFL);
+	}
+
+	private int mkIff(int pname, int qname) {
+		long key = key(pname, qname);
+		Integer iff = iffs.get(key);
+		if (iff == null) {
+			iff = factory.MkOr(factory.MkAnd(pname, qname), factory.MkAnd(-pname, -qname));
+			iffs.put(key, iff);
+		}
+		return iff;
 	}
-	
+
 	public boolean isMember(BooleanExpression p, BooleanExpression q) throws TimeoutException {
+		if (p == q) {
+			cacheHits++;
+			return true;
+		}
+		int pname = encode(p);
+		int qname = encode(q);
+		long key = key(pname, qname);
+		if (pname == qname || members.contains(key)) {
+			cacheHits++;
+			return true;
+		}
+		Integer checked = nonMembers.get(key);
+		if (checked != null && checked == generation) {
+			cacheHits++;
+			return false;
+		}
+
 		VecInt mem = new VecInt();
-		mem.push(-mkIff(p, q));
-		return !factory.getSolver().isSatisfiable(mem, false);
+		mem.push(-mkIff(pname, qname));
+		solverCalls++;
+		boolean isMember = !factory.getSolver().isSatisfiable(mem, false);
+		if (isMember) {
+			members.add(key);
+			nonMembers.remove(key);
+		} else {
+			nonMembers.put(key, generation);
+		}
+		return isMember;
 	}
-	
+
 	public boolean add(BooleanExpression p, BooleanExpression q) throws TimeoutException {
+		int pname = encode(p);
+		int qname = encode(q);
 		VecInt pair = new VecInt();
-		pair.push(mkIff(p, q));
+		pair.push(mkIff(pname, qname));
+		generation++;
 		try {
 			factory.solver.addClause(pair);
+			members.add(key(pname, qname));
 			return true;
 		} catch (ContradictionException e) {
 			return false;
 		}
 	}
+
+	/**
+	 * @return number of membership queries answered by the SAT solver
+	 */
+	public long getSolverCallCount() {
+		return solverCalls;
+	}
+
+	/**
+	 * @return number of membership queries answered without the SAT solver
+	 */
+	public long getCacheHitCount() {
+		return cacheHits;
+	}
 }
@@ -9,7 +9,6 @@ import org.sat4j.specs.TimeoutException;
 import automata.safa.BooleanExpression;
 import automata.safa.LatticeMorphism;
 import theory.bdd.BDD;
-import utilities.Timers;
 
 public class BDDExpression extends BooleanExpression {
 
@@ -0,0 +1,205 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+/**
+ * Immutable table-driven matcher for a deterministic SFA over characters.
+ * States are renamed to 0,...,n-1 and the moves out of every state are stored
+ * as sorted, disjoint character intervals. ASCII characters are resolved with
+ * a direct lookup table, all other characters with a binary search over the
+ * intervals of the current state. Running the matcher does not allocate.
+ */
+public final class CompiledCharDFA {
+
+	/**
+	 * Id returned by {@link #step(int, char)} when no move applies
+	 */
+	public static final int DEAD_STATE = -1;
+
+	private static final int ASCII_SIZE = 128;
+
+	private final int initialState;
+	private final boolean[] isFinal;
+
+	// the intervals out of state s are at positions
+	// rowStart[s],...,rowStart[s+1]-1 of lows, highs and targets
+	private final int[] rowStart;
+	private final char[] lows;
+	private final char[] highs;
+	private final int[] targets;
+
+	// asciiTable[s * ASCII_SIZE + c] is the target of s on c for c < 128
+	private final int[] asciiTable;
+
+	private CompiledCharDFA(int initialState, boolean[] isFinal, int[] rowStart, char[] lows, char[] highs,
+			int[] targets) {
+		this.initialState = initialState;
+		this.isFinal = isFinal;
+		this.rowStart = rowStart;
+		this.lows = lows;
+		this.highs = highs;
+		this.targets = targets;
+
+		int stateCount = isFinal.length;
+		asciiTable = new int[stateCount * ASCII_SIZE];
+		Arrays.fill(asciiTable, DEAD_STATE);
+		for (int state = 0; state < stateCount; state++)
+			for (int i = rowStart[state]; i < rowStart[state + 1] && lows[i] < ASCII_SIZE; i++) {
+				int top = Math.min(highs[i], ASCII_SIZE - 1);
+				for (int c = lows[i]; c <= top; c++)
+					asciiTable[state * ASCII_SIZE + c] = targets[i];
+			}
+	}
+
+	/**
+	 * Compiles <code>aut</code> into a table-driven matcher, determinizing it
+	 * first if necessary
+	 *
+	 * @throws TimeoutException
+	 */
+	public static CompiledCharDFA compile(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba)
+			throws TimeoutException {
+
+		SFA<CharPred, Character> dfa = aut;
+		if (!aut.isDeterministic(ba))
+			dfa = aut.determinize(ba);
+
+		// Dense ids, assigned in increasing order of the original ids
+		List<Integer> states = new ArrayList<Integer>(dfa.getStates());
+		Collections.sort(states);
+		Map<Integer, Integer> stateToId = new HashMap<Integer, Integer>();
+		for (Integer state : states)
+			stateToId.put(state, stateToId.size());
+
+		int stateCount = states.size();
+		boolean[] isFinal = new boolean[stateCount];
+		int[] rowStart = new int[stateCount + 1];
+		List<int[]> rows = new ArrayList<int[]>();
+
+		for (int id = 0; id < stateCount; id++) {
+			Integer state = states.get(id);
+			isFinal[id] = dfa.isFinalState(state);
+
+			// every interval is stored as {low, high, target}
+			List<int[]> row = new ArrayList<int[]>();
+			for (SFAInputMove<CharPred, Character> move : dfa.getInputMovesFrom(state)) {
+				int target = stateToId.get(move.to);
+				for (int i = 0; i < move.guard.intervalCount(); i++)
+					row.add(new int[] { move.guard.getLow(i), move.guard.getHigh(i), target });
+			}
+			Collections.sort(row, (i1, i2) -> i1[0] - i2[0]);
+
+			rowStart[id + 1] = rowStart[id] + row.size();
+			rows.addAll(row);
+		}
+
+		char[] lows = new char[rows.size()];
+		char[] highs = new char[rows.size()];
+		int[] targets = new int[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			int[] interval = rows.get(i);
+			lows[i] = (char) interval[0];
+			highs[i] = (char) interval[1];
+			targets[i] = interval[2];
+		}
+
+		return new CompiledCharDFA(stateToId.get(dfa.getInitialState()), isFinal, rowStart, lows, highs, targets);
+	}
+
+	/**
+	 * @return a new incremental matcher in the initial state
+	 */
+	public StreamingCharMatcher matcher() {
+		return new StreamingCharMatcher(this);
+	}
+
+	/**
+	 * @return true iff the automaton accepts <code>input</code>
+	 */
+	public boolean matches(CharSequence input) {
+		int state = initialState;
+		for (int i = 0; i < input.length(); i++) {
+			state = step(state, input.charAt(i));
+			if (state == DEAD_STATE)
+				return false;
+		}
+		return isFinal[state];
+	}
+
+	/**
+	 * @return true iff the automaton accepts the characters of
+	 *         <code>input</code> in positions <code>from</code> (included) to
+	 *         <code>to</code> (excluded)
+	 */
+	public boolean matches(char[] input, int from, int to) {
+		int state = initialState;
+		for (int i = from; i < to; i++) {
+			state = step(state, input[i]);
+			if (state == DEAD_STATE)
+				return false;
+		}
+		return isFinal[state];
+	}
+
+	/**
+	 * @return the state reached from <code>state</code> reading
+	 *         <code>c</code>, or <code>DEAD_STATE</code> if there is no such
+	 *         state
+	 */
+	public int step(int state, char c) {
+		if (c < ASCII_SIZE)
+			return asciiTable[state * ASCII_SIZE + c];
+
+		// binary search for the last interval with low <= c
+		int lo = rowStart[state];
+		int hi = rowStart[state + 1] - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (lows[mid] <= c)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		if (hi >= rowStart[state] && c <= highs[hi])
+			return targets[hi];
+		return DEAD_STATE;
+	}
+
+	/**
+	 * @return the initial state
+	 */
+	public int getInitialState() {
+		return initialState;
+	}
+
+	/**
+	 * @return true iff <code>state</code> is final
+	 */
+	public boolean isFinalState(int state) {
+		return isFinal[state];
+	}
+
+	/**
+	 * @return number of states, states are 0,...,getStateCount()-1
+	 */
+	public int getStateCount() {
+		return isFinal.length;
+	}
+
+	/**
+	 * @return number of intervals over all the states
+	 */
+	public int getIntervalCount() {
+		return targets.length;
+	}
+}
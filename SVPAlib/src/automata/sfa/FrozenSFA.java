@@ -0,0 +1,192 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Array representation of an SFA used by the algorithms that visit it many
+ * times. States are renamed to 0,...,n-1 in increasing order of their ids,
+ * the moves out of and into every state are stored in compressed rows, and
+ * the final states in a bit set. It is built once by {@link SFA#freeze()},
+ * since SFAs are not modified after construction.
+ */
+final class FrozenSFA<P, S> {
+
+	// number of states
+	final int n;
+
+	// original id of every state
+	final int[] stateOf;
+	private final Map<Integer, Integer> idOf;
+
+	final int initialState;
+	final BitSet finalStates;
+
+	// input moves out of state q are q -moveGuard[k]-> moveTo[k] for
+	// moveStart[q] <= k < moveStart[q+1]
+	final int[] moveStart;
+	final int[] moveTo;
+	private final Object[] moveGuard;
+
+	// input moves into state t are inMoveFrom[k] -inMoveGuard[k]-> t for
+	// inStart[t] <= k < inStart[t+1]
+	final int[] inStart;
+	final int[] inMoveFrom;
+	private final Object[] inMoveGuard;
+
+	// epsilon moves, out of and into every state
+	final int[] epsStart;
+	final int[] epsTo;
+	final int[] epsInStart;
+	final int[] epsInFrom;
+
+	FrozenSFA(SFA<P, S> aut) {
+		// the initial state is a state even if it has no move
+		List<Integer> states = new ArrayList<Integer>(aut.getStates());
+		if (!aut.getStates().contains(aut.getInitialState()))
+			states.add(aut.getInitialState());
+		Collections.sort(states);
+		n = states.size();
+
+		stateOf = new int[n];
+		idOf = new HashMap<Integer, Integer>();
+		for (int q = 0; q < n; q++) {
+			stateOf[q] = states.get(q);
+			idOf.put(states.get(q), q);
+		}
+
+		initialState = idOf.get(aut.getInitialState());
+		finalStates = new BitSet(n);
+		for (Integer state : aut.getFinalStates()) {
+			Integer q = idOf.get(state);
+			if (q != null)
+				finalStates.set(q);
+		}
+
+		// the maps are read directly since the getters add missing entries
+		moveStart = new int[n + 1];
+		inStart = new int[n + 1];
+		epsStart = new int[n + 1];
+		epsInStart = new int[n + 1];
+		for (int q = 0; q < n; q++) {
+			moveStart[q + 1] = moveStart[q] + size(aut.inputMovesFrom.get(stateOf[q]));
+			inStart[q + 1] = inStart[q] + size(aut.inputMovesTo.get(stateOf[q]));
+			epsStart[q + 1] = epsStart[q] + size(aut.epsilonFrom.get(stateOf[q]));
+			epsInStart[q + 1] = epsInStart[q] + size(aut.epsilonTo.get(stateOf[q]));
+		}
+
+		moveTo = new int[moveStart[n]];
+		moveGuard = new Object[moveStart[n]];
+		inMoveFrom = new int[inStart[n]];
+		inMoveGuard = new Object[inStart[n]];
+		epsTo = new int[epsStart[n]];
+		epsInFrom = new int[epsInStart[n]];
+		for (int q = 0; q < n; q++) {
+			int k = moveStart[q];
+			for (SFAInputMove<P, S> move : moves(aut.inputMovesFrom.get(stateOf[q]))) {
+				moveTo[k] = idOf.get(move.to);
+				moveGuard[k++] = move.guard;
+			}
+			k = inStart[q];
+			for (SFAInputMove<P, S> move : moves(aut.inputMovesTo.get(stateOf[q]))) {
+				inMoveFrom[k] = idOf.get(move.from);
+				inMoveGuard[k++] = move.guard;
+			}
+			k = epsStart[q];
+			for (SFAEpsilon<P, S> move : moves(aut.epsilonFrom.get(stateOf[q])))
+				epsTo[k++] = idOf.get(move.to);
+			k = epsInStart[q];
+			for (SFAEpsilon<P, S> move : moves(aut.epsilonTo.get(stateOf[q])))
+				epsInFrom[k++] = idOf.get(move.from);
+		}
+	}
+
+	/**
+	 * @return the dense id of <code>state</code>, -1 if it is not a state
+	 */
+	int idOf(Integer state) {
+		Integer q = idOf.get(state);
+		return q == null ? -1 : q;
+	}
+
+	/**
+	 * @return the guard of the k-th move in the rows of moves out of states
+	 */
+	@SuppressWarnings("unchecked")
+	P moveGuard(int k) {
+		return (P) moveGuard[k];
+	}
+
+	/**
+	 * @return the guard of the k-th move in the rows of moves into states
+	 */
+	@SuppressWarnings("unchecked")
+	P inMoveGuard(int k) {
+		return (P) inMoveGuard[k];
+	}
+
+	/**
+	 * @return the states reachable from <code>q</code>, through input and
+	 *         epsilon moves
+	 */
+	BitSet reachableFrom(int q) {
+		BitSet reached = new BitSet(n);
+		int[] toVisit = new int[n];
+		int size = 0;
+		reached.set(q);
+		toVisit[size++] = q;
+		while (size > 0) {
+			int p = toVisit[--size];
+			for (int k = moveStart[p]; k < moveStart[p + 1]; k++)
+				if (!reached.get(moveTo[k])) {
+					reached.set(moveTo[k]);
+					toVisit[size++] = moveTo[k];
+				}
+			for (int k = epsStart[p]; k < epsStart[p + 1]; k++)
+				if (!reached.get(epsTo[k])) {
+					reached.set(epsTo[k]);
+					toVisit[size++] = epsTo[k];
+				}
+		}
+		return reached;
+	}
+
+	/**
+	 * @return the states from which some state in <code>targets</code> is
+	 *         reachable, through input and epsilon moves
+	 */
+	BitSet reaching(BitSet targets) {
+		BitSet reached = (BitSet) targets.clone();
+		int[] toVisit = new int[n];
+		int size = 0;
+		for (int q = targets.nextSetBit(0); q >= 0; q = targets.nextSetBit(q + 1))
+			toVisit[size++] = q;
+		while (size > 0) {
+			int p = toVisit[--size];
+			for (int k = inStart[p]; k < inStart[p + 1]; k++)
+				if (!reached.get(inMoveFrom[k])) {
+					reached.set(inMoveFrom[k]);
+					toVisit[size++] = inMoveFrom[k];
+				}
+			for (int k = epsInStart[p]; k < epsInStart[p + 1]; k++)
+				if (!reached.get(epsInFrom[k])) {
+					reached.set(epsInFrom[k]);
+					toVisit[size++] = epsInFrom[k];
+				}
+		}
+		return reached;
+	}
+
+	private static int size(Collection<?> moves) {
+		return moves == null ? 0 : moves.size();
+	}
+
+	private static <M> Collection<M> moves(Collection<M> moves) {
+		return moves == null ? Collections.<M> emptyList() : moves;
+	}
+}
@@ -0,0 +1,318 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Deadline;
+
+/**
+ * Symbolic minimization of the POPL14 paper by D'Antoni and Veanes,
+ * Minimization of symbolic automata, on an integer-indexed partition. States
+ * are renamed to 0,...,n-1, each block is an intrusive doubly linked list over
+ * the arrays <code>next</code> and <code>prev</code>, and blocks that might
+ * still be split are kept in a stack with constant time membership.
+ */
+final class HopcroftMinimizer<A, B> {
+
+	private final BooleanAlgebra<A, B> ba;
+
+	// the automaton to minimize, over dense state ids
+	private final FrozenSFA<A, B> aut;
+	private final int n;
+
+	// the partition
+	private final int[] blockOf;
+	private final int[] next;
+	private final int[] prev;
+	private final int[] blockFirst;
+	private final int[] blockSize;
+	private int blockCount;
+
+	// blocks that might still be split
+	private final int[] toExplore;
+	private final boolean[] isToExplore;
+	private int toExploreSize;
+
+	// stateToPredIntoCurrentBlock[s] is the predicate for which a move of s
+	// goes into the block being explored
+	private final Object[] stateToPredIntoCurrentBlock;
+
+	private HopcroftMinimizer(FrozenSFA<A, B> aut, BooleanAlgebra<A, B> ba) {
+		this.ba = ba;
+		this.aut = aut;
+		this.n = aut.n;
+
+		blockOf = new int[n];
+		next = new int[n];
+		prev = new int[n];
+		// one more block than states since the initial split can be empty
+		blockFirst = new int[n + 1];
+		blockSize = new int[n + 1];
+		Arrays.fill(blockFirst, -1);
+		blockCount = 0;
+
+		toExplore = new int[n + 1];
+		isToExplore = new boolean[n + 1];
+		toExploreSize = 0;
+
+		stateToPredIntoCurrentBlock = new Object[n];
+	}
+
+	/**
+	 * @return a minimized copy of <code>aut<code>
+	 * @throws TimeoutException
+	 */
+	static <A, B> SFA<A, B> getMinimalOf(SFA<A, B> aut, BooleanAlgebra<A, B> ba) throws TimeoutException {
+
+		if (aut.isEmpty())
+			return SFA.getEmptySFA(ba);
+
+		SFA<A, B> totalAut = aut;
+		if (!aut.isDeterministic())
+			totalAut = aut.determinize(ba);
+
+		totalAut = totalAut.mkTotal(ba);
+
+		// the moves into every state are read from the array representation
+		FrozenSFA<A, B> frozenAut = totalAut.freeze();
+		int n = frozenAut.n;
+
+		HopcroftMinimizer<A, B> minimizer = new HopcroftMinimizer<A, B>(frozenAut, ba);
+		minimizer.refine();
+
+		// minimal automaton components
+		Collection<SFAMove<A, B>> transitions = new ArrayList<SFAMove<A, B>>();
+		Collection<Integer> finalStates = new HashSet<Integer>();
+		int[] blockToIndex = new int[n + 1];
+		Arrays.fill(blockToIndex, -1);
+		int classes = 0;
+
+		// One state per block
+		for (int q = 0; q < n; q++) {
+			int b = minimizer.blockOf[q];
+			if (blockToIndex[b] == -1)
+				blockToIndex[b] = classes++;
+			if (frozenAut.finalStates.get(q))
+				finalStates.add(blockToIndex[b]);
+		}
+
+		// Create minimal automaton from equivalence classes
+		for (int b = 0; b < minimizer.blockCount; b++) {
+			int st = blockToIndex[b];
+			for (int q = minimizer.blockFirst[b]; q != -1; q = minimizer.next[q])
+				for (int k = frozenAut.moveStart[q]; k < frozenAut.moveStart[q + 1]; k++)
+					transitions.add(new SFAInputMove<A, B>(st, blockToIndex[minimizer.blockOf[frozenAut.moveTo[k]]],
+							frozenAut.moveGuard(k)));
+		}
+
+		int initialState = blockToIndex[minimizer.blockOf[frozenAut.initialState]];
+		return SFA.MkSFA(transitions, initialState, finalStates, ba, false, true);
+	}
+
+	// Computes the coarsest partition compatible with the moves starting from
+	// final and non-final states
+	private void refine() throws TimeoutException {
+
+		// Initially split states into final and non-final
+		int fB = newBlock();
+		int nfB = newBlock();
+		for (int q = n - 1; q >= 0; q--)
+			addToBlock(q, aut.finalStates.get(q) ? fB : nfB);
+
+		// Initialize search stack with the smallest block
+		if (blockSize[nfB] < blockSize[fB])
+			pushToExplore(nfB);
+		else
+			pushToExplore(fB);
+
+		// preOfCurrentBlock lists the states for which
+		// stateToPredIntoCurrentBlock is defined
+		int[] preOfCurrentBlock = new int[n];
+
+		// scratch arrays indexed by block
+		int[] blockMark = new int[n + 1];
+		Arrays.fill(blockMark, -1);
+		int[] preCount = new int[n + 1];
+		int[] splitOf = new int[n + 1];
+		int[] relevantBlocks = new int[n + 1];
+		int[] splitBlock = new int[n];
+		int round = 0;
+
+		// Continue until all blocks have been split
+		while (toExploreSize > 0) {
+			Deadline.checkCurrent();
+			int currentBlock = toExplore[--toExploreSize];
+			isToExplore[currentBlock] = false;
+
+			int preSize = 0;
+			for (int t = blockFirst[currentBlock]; t != -1; t = next[t])
+				for (int k = aut.inStart[t]; k < aut.inStart[t + 1]; k++) {
+					int p = aut.inMoveFrom[k];
+					A guard = aut.inMoveGuard(k);
+					if (stateToPredIntoCurrentBlock[p] == null) {
+						stateToPredIntoCurrentBlock[p] = guard;
+						preOfCurrentBlock[preSize++] = p;
+					} else
+						stateToPredIntoCurrentBlock[p] = ba.MkOr(pred(p), guard);
+				}
+
+			// Blocks intersecting with preOfCurrentBlock
+			int relevantCount = 0;
+			round++;
+			for (int i = 0; i < preSize; i++) {
+				int b = blockOf[preOfCurrentBlock[i]];
+				if (blockMark[b] != round) {
+					blockMark[b] = round;
+					preCount[b] = 0;
+					splitOf[b] = -1;
+					relevantBlocks[relevantCount++] = b;
+				}
+				preCount[b]++;
+			}
+
+			// split relevant blocks into the part inside and the part outside
+			// preOfCurrentBlock
+			for (int i = 0; i < relevantCount; i++) {
+				int b = relevantBlocks[i];
+				if (preCount[b] < blockSize[b])
+					splitOf[b] = newBlock();
+			}
+			for (int i = 0; i < preSize; i++) {
+				int p = preOfCurrentBlock[i];
+				int b = blockOf[p];
+				if (blockMark[b] == round && splitOf[b] != -1) {
+					removeFromBlock(p);
+					addToBlock(p, splitOf[b]);
+				}
+			}
+			for (int i = 0; i < relevantCount; i++) {
+				int b = relevantBlocks[i];
+				if (splitOf[b] != -1)
+					updateToExplore(b, splitOf[b]);
+			}
+
+			boolean iterate = true;
+			while (iterate) {
+				iterate = false;
+
+				// Blocks intersecting with preOfCurrentBlock
+				relevantCount = 0;
+				round++;
+				for (int i = 0; i < preSize; i++) {
+					int b = blockOf[preOfCurrentBlock[i]];
+					if (blockMark[b] != round) {
+						blockMark[b] = round;
+						relevantBlocks[relevantCount++] = b;
+					}
+				}
+
+				// split relevant blocks
+				for (int i = 0; i < relevantCount; i++) {
+					int relevantBlock = relevantBlocks[i];
+					int splitSize = 0;
+
+					int current = blockFirst[relevantBlock];
+					A psi = pred(current);
+
+					boolean splitterFound = false;
+					splitBlock[splitSize++] = current;
+
+					for (int q = next[current]; q != -1; q = next[q]) {
+						A phi = pred(q);
+						if (splitterFound) {
+							A conj = ba.MkAnd(psi, phi);
+							if (ba.IsSatisfiable(conj)) {
+								splitBlock[splitSize++] = q;
+								psi = conj;
+							}
+						} else {
+							A conj = ba.MkAnd(psi, ba.MkNot(phi));
+							if (ba.IsSatisfiable(conj)) {
+								psi = conj; // refine the local minterm
+								splitterFound = true;
+							} else { // psi implies phi
+								conj = ba.MkAnd(phi, ba.MkNot(psi));
+								if (ba.IsSatisfiable(conj)) {
+									splitSize = 0;
+									splitBlock[splitSize++] = q;
+									psi = conj;
+									splitterFound = true;
+								} else {
+									splitBlock[splitSize++] = q;
+								}
+							}
+						}
+					}
+
+					// Change only if the split made the block smaller
+					if (splitSize < blockSize[relevantBlock]) {
+						// (a,R)-split of P for some a
+						iterate = (iterate || (blockSize[relevantBlock] > 2));
+						int newB = newBlock();
+						for (int j = 0; j < splitSize; j++) {
+							removeFromBlock(splitBlock[j]);
+							addToBlock(splitBlock[j], newB);
+						}
+						updateToExplore(relevantBlock, newB);
+					}
+				}
+			}
+
+			for (int i = 0; i < preSize; i++)
+				stateToPredIntoCurrentBlock[preOfCurrentBlock[i]] = null;
+		}
+	}
+
+	// After splitBlock has been split off relevantBlock, make sure at least
+	// the smaller of the two will be explored
+	private void updateToExplore(int relevantBlock, int splitBlock) {
+		if (isToExplore[relevantBlock])
+			pushToExplore(splitBlock);
+		else if (blockSize[relevantBlock] <= blockSize[splitBlock])
+			pushToExplore(relevantBlock);
+		else
+			pushToExplore(splitBlock);
+	}
+
+	@SuppressWarnings("unchecked")
+	private A pred(int q) {
+		return (A) stateToPredIntoCurrentBlock[q];
+	}
+
+	private void pushToExplore(int b) {
+		if (!isToExplore[b]) {
+			isToExplore[b] = true;
+			toExplore[toExploreSize++] = b;
+		}
+	}
+
+	private int newBlock() {
+		return blockCount++;
+	}
+
+	private void addToBlock(int q, int b) {
+		blockOf[q] = b;
+		prev[q] = -1;
+		next[q] = blockFirst[b];
+		if (blockFirst[b] != -1)
+			prev[blockFirst[b]] = q;
+		blockFirst[b] = q;
+		blockSize[b]++;
+	}
+
+	private void removeFromBlock(int q) {
+		int b = blockOf[q];
+		if (prev[q] != -1)
+			next[prev[q]] = next[q];
+		else
+			blockFirst[b] = next[q];
+		if (next[q] != -1)
+			prev[next[q]] = prev[q];
+		blockSize[b]--;
+	}
+}
@@ -0,0 +1,344 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+import utilities.StateSet;
+
+/**
+ * Matcher for a nondeterministic SFA that determinizes it lazily. The subset
+ * states reached while matching are cached together with their moves, one
+ * per minterm of the guards leaving them, so a cached state costs one
+ * <code>HasModel</code> per minterm instead of one per move of its states.
+ * The cache holds at most a fixed number of subset states and evicts them
+ * with the clock algorithm. When an input keeps evicting states the matcher
+ * stops caching and simulates the SFA directly for the rest of that input.
+ * Instances are not thread-safe.
+ */
+public class LazyDFAMatcher<P, S> {
+
+	/**
+	 * Default maximum number of cached subset states
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	// An input is thrashing once it caused more evictions than the capacity
+	// and more than this fraction of its steps were misses
+	private static final double THRASHING_MISS_RATE = 0.5;
+
+	private final SFA<P, S> aut;
+	private final BooleanAlgebra<P, S> ba;
+	private final int capacity;
+
+	private final Map<StateSet, Entry<P>> cache = new HashMap<StateSet, Entry<P>>();
+	private final List<Entry<P>> clock = new ArrayList<Entry<P>>();
+	private int hand = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long fallbacks = 0;
+
+	// A cached subset state, its moves are null until it is expanded and
+	// once it is evicted
+	private static final class Entry<P> {
+		final StateSet states;
+		final boolean isFinal;
+		List<P> guards;
+		List<StateSet> targets;
+		// the entries of the targets, possibly evicted since
+		List<Entry<P>> next;
+		boolean referenced = true;
+		boolean evicted = false;
+
+		Entry(StateSet states, boolean isFinal) {
+			this.states = states;
+			this.isFinal = isFinal;
+		}
+
+		// drops the moves, so that the entries still linking to this one do
+		// not keep its successors alive
+		void evict() {
+			evicted = true;
+			guards = null;
+			targets = null;
+			next = null;
+		}
+	}
+
+	/**
+	 * Matcher for <code>aut</code> caching at most
+	 * <code>DEFAULT_CAPACITY</code> subset states
+	 *
+	 * @throws TimeoutException
+	 */
+	public LazyDFAMatcher(SFA<P, S> aut, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		this(aut, ba, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Matcher for <code>aut</code> caching at most <code>capacity</code>
+	 * subset states
+	 *
+	 * @throws TimeoutException
+	 */
+	public LazyDFAMatcher(SFA<P, S> aut, BooleanAlgebra<P, S> ba, int capacity) throws TimeoutException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("The capacity must be positive");
+		this.aut = aut.isEpsilonFree() ? aut : aut.removeEpsilonMoves(ba);
+		this.ba = ba;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return true iff <code>input</code> is accepted
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(Iterable<S> input) throws TimeoutException {
+		long startMisses = misses;
+		long startEvictions = evictions;
+		long steps = 0;
+
+		Entry<P> current = getEntry(StateSet.singleton(aut.getInitialState()));
+		StateSet states = null;
+		for (S el : input) {
+			if (states != null) {
+				// fallback mode
+				states = getNextStates(states, el);
+				if (states.isEmpty())
+					return false;
+				continue;
+			}
+
+			current = step(current, el);
+			if (current.states.isEmpty())
+				return false;
+
+			steps++;
+			if (evictions - startEvictions > capacity && misses - startMisses > steps * THRASHING_MISS_RATE) {
+				fallbacks++;
+				states = current.states;
+			}
+		}
+		return states == null ? current.isFinal : isFinal(states);
+	}
+
+	/**
+	 * @return number of cached subset states
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 * @return maximum number of cached subset states
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of steps that only used cached subset states
+	 */
+	public long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return number of steps that had to compute a subset state or its moves
+	 */
+	public long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return fraction of the steps that were hits, 0 if there was no step
+	 */
+	public double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return number of subset states evicted from the cache
+	 */
+	public long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return number of moves held by the cached subset states and by the
+	 *         evicted ones reachable through their links, which is bounded by
+	 *         the capacity times the number of minterms of a subset state
+	 */
+	public long getRetainedMoveCount() {
+		Set<Entry<P>> seen = Collections.newSetFromMap(new IdentityHashMap<Entry<P>, Boolean>());
+		List<Entry<P>> toVisit = new ArrayList<Entry<P>>(clock);
+		seen.addAll(clock);
+		long moves = 0;
+		while (!toVisit.isEmpty()) {
+			Entry<P> entry = toVisit.remove(toVisit.size() - 1);
+			if (entry.next == null)
+				continue;
+			moves += entry.guards.size();
+			for (Entry<P> target : entry.next)
+				if (target != null && seen.add(target))
+					toVisit.add(target);
+		}
+		return moves;
+	}
+
+	/**
+	 * @return number of inputs for which the matcher fell back to simulating
+	 *         the SFA
+	 */
+	public long getFallbackCount() {
+		return fallbacks;
+	}
+
+	/**
+	 * Sets all the counters to 0
+	 */
+	public void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		fallbacks = 0;
+	}
+
+	/**
+	 * Removes all the cached subset states
+	 */
+	public void clearCache() {
+		for (Entry<P> entry : clock)
+			entry.evict();
+		cache.clear();
+		clock.clear();
+		hand = 0;
+	}
+
+	// Returns the entry reached from current reading el
+	private Entry<P> step(Entry<P> current, S el) throws TimeoutException {
+		boolean miss = false;
+		// the moves of an evicted entry are not computed again, it is cached
+		// anew instead
+		if (current.evicted) {
+			miss = true;
+			current = getEntry(current.states);
+		}
+		if (current.guards == null) {
+			miss = true;
+			expand(current);
+			current.next = new ArrayList<Entry<P>>(Collections.<Entry<P>> nCopies(current.targets.size(), null));
+		}
+
+		Entry<P> next = null;
+		for (int k = 0; k < current.guards.size(); k++)
+			if (ba.HasModel(current.guards.get(k), el)) {
+				next = current.next.get(k);
+				if (next == null || next.evicted) {
+					next = cache.get(current.targets.get(k));
+					if (next == null) {
+						miss = true;
+						next = getEntry(current.targets.get(k));
+					}
+					// with a small capacity current may have just been evicted
+					if (!current.evicted)
+						current.next.set(k, next);
+				}
+				break;
+			}
+		if (next == null)
+			next = getEntry(StateSet.empty());
+
+		next.referenced = true;
+		if (miss)
+			misses++;
+		else
+			hits++;
+		return next;
+	}
+
+	// Computes the moves of entry, one for every minterm of the guards of
+	// its states
+	private void expand(Entry<P> entry) throws TimeoutException {
+		ArrayList<P> predicates = new ArrayList<P>();
+		List<Integer> moveTargets = new ArrayList<Integer>();
+		for (Integer state : entry.states)
+			for (SFAInputMove<P, S> move : aut.getInputMovesFrom(state)) {
+				predicates.add(move.guard);
+				moveTargets.add(move.to);
+			}
+
+		List<P> guards = new ArrayList<P>();
+		List<StateSet> targets = new ArrayList<StateSet>();
+		int[] buffer = new int[moveTargets.size()];
+		for (Pair<P, ArrayList<Integer>> minterm : ba.GetMinterms(predicates)) {
+			int size = 0;
+			for (int k = 0; k < minterm.second.size(); k++)
+				if (minterm.second.get(k) == 1)
+					buffer[size++] = moveTargets.get(k);
+			if (size > 0) {
+				guards.add(minterm.first);
+				targets.add(StateSet.of(buffer, size));
+			}
+		}
+		entry.guards = guards;
+		entry.targets = targets;
+	}
+
+	// Returns the cached entry of states, adding it if needed
+	private Entry<P> getEntry(StateSet states) {
+		Entry<P> entry = cache.get(states);
+		if (entry != null)
+			return entry;
+
+		entry = new Entry<P>(states, isFinal(states));
+		if (clock.size() < capacity) {
+			clock.add(entry);
+		} else {
+			// the first entry not referenced since the hand last passed
+			while (clock.get(hand).referenced) {
+				clock.get(hand).referenced = false;
+				hand = (hand + 1) % capacity;
+			}
+			Entry<P> victim = clock.get(hand);
+			victim.evict();
+			cache.remove(victim.states);
+			evictions++;
+			clock.set(hand, entry);
+			hand = (hand + 1) % capacity;
+		}
+		cache.put(states, entry);
+		return entry;
+	}
+
+	// Returns the states reached from states reading el, without caching
+	private StateSet getNextStates(StateSet states, S el) throws TimeoutException {
+		List<Integer> next = new ArrayList<Integer>();
+		for (Integer state : states) {
+			Collection<SFAInputMove<P, S>> moves = aut.getInputMovesFrom(state);
+			for (SFAInputMove<P, S> move : moves)
+				if (ba.HasModel(move.guard, el))
+					next.add(move.to);
+		}
+		return StateSet.of(next);
+	}
+
+	private boolean isFinal(StateSet states) {
+		for (Integer state : states)
+			if (aut.isFinalState(state))
+				return true;
+		return false;
+	}
+}
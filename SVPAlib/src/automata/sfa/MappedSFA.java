@@ -0,0 +1,438 @@
+package automata.sfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.Automaton;
+import automata.Move;
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+/**
+ * Read-only character SFA stored outside the heap, usually in a memory-mapped
+ * file written with {@link #write(SFA, UnaryCharIntervalSolver, Path)}. The
+ * states are numbered from 0 and the moves are kept in compressed sparse row
+ * layout: the moves out of state q are the ones from
+ * <code>moveStart[q]</code> (included) to <code>moveStart[q + 1]</code>
+ * (excluded), and the guard of move m is made of the intervals from
+ * <code>guardStart[m]</code> to <code>guardStart[m + 1]</code>. The moves
+ * into each state are indexed the same way. Moves are only materialized as
+ * objects when they are queried, and {@link #accepts(CharSequence)} runs
+ * without leaving the buffer. Since the file is mapped read-only, several
+ * processes reading it share a single copy in memory.
+ */
+public final class MappedSFA extends Automaton<CharPred, Character> {
+
+	private static final int MAGIC = 0x5356504D; // SVPM
+	private static final int VERSION = 1;
+
+	// magic, version, flags, state count, initial state, move count,
+	// interval count
+	private static final int HEADER_INTS = 7;
+
+	private static final int DETERMINISTIC_FLAG = 1;
+
+	private final ByteBuffer buffer;
+	private final int stateCount;
+	private final int initialState;
+	private final int moveCount;
+
+	// byte offsets of the arrays in the buffer
+	private final int moveStartOffset;
+	private final int moveTargetOffset;
+	private final int guardStartOffset;
+	private final int inStartOffset;
+	private final int inMoveOffset;
+	private final int finalOffset;
+	private final int boundsOffset;
+
+	/**
+	 * View of the automaton stored in <code>buffer</code> from its position,
+	 * the buffer must not be modified afterwards
+	 *
+	 * @throws IOException
+	 *             if the buffer does not contain an automaton in the known
+	 *             version of the layout
+	 */
+	public MappedSFA(ByteBuffer buffer) throws IOException {
+		super();
+		this.buffer = buffer.slice();
+		if (this.buffer.remaining() < 4 * HEADER_INTS || this.buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a mapped SFA");
+		if (this.buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported layout version " + this.buffer.getInt(4));
+
+		int flags = this.buffer.getInt(8);
+		stateCount = this.buffer.getInt(12);
+		initialState = this.buffer.getInt(16);
+		moveCount = this.buffer.getInt(20);
+		int intervalCount = this.buffer.getInt(24);
+
+		moveStartOffset = 4 * HEADER_INTS;
+		moveTargetOffset = moveStartOffset + 4 * (stateCount + 1);
+		guardStartOffset = moveTargetOffset + 4 * moveCount;
+		inStartOffset = guardStartOffset + 4 * (moveCount + 1);
+		inMoveOffset = inStartOffset + 4 * (stateCount + 1);
+		finalOffset = inMoveOffset + 4 * moveCount;
+		boundsOffset = finalOffset + 4 * ((stateCount + 31) / 32);
+		if ((long) boundsOffset + 4L * intervalCount > this.buffer.limit())
+			throw new IOException("Truncated mapped SFA");
+
+		isDeterministic = (flags & DETERMINISTIC_FLAG) != 0;
+		isEpsilonFree = true;
+		isEmpty = getFinalStates().isEmpty();
+	}
+
+	/**
+	 * @return a view of the automaton in the file at <code>path</code>, which
+	 *         is mapped in memory read-only
+	 * @throws IOException
+	 */
+	public static MappedSFA open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new MappedSFA(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Writes <code>aut</code> to the file at <code>path</code> in the layout
+	 * read by {@link #open(Path)}. The epsilon moves are removed and the
+	 * states are renumbered from 0 in increasing order of their ids. The file
+	 * must not be overwritten while it is mapped.
+	 *
+	 * @throws IOException
+	 * @throws TimeoutException
+	 */
+	public static void write(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba, Path path)
+			throws IOException, TimeoutException {
+		ByteBuffer layout = toByteBuffer(aut, ba);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (layout.hasRemaining())
+				channel.write(layout);
+		}
+	}
+
+	/**
+	 * @return a heap buffer containing <code>aut</code> in the layout read by
+	 *         {@link #MappedSFA(ByteBuffer)}
+	 * @throws TimeoutException
+	 */
+	public static ByteBuffer toByteBuffer(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba)
+			throws TimeoutException {
+		SFA<CharPred, Character> epsFree = aut.isEpsilonFree() ? aut : aut.removeEpsilonMoves(ba);
+
+		// Dense ids, assigned in increasing order of the original ids
+		List<Integer> states = new ArrayList<Integer>(epsFree.getStates());
+		if (!states.contains(epsFree.getInitialState()))
+			states.add(epsFree.getInitialState());
+		Collections.sort(states);
+		Map<Integer, Integer> stateToId = new HashMap<Integer, Integer>();
+		for (Integer state : states)
+			stateToId.put(state, stateToId.size());
+		int stateCount = states.size();
+
+		List<SFAInputMove<CharPred, Character>> moves = new ArrayList<SFAInputMove<CharPred, Character>>();
+		int[] moveStart = new int[stateCount + 1];
+		int[] inStart = new int[stateCount + 1];
+		int intervalCount = 0;
+		for (int id = 0; id < stateCount; id++) {
+			for (SFAInputMove<CharPred, Character> move : epsFree.getInputMovesFrom(states.get(id))) {
+				moves.add(move);
+				inStart[stateToId.get(move.to) + 1]++;
+				intervalCount += move.guard.intervalCount();
+			}
+			moveStart[id + 1] = moves.size();
+		}
+		for (int id = 0; id < stateCount; id++)
+			inStart[id + 1] += inStart[id];
+
+		int moveCount = moves.size();
+		int finalWords = (stateCount + 31) / 32;
+		ByteBuffer layout = ByteBuffer.allocate(4 * (HEADER_INTS + 2 * (stateCount + 1) + 3 * moveCount + 1
+				+ finalWords + intervalCount));
+
+		layout.putInt(MAGIC).putInt(VERSION).putInt(epsFree.isDeterministic(ba) ? DETERMINISTIC_FLAG : 0);
+		layout.putInt(stateCount).putInt(stateToId.get(epsFree.getInitialState())).putInt(moveCount)
+				.putInt(intervalCount);
+
+		for (int start : moveStart)
+			layout.putInt(start);
+		for (SFAInputMove<CharPred, Character> move : moves)
+			layout.putInt(stateToId.get(move.to));
+		int guardStart = 0;
+		layout.putInt(guardStart);
+		for (SFAInputMove<CharPred, Character> move : moves) {
+			guardStart += move.guard.intervalCount();
+			layout.putInt(guardStart);
+		}
+
+		// moves into every state, in increasing order of index
+		for (int start : inStart)
+			layout.putInt(start);
+		int[] inMove = new int[moveCount];
+		int[] inNext = inStart.clone();
+		for (int m = 0; m < moveCount; m++)
+			inMove[inNext[stateToId.get(moves.get(m).to)]++] = m;
+		for (int m : inMove)
+			layout.putInt(m);
+
+		int[] finals = new int[finalWords];
+		for (Integer state : epsFree.getFinalStates())
+			finals[stateToId.get(state) / 32] |= 1 << (stateToId.get(state) % 32);
+		for (int word : finals)
+			layout.putInt(word);
+
+		for (SFAInputMove<CharPred, Character> move : moves)
+			for (int i = 0; i < move.guard.intervalCount(); i++)
+				layout.putChar(move.guard.getLow(i)).putChar(move.guard.getHigh(i));
+
+		layout.flip();
+		return layout;
+	}
+
+	// ------------------------------------------------------
+	// Off-heap queries
+	// ------------------------------------------------------
+
+	/**
+	 * @return true iff <code>input</code> is accepted
+	 */
+	public boolean accepts(CharSequence input) {
+		if (isDeterministic) {
+			int state = initialState;
+			for (int i = 0; i < input.length() && state >= 0; i++)
+				state = step(state, input.charAt(i));
+			return state >= 0 && isFinalState(state);
+		}
+
+		// the states of the current and next configuration, with a bitmap to
+		// avoid duplicates
+		int[] current = new int[stateCount];
+		int[] next = new int[stateCount];
+		boolean[] inNext = new boolean[stateCount];
+		current[0] = initialState;
+		int size = 1;
+		for (int i = 0; i < input.length() && size > 0; i++) {
+			char c = input.charAt(i);
+			int nextSize = 0;
+			for (int j = 0; j < size; j++)
+				for (int m = moveStart(current[j]); m < moveStart(current[j] + 1); m++) {
+					int to = moveTarget(m);
+					if (!inNext[to] && guardContains(m, c)) {
+						inNext[to] = true;
+						next[nextSize++] = to;
+					}
+				}
+			for (int j = 0; j < nextSize; j++)
+				inNext[next[j]] = false;
+			int[] tmp = current;
+			current = next;
+			next = tmp;
+			size = nextSize;
+		}
+		for (int j = 0; j < size; j++)
+			if (isFinalState(current[j]))
+				return true;
+		return false;
+	}
+
+	@Override
+	public boolean accepts(List<Character> input, BooleanAlgebra<CharPred, Character> ba) {
+		StringBuilder sb = new StringBuilder(input.size());
+		for (Character c : input)
+			sb.append(c);
+		return accepts(sb);
+	}
+
+	/**
+	 * @return the state reached from <code>state</code> reading <code>c</code>
+	 *         through the first move whose guard contains it, or -1 if there
+	 *         is no such move
+	 */
+	public int step(int state, char c) {
+		for (int m = moveStart(state); m < moveStart(state + 1); m++)
+			if (guardContains(m, c))
+				return moveTarget(m);
+		return -1;
+	}
+
+	@Override
+	public boolean isFinalState(Integer state) {
+		return isFinalState(state.intValue());
+	}
+
+	/**
+	 * @return true iff <code>state</code> is final
+	 */
+	public boolean isFinalState(int state) {
+		return state >= 0 && state < stateCount
+				&& (buffer.getInt(finalOffset + 4 * (state / 32)) & (1 << (state % 32))) != 0;
+	}
+
+	/**
+	 * @return number of states
+	 */
+	public int stateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * @return number of moves
+	 */
+	public int getTransitionCount() {
+		return moveCount;
+	}
+
+	// ------------------------------------------------------
+	// Automaton queries, materializing the moves
+	// ------------------------------------------------------
+
+	/**
+	 * @return the moves out of <code>state</code>
+	 */
+	public Collection<SFAInputMove<CharPred, Character>> getInputMovesFrom(Integer state) {
+		List<SFAInputMove<CharPred, Character>> moves = new ArrayList<SFAInputMove<CharPred, Character>>();
+		if (state < 0 || state >= stateCount)
+			return moves;
+		for (int m = moveStart(state); m < moveStart(state + 1); m++)
+			moves.add(getMove(state, m));
+		return moves;
+	}
+
+	/**
+	 * @return the moves into <code>state</code>
+	 */
+	public Collection<SFAInputMove<CharPred, Character>> getInputMovesTo(Integer state) {
+		List<SFAInputMove<CharPred, Character>> moves = new ArrayList<SFAInputMove<CharPred, Character>>();
+		if (state < 0 || state >= stateCount)
+			return moves;
+		int end = buffer.getInt(inStartOffset + 4 * (state + 1));
+		for (int i = buffer.getInt(inStartOffset + 4 * state); i < end; i++) {
+			int m = buffer.getInt(inMoveOffset + 4 * i);
+			moves.add(getMove(getSource(m), m));
+		}
+		return moves;
+	}
+
+	@Override
+	public Collection<Move<CharPred, Character>> getMovesFrom(Integer state) {
+		return new LinkedList<Move<CharPred, Character>>(getInputMovesFrom(state));
+	}
+
+	@Override
+	public Collection<Move<CharPred, Character>> getMovesTo(Integer state) {
+		return new LinkedList<Move<CharPred, Character>>(getInputMovesTo(state));
+	}
+
+	@Override
+	public Collection<Integer> getStates() {
+		return new AbstractList<Integer>() {
+			@Override
+			public Integer get(int index) {
+				if (index < 0 || index >= stateCount)
+					throw new IndexOutOfBoundsException();
+				return index;
+			}
+
+			@Override
+			public int size() {
+				return stateCount;
+			}
+		};
+	}
+
+	@Override
+	public Integer getInitialState() {
+		return initialState;
+	}
+
+	@Override
+	public Collection<Integer> getFinalStates() {
+		List<Integer> finalStates = new ArrayList<Integer>();
+		for (int state = 0; state < stateCount; state++)
+			if (isFinalState(state))
+				finalStates.add(state);
+		return finalStates;
+	}
+
+	/**
+	 * @return an equivalent SFA on the heap
+	 * @throws TimeoutException
+	 */
+	public SFA<CharPred, Character> toSFA(UnaryCharIntervalSolver ba) throws TimeoutException {
+		Collection<SFAMove<CharPred, Character>> transitions = new ArrayList<SFAMove<CharPred, Character>>();
+		for (int state = 0; state < stateCount; state++)
+			transitions.addAll(getInputMovesFrom(state));
+		return SFA.MkSFA(transitions, initialState, getFinalStates(), ba, false, false);
+	}
+
+	// ------------------------------------------------------
+	// Layout accessors
+	// ------------------------------------------------------
+
+	private int moveStart(int state) {
+		return buffer.getInt(moveStartOffset + 4 * state);
+	}
+
+	private int moveTarget(int move) {
+		return buffer.getInt(moveTargetOffset + 4 * move);
+	}
+
+	private int guardStart(int move) {
+		return buffer.getInt(guardStartOffset + 4 * move);
+	}
+
+	// Binary search of the source of move among the move ranges
+	private int getSource(int move) {
+		int low = 0;
+		int high = stateCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (moveStart(mid) <= move)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	// Binary search of c among the sorted intervals of the guard of move
+	private boolean guardContains(int move, char c) {
+		int low = guardStart(move);
+		int high = guardStart(move + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int offset = boundsOffset + 4 * mid;
+			if (c < buffer.getChar(offset))
+				high = mid - 1;
+			else if (c > buffer.getChar(offset + 2))
+				low = mid + 1;
+			else
+				return true;
+		}
+		return false;
+	}
+
+	private SFAInputMove<CharPred, Character> getMove(int from, int move) {
+		int start = guardStart(move);
+		char[] bounds = new char[2 * (guardStart(move + 1) - start)];
+		for (int i = 0; i < bounds.length; i++)
+			bounds[i] = buffer.getChar(boundsOffset + 4 * start + 2 * i);
+		return new SFAInputMove<CharPred, Character>(from, moveTarget(move), CharPred.ofBounds(bounds));
+	}
+}
@@ -0,0 +1,17 @@
+package automata.sfa;
+
+/**
+ * Algorithms available for SFA minimization
+ */
+public enum MinimizationAlgorithm {
+	/**
+	 * Symbolic partition refinement from the POPL14 paper by D'Antoni and
+	 * Veanes, Minimization of symbolic automata, on hash-based blocks
+	 */
+	DANTONI_VEANES,
+	/**
+	 * The same partition refinement on dense state ids, array-based blocks
+	 * and a worklist with constant time membership
+	 */
+	HOPCROFT_ARRAY
+}
@@ -0,0 +1,258 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import utilities.Pair;
+import utilities.StateSet;
+import utilities.StateSetTable;
+
+/**
+ * Matcher deciding in one pass over the input which of a list of character
+ * SFAs accept it. The states of all the patterns are numbered globally and the
+ * subset construction of their union is built lazily: a deterministic state is
+ * a set of global states, and its moves are computed the first time it is
+ * reached while matching. Every deterministic state stores the set of
+ * patterns that accept when the input ends in it. Instances are not
+ * thread-safe.
+ */
+public final class MultiSFAMatcher {
+
+	private static final int ASCII_SIZE = 128;
+
+	// Returned by step when no move applies
+	private static final int DEAD_STATE = -1;
+
+	private final UnaryCharIntervalSolver ba;
+	private final int patternCount;
+
+	// global state g belongs to pattern patternOf[g], is final iff
+	// isFinal[g], and has moves guards[g][k] to targets[g][k]
+	private final int[] patternOf;
+	private final boolean[] isFinal;
+	private final CharPred[][] guards;
+	private final int[][] targets;
+
+	// the deterministic states discovered so far, with their accepting
+	// patterns and their moves (null until expanded)
+	private final StateSetTable dfaStates = new StateSetTable();
+	private final ArrayList<BitSet> acceptingPatterns = new ArrayList<BitSet>();
+	private final ArrayList<Row> rows = new ArrayList<Row>();
+	private final int initialState;
+
+	// Moves out of a deterministic state as sorted disjoint intervals, with a
+	// lookup table for ASCII characters
+	private static final class Row {
+		final char[] lows;
+		final char[] highs;
+		final int[] targets;
+		final int[] ascii;
+
+		Row(char[] lows, char[] highs, int[] targets) {
+			this.lows = lows;
+			this.highs = highs;
+			this.targets = targets;
+			ascii = new int[ASCII_SIZE];
+			Arrays.fill(ascii, DEAD_STATE);
+			for (int i = 0; i < lows.length && lows[i] < ASCII_SIZE; i++)
+				for (int c = lows[i]; c <= Math.min(highs[i], ASCII_SIZE - 1); c++)
+					ascii[c] = targets[i];
+		}
+
+		int step(char c) {
+			if (c < ASCII_SIZE)
+				return ascii[c];
+			int i = Arrays.binarySearch(lows, c);
+			if (i < 0)
+				i = -i - 2;
+			if (i >= 0 && c <= highs[i])
+				return targets[i];
+			return DEAD_STATE;
+		}
+	}
+
+	/**
+	 * Builds a matcher for <code>patterns</code>, pattern i is the i-th
+	 * element of the list
+	 *
+	 * @throws TimeoutException
+	 */
+	public MultiSFAMatcher(List<SFA<CharPred, Character>> patterns, UnaryCharIntervalSolver ba)
+			throws TimeoutException {
+		this.ba = ba;
+		this.patternCount = patterns.size();
+
+		List<SFA<CharPred, Character>> epsFree = new ArrayList<SFA<CharPred, Character>>();
+		int stateCount = 0;
+		for (SFA<CharPred, Character> pattern : patterns) {
+			SFA<CharPred, Character> aut = pattern.isEpsilonFree() ? pattern : pattern.removeEpsilonMoves(ba);
+			epsFree.add(aut);
+			stateCount += aut.stateCount();
+		}
+
+		patternOf = new int[stateCount];
+		isFinal = new boolean[stateCount];
+		guards = new CharPred[stateCount][];
+		targets = new int[stateCount][];
+
+		BitSet initial = new BitSet(stateCount);
+		int offset = 0;
+		for (int p = 0; p < patternCount; p++) {
+			SFA<CharPred, Character> aut = epsFree.get(p);
+
+			// Dense ids, assigned in increasing order of the original ids
+			List<Integer> states = new ArrayList<Integer>(aut.getStates());
+			Collections.sort(states);
+			Map<Integer, Integer> stateToGlobal = new HashMap<Integer, Integer>();
+			for (Integer state : states)
+				stateToGlobal.put(state, offset + stateToGlobal.size());
+
+			for (Integer state : states) {
+				int g = stateToGlobal.get(state);
+				patternOf[g] = p;
+				isFinal[g] = aut.isFinalState(state);
+
+				Collection<SFAInputMove<CharPred, Character>> moves = aut.getInputMovesFrom(state);
+				guards[g] = new CharPred[moves.size()];
+				targets[g] = new int[moves.size()];
+				int k = 0;
+				for (SFAInputMove<CharPred, Character> move : moves) {
+					guards[g][k] = move.guard;
+					targets[g][k] = stateToGlobal.get(move.to);
+					k++;
+				}
+			}
+			Integer initialGlobal = stateToGlobal.get(aut.getInitialState());
+			if (initialGlobal != null)
+				initial.set(initialGlobal);
+			offset += states.size();
+		}
+
+		initialState = getDfaState(toStateSet(initial));
+	}
+
+	/**
+	 * @return the set of indices of the patterns accepting <code>input</code>
+	 * @throws TimeoutException
+	 */
+	public BitSet match(CharSequence input) throws TimeoutException {
+		int state = initialState;
+		for (int i = 0; i < input.length() && state != DEAD_STATE; i++)
+			state = step(state, input.charAt(i));
+		return state == DEAD_STATE ? new BitSet() : (BitSet) acceptingPatterns.get(state).clone();
+	}
+
+	/**
+	 * @return the set of indices of the patterns accepting the characters of
+	 *         <code>input</code> in positions <code>from</code> (included) to
+	 *         <code>to</code> (excluded)
+	 * @throws TimeoutException
+	 */
+	public BitSet match(char[] input, int from, int to) throws TimeoutException {
+		int state = initialState;
+		for (int i = from; i < to && state != DEAD_STATE; i++)
+			state = step(state, input[i]);
+		return state == DEAD_STATE ? new BitSet() : (BitSet) acceptingPatterns.get(state).clone();
+	}
+
+	/**
+	 * @return number of patterns
+	 */
+	public int getPatternCount() {
+		return patternCount;
+	}
+
+	/**
+	 * @return number of deterministic states discovered so far
+	 */
+	public int getCachedStateCount() {
+		return dfaStates.size();
+	}
+
+	// Returns the deterministic state reached from state reading c,
+	// expanding state if it was never expanded
+	private int step(int state, char c) throws TimeoutException {
+		Row row = rows.get(state);
+		if (row == null) {
+			row = expand(state);
+			rows.set(state, row);
+		}
+		return row.step(c);
+	}
+
+	// Computes the moves out of the deterministic state dfaState, one for
+	// every minterm of the guards of its global states
+	private Row expand(int dfaState) throws TimeoutException {
+		StateSet globals = dfaStates.get(dfaState);
+
+		ArrayList<CharPred> predicates = new ArrayList<CharPred>();
+		ArrayList<Integer> moveTargets = new ArrayList<Integer>();
+		for (int i = 0; i < globals.size(); i++) {
+			int g = globals.get(i);
+			for (int k = 0; k < guards[g].length; k++) {
+				predicates.add(guards[g][k]);
+				moveTargets.add(targets[g][k]);
+			}
+		}
+
+		// every interval is stored as {low, high, target}
+		List<int[]> intervals = new ArrayList<int[]>();
+		int[] buffer = new int[moveTargets.size()];
+		for (Pair<CharPred, ArrayList<Integer>> minterm : ba.GetMinterms(predicates, Long.MAX_VALUE)) {
+			int size = 0;
+			for (int k = 0; k < minterm.second.size(); k++)
+				if (minterm.second.get(k) == 1)
+					buffer[size++] = moveTargets.get(k);
+			if (size == 0)
+				continue;
+
+			int target = getDfaState(StateSet.of(buffer, size));
+			CharPred guard = minterm.first;
+			for (int i = 0; i < guard.intervalCount(); i++)
+				intervals.add(new int[] { guard.getLow(i), guard.getHigh(i), target });
+		}
+		Collections.sort(intervals, (i1, i2) -> i1[0] - i2[0]);
+
+		char[] lows = new char[intervals.size()];
+		char[] highs = new char[intervals.size()];
+		int[] rowTargets = new int[intervals.size()];
+		for (int i = 0; i < intervals.size(); i++) {
+			lows[i] = (char) intervals.get(i)[0];
+			highs[i] = (char) intervals.get(i)[1];
+			rowTargets[i] = intervals.get(i)[2];
+		}
+		return new Row(lows, highs, rowTargets);
+	}
+
+	// Returns the id of the deterministic state globals, adding it if new
+	private int getDfaState(StateSet globals) {
+		int id = dfaStates.intern(globals);
+		if (id == acceptingPatterns.size()) {
+			BitSet accepting = new BitSet(patternCount);
+			for (int i = 0; i < globals.size(); i++)
+				if (isFinal[globals.get(i)])
+					accepting.set(patternOf[globals.get(i)]);
+			acceptingPatterns.add(accepting);
+			rows.add(null);
+		}
+		return id;
+	}
+
+	private static StateSet toStateSet(BitSet bits) {
+		int[] states = new int[bits.cardinality()];
+		int size = 0;
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			states[size++] = i;
+		return StateSet.of(states, size);
+	}
+}
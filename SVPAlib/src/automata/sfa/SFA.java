@@ -7,14 +7,21 @@
 package automata.sfa;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.sat4j.specs.TimeoutException;
 
@@ -25,9 +32,14 @@ import automata.safa.SAFA;
 import automata.safa.SAFAInputMove;
 import automata.safa.booleanexpression.PositiveBooleanExpression;
 import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import utilities.AutomataMetrics;
+import utilities.Deadline;
 import utilities.Block;
 import utilities.Pair;
-import utilities.Timers;
+import utilities.StateSet;
+import utilities.StateSetTable;
 import utilities.UnionFindHopKarp;
 
 /**
@@ -101,6 +113,9 @@ public class SFA<P, S> extends Automaton<P, S> {
 	private Integer maxStateId;
 	private Integer transitionCount;
 
+	// array representation, built on first use
+	private volatile FrozenSFA<P, S> frozen;
+
 	/**
 	 * @return the maximum state id
 	 */
@@ -122,6 +137,18 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return transitionCount;
 	}
 
+	/**
+	 * @return the array representation of the automaton, built on first use
+	 */
+	FrozenSFA<P, S> freeze() {
+		FrozenSFA<P, S> f = frozen;
+		if (f == null) {
+			f = new FrozenSFA<P, S>(this);
+			frozen = f;
+		}
+		return f;
+	}
+
 	// ------------------------------------------------------
 	// Constructors
 	// ------------------------------------------------------
@@ -225,8 +252,11 @@ public class SFA<P, S> extends Automaton<P, S> {
 		if (remUnreachableStates)
 			aut = removeDeadOrUnreachableStates(aut, ba);
 
-		if (aut.finalStates.isEmpty() && !keepEmpty)
-			return getEmptySFA(ba);
+		if (aut.finalStates.isEmpty()) {
+			if (!keepEmpty)
+				return getEmptySFA(ba);
+			aut.isEmpty = true;
+		}
 
 		return aut;
 	}
@@ -243,6 +273,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 
 		if (skipSatCheck || transition.isSatisfiable(ba)) {
 
+			frozen = null;
 			transitionCount++;
 
 			if (transition.from > maxStateId)
@@ -300,60 +331,68 @@ public class SFA<P, S> extends Automaton<P, S> {
 		if (aut1.isEmpty || aut2.isEmpty)
 			return getEmptySFA(ba);
 
+		// Remove epsilon moves before starting
+		FrozenSFA<A, B> f1 = (aut1.isEpsilonFree ? aut1 : aut1.removeEpsilonMoves(ba)).freeze();
+		FrozenSFA<A, B> f2 = (aut2.isEpsilonFree ? aut2 : aut2.removeEpsilonMoves(ba)).freeze();
+
 		// components of new SFA
 		Collection<SFAMove<A, B>> transitions = new ArrayList<SFAMove<A, B>>();
 		Integer initialState = 0;
 		Collection<Integer> finalStates = new ArrayList<Integer>();
 
-		// reached contains the product states (p1,p2) we discovered and maps
-		// them to a stateId
-		HashMap<Pair<Integer, Integer>, Integer> reached = new HashMap<Pair<Integer, Integer>, Integer>();
-		// toVisit contains the product states we still have not explored
-		LinkedList<Pair<Integer, Integer>> toVisit = new LinkedList<Pair<Integer, Integer>>();
+		// reached maps the product states (p1,p2) we discovered, encoded as
+		// p1 * f2.n + p2, to a stateId. States get increasing ids as they
+		// are discovered and the components of state id are in first[id]
+		// and second[id]
+		HashMap<Long, Integer> reached = new HashMap<Long, Integer>();
+		int[] first = new int[16];
+		int[] second = new int[16];
 
 		// The initial state is the pair consisting of the initial
 		// states of aut1 and aut2
-		Pair<Integer, Integer> initPair = new Pair<Integer, Integer>(aut1.initialState, aut2.initialState);
-		reached.put(initPair, 0);
-		toVisit.add(initPair);
+		reached.put((long) f1.initialState * f2.n + f2.initialState, 0);
+		first[0] = f1.initialState;
+		second[0] = f2.initialState;
 
 		// Explore the product automaton until no new states can be reached
-		while (!toVisit.isEmpty()) {
-
-			Pair<Integer, Integer> currentState = toVisit.removeFirst();
-			int currentStateID = reached.get(currentState);
+		for (int currentStateID = 0; currentStateID < reached.size(); currentStateID++) {
 
-			// get the set of states reachable from currentState via epsilon
-			// moves
-			Collection<Integer> epsilonClosure1 = aut1.getEpsClosure(currentState.first, ba);
-			Collection<Integer> epsilonClosure2 = aut2.getEpsClosure(currentState.second, ba);
+			int p1 = first[currentStateID];
+			int p2 = second[currentStateID];
 
-			// if both the epsilon closures contain a final state currentStateID
-			// is final
-			if (aut1.isFinalConfiguration(epsilonClosure1) && aut2.isFinalConfiguration(epsilonClosure2))
+			// if both components are final currentStateID is final
+			if (f1.finalStates.get(p1) && f2.finalStates.get(p2))
 				finalStates.add(currentStateID);
 
 			// Try to pair transitions out of both automata
-			for (SFAInputMove<A, B> ct1 : aut1.getInputMovesFrom(epsilonClosure1))
-				for (SFAInputMove<A, B> ct2 : aut2.getInputMovesFrom(epsilonClosure2)) {
+			for (int k1 = f1.moveStart[p1]; k1 < f1.moveStart[p1 + 1]; k1++)
+				for (int k2 = f2.moveStart[p2]; k2 < f2.moveStart[p2 + 1]; k2++) {
 
 					if (System.currentTimeMillis() - startTime > timeout)
 						throw new TimeoutException();
+					Deadline.checkCurrent();
 
 					// create conjunction of the two guards and create
 					// transition only if the conjunction is satisfiable
-					A intersGuard = ba.MkAnd(ct1.guard, ct2.guard);
+					A intersGuard = ba.MkAnd(f1.moveGuard(k1), f2.moveGuard(k2));
 					if (ba.IsSatisfiable(intersGuard)) {
 
 						// Create new product transition and add it to
 						// transitions
-						Pair<Integer, Integer> nextState = new Pair<Integer, Integer>(ct1.to, ct2.to);
-
-						int nextStateId = getStateId(nextState, reached, toVisit);
-
-						SFAInputMove<A, B> newTrans = new SFAInputMove<A, B>(currentStateID, nextStateId, intersGuard);
+						long nextState = (long) f1.moveTo[k1] * f2.n + f2.moveTo[k2];
+						Integer nextStateId = reached.get(nextState);
+						if (nextStateId == null) {
+							nextStateId = reached.size();
+							reached.put(nextState, nextStateId);
+							if (nextStateId == first.length) {
+								first = Arrays.copyOf(first, 2 * nextStateId);
+								second = Arrays.copyOf(second, 2 * nextStateId);
+							}
+							first[nextStateId] = f1.moveTo[k1];
+							second[nextStateId] = f2.moveTo[k2];
+						}
 
-						transitions.add(newTrans);
+						transitions.add(new SFAInputMove<A, B>(currentStateID, nextStateId, intersGuard));
 					}
 
 				}
@@ -362,6 +401,139 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return MkSFA(transitions, initialState, finalStates, ba);
 	}
 
+	/**
+	 * Checks whether the intersection of <code>aut1</code> and
+	 * <code>aut2</code> is empty without building it
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <A, B> boolean intersectionIsEmpty(SFA<A, B> aut1, SFA<A, B> aut2, BooleanAlgebra<A, B> ba)
+			throws TimeoutException {
+		return intersectionIsEmpty(aut1, aut2, ba, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Checks whether the intersection of <code>aut1</code> and
+	 * <code>aut2</code> is empty without building it
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <A, B> boolean intersectionIsEmpty(SFA<A, B> aut1, SFA<A, B> aut2, BooleanAlgebra<A, B> ba,
+			long timeout) throws TimeoutException {
+		return intersectionWitness(Arrays.asList(aut1, aut2), ba, timeout) == null;
+	}
+
+	/**
+	 * @return a shortest sequence accepted by all the automata in
+	 *         <code>auts</code>, null if their intersection is empty
+	 * @throws TimeoutException
+	 */
+	public static <A, B> List<B> intersectionWitness(List<SFA<A, B>> auts, BooleanAlgebra<A, B> ba)
+			throws TimeoutException {
+		return intersectionWitness(auts, ba, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return a shortest sequence accepted by all the automata in
+	 *         <code>auts</code>, null if their intersection is empty. The
+	 *         product is explored breadth-first and on the fly, and the
+	 *         exploration stops at the first reached tuple of final states.
+	 * @throws TimeoutException
+	 */
+	public static <A, B> List<B> intersectionWitness(List<SFA<A, B>> auts, BooleanAlgebra<A, B> ba, long timeout)
+			throws TimeoutException {
+
+		long startTime = System.currentTimeMillis();
+
+		if (auts.isEmpty())
+			throw new IllegalArgumentException("At least one automaton is needed");
+		for (SFA<A, B> aut : auts)
+			if (aut.isEmpty)
+				return null;
+
+		// reached contains the tuples of states we discovered and maps them
+		// to an id, parent and guardFromParent are the move used to discover
+		// each tuple
+		HashMap<List<Integer>, Integer> reached = new HashMap<List<Integer>, Integer>();
+		ArrayList<List<Integer>> idToTuple = new ArrayList<List<Integer>>();
+		ArrayList<Integer> parent = new ArrayList<Integer>();
+		ArrayList<A> guardFromParent = new ArrayList<A>();
+
+		List<Integer> initTuple = new ArrayList<Integer>(auts.size());
+		for (SFA<A, B> aut : auts)
+			initTuple.add(aut.initialState);
+		reached.put(initTuple, 0);
+		idToTuple.add(initTuple);
+		parent.add(-1);
+		guardFromParent.add(null);
+
+		// Explore the product breadth-first, tuples are visited in the order
+		// of their ids
+		for (int currentId = 0; currentId < idToTuple.size(); currentId++) {
+
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
+
+			List<Integer> currentTuple = idToTuple.get(currentId);
+			List<Collection<Integer>> closures = new ArrayList<Collection<Integer>>(auts.size());
+			boolean isFinal = true;
+			for (int i = 0; i < auts.size(); i++) {
+				Collection<Integer> closure = auts.get(i).getEpsClosure(currentTuple.get(i), ba);
+				closures.add(closure);
+				isFinal = isFinal && auts.get(i).isFinalConfiguration(closure);
+			}
+
+			// Early exit, rebuild the witness from the parents
+			if (isFinal) {
+				LinkedList<B> witness = new LinkedList<B>();
+				for (int id = currentId; parent.get(id) != -1; id = parent.get(id))
+					witness.addFirst(ba.generateWitness(guardFromParent.get(id)));
+				return witness;
+			}
+
+			List<Pair<A, Integer[]>> productMoves = new ArrayList<Pair<A, Integer[]>>();
+			getProductMovesFrom(auts, closures, 0, null, new Integer[auts.size()], ba, productMoves, startTime,
+					timeout);
+			for (Pair<A, Integer[]> move : productMoves) {
+				List<Integer> nextTuple = Arrays.asList(move.second);
+				if (!reached.containsKey(nextTuple)) {
+					reached.put(nextTuple, idToTuple.size());
+					idToTuple.add(nextTuple);
+					parent.add(currentId);
+					guardFromParent.add(move.first);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	// Adds to productMoves the moves out of the closures that combine one
+	// move of each automaton from the index-th one on, with a satisfiable
+	// conjunction of guardSoFar and their guards
+	private static <A, B> void getProductMovesFrom(List<SFA<A, B>> auts, List<Collection<Integer>> closures,
+			int index, A guardSoFar, Integer[] targets, BooleanAlgebra<A, B> ba, List<Pair<A, Integer[]>> productMoves,
+			long startTime, long timeout) throws TimeoutException {
+
+		if (index == auts.size()) {
+			productMoves.add(new Pair<A, Integer[]>(guardSoFar, targets.clone()));
+			return;
+		}
+
+		for (SFAInputMove<A, B> move : auts.get(index).getInputMovesFrom(closures.get(index))) {
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
+
+			A guard = guardSoFar == null ? move.guard : ba.MkAnd(guardSoFar, move.guard);
+			if (ba.IsSatisfiable(guard)) {
+				targets[index] = move.to;
+				getProductMovesFrom(auts, closures, index + 1, guard, targets, ba, productMoves, startTime, timeout);
+			}
+		}
+	}
+
 	/**
 	 * Computes <code>this</code> minus <code>aut</code> as a new SFA
 	 * 
@@ -558,6 +730,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 		toVisitStates.add(reachableFromInit);
 
 		while (!toVisitStates.isEmpty()) {
+			Deadline.checkCurrent();
 			Collection<Integer> currState = toVisitStates.removeFirst();
 			int currStateId = reachedStates.get(currState);
 
@@ -639,6 +812,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 		for (Integer state : sfa.states) {
 			if (System.currentTimeMillis() - startTime > timeout)
 				throw new TimeoutException();
+			Deadline.checkCurrent();
 
 			A totGuard = null;
 			for (SFAInputMove<A, B> move : sfa.getInputMovesFrom(state)) {
@@ -772,6 +946,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 
 			if (System.currentTimeMillis() - startTime > timeout)
 				throw new TimeoutException();
+			Deadline.checkCurrent();
 
 			Pair<Integer, Integer> curr = toVisit.removeFirst();
 			List<A> currWitness = witnesses.get(curr);
@@ -799,6 +974,149 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return new Pair<Boolean, List<A>>(true, null);
 	}
 
+	/**
+	 * Checks whether the language of the automaton is included in the one of
+	 * <code>aut</code>
+	 * 
+	 * @throws TimeoutException
+	 */
+	public boolean isIncludedIn(SFA<P, S> aut, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		return isIncludedInPlusWitness(this, aut, ba, Long.MAX_VALUE).first;
+	}
+
+	/**
+	 * Checks whether the language of the automaton is included in the one of
+	 * <code>aut</code>
+	 * 
+	 * @throws TimeoutException
+	 */
+	public boolean isIncludedIn(SFA<P, S> aut, BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		return isIncludedInPlusWitness(this, aut, ba, timeout).first;
+	}
+
+	/**
+	 * Checks whether the language of aut1 is included in the one of aut2 and
+	 * returns a shortest sequence accepted by aut1 and not by aut2 if not.
+	 * Second element is null if included. Neither automaton is determinized:
+	 * the pairs (state of aut1, set of states of aut2) are explored on the
+	 * fly, and a pair is pruned if a pair with the same state of aut1 and a
+	 * subset of its states of aut2 was already reached (antichain).
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <A, B> Pair<Boolean, List<B>> isIncludedInPlusWitness(SFA<A, B> aut1, SFA<A, B> aut2,
+			BooleanAlgebra<A, B> ba, long timeout) throws TimeoutException {
+
+		long startTime = System.currentTimeMillis();
+
+		if (aut1.isEmpty)
+			return new Pair<Boolean, List<B>>(true, null);
+
+		// Remove epsilon moves before starting
+		FrozenSFA<A, B> f1 = (aut1.isEpsilonFree ? aut1 : aut1.removeEpsilonMoves(ba)).freeze();
+		FrozenSFA<A, B> f2 = (aut2.isEpsilonFree ? aut2 : aut2.removeEpsilonMoves(ba)).freeze();
+		AutomataMetrics metrics = AutomataMetrics.current();
+
+		// the reached pairs over dense state ids in order of discovery, with
+		// the move used to discover them
+		ArrayList<Integer> pairState = new ArrayList<Integer>();
+		ArrayList<StateSet> pairMacroState = new ArrayList<StateSet>();
+		ArrayList<Integer> parent = new ArrayList<Integer>();
+		ArrayList<A> guardFromParent = new ArrayList<A>();
+
+		// for every state of aut1 the minimal macro-states reached with it
+		HashMap<Integer, List<StateSet>> antichain = new HashMap<Integer, List<StateSet>>();
+
+		addToAntichain(f1.initialState, StateSet.singleton(f2.initialState), -1, null, antichain,
+				pairState, pairMacroState, parent, guardFromParent);
+
+		for (int currentId = 0; currentId < pairState.size(); currentId++) {
+
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
+
+			int state = pairState.get(currentId);
+			StateSet macroState = pairMacroState.get(currentId);
+
+			// Accepted by aut1 and not by aut2, rebuild the witness from the
+			// parents
+			if (f1.finalStates.get(state) && !isFinalSubset(f2, macroState)) {
+				LinkedList<B> witness = new LinkedList<B>();
+				for (int id = currentId; parent.get(id) != -1; id = parent.get(id))
+					witness.addFirst(ba.generateWitness(guardFromParent.get(id)));
+				return new Pair<Boolean, List<B>>(false, witness);
+			}
+
+			// the moves of the macro-state split by minterm, the empty
+			// macro-state has a single move on true to itself
+			List<Pair<A, StateSet>> macroMoves = getSubsetMovesFrom(f2, macroState, ba, metrics, startTime, timeout);
+			A noMacroMove = ba.True();
+			for (Pair<A, StateSet> macroMove : macroMoves)
+				noMacroMove = ba.MkAnd(noMacroMove, ba.MkNot(macroMove.first));
+
+			for (int k = f1.moveStart[state]; k < f1.moveStart[state + 1]; k++) {
+				for (Pair<A, StateSet> macroMove : macroMoves) {
+					A guard = ba.MkAnd(f1.moveGuard(k), macroMove.first);
+					if (ba.IsSatisfiable(guard))
+						addToAntichain(f1.moveTo[k], macroMove.second, currentId, guard, antichain, pairState,
+								pairMacroState, parent, guardFromParent);
+				}
+				A guard = ba.MkAnd(f1.moveGuard(k), noMacroMove);
+				if (ba.IsSatisfiable(guard))
+					addToAntichain(f1.moveTo[k], StateSet.empty(), currentId, guard, antichain, pairState,
+							pairMacroState, parent, guardFromParent);
+			}
+		}
+
+		return new Pair<Boolean, List<B>>(true, null);
+	}
+
+	// Adds the pair (state, macroState) to the pairs to visit unless it is
+	// subsumed by a reached pair
+	private static <A> void addToAntichain(Integer state, StateSet macroState, int parentId, A guard,
+			HashMap<Integer, List<StateSet>> antichain, List<Integer> pairState, List<StateSet> pairMacroState,
+			List<Integer> parent, List<A> guardFromParent) {
+
+		List<StateSet> minimal = antichain.get(state);
+		if (minimal == null) {
+			minimal = new LinkedList<StateSet>();
+			antichain.put(state, minimal);
+		}
+
+		for (StateSet reached : minimal)
+			if (reached.isSubsetOf(macroState))
+				return;
+
+		// macroState subsumes the reached pairs with a bigger macro-state
+		Iterator<StateSet> it = minimal.iterator();
+		while (it.hasNext())
+			if (macroState.isSubsetOf(it.next()))
+				it.remove();
+		minimal.add(macroState);
+
+		pairState.add(state);
+		pairMacroState.add(macroState);
+		parent.add(parentId);
+		guardFromParent.add(guard);
+	}
+
+	/**
+	 * Checks whether aut1 and aut2 accept the same language using two
+	 * antichain-based inclusion checks, and returns a concrete witness if not.
+	 * Second element is null if equivalent.
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <A, B> Pair<Boolean, List<B>> areAntichainEquivalentPlusWitness(SFA<A, B> aut1, SFA<A, B> aut2,
+			BooleanAlgebra<A, B> ba, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+		Pair<Boolean, List<B>> result = isIncludedInPlusWitness(aut1, aut2, ba, timeout);
+		if (!result.first)
+			return result;
+		return isIncludedInPlusWitness(aut2, aut1, ba, timeout - (System.currentTimeMillis() - startTime));
+	}
+
 	/**
 	 * Checks whether the automaton accepts the same language as aut using Hopcroft-Karp algorithm
 	 * @assume the two automata are deterministic
@@ -855,46 +1173,51 @@ public class SFA<P, S> extends Automaton<P, S> {
 	private static <A, B> boolean areHopcroftKarpEquivalent(SFA<A, B> aut1, SFA<A, B> aut2,
 			BooleanAlgebra<A, B> ba, long timeout) throws TimeoutException {
 
-		Timers.setForCongruence();
+		AutomataMetrics metrics = AutomataMetrics.current();
 
 		long startTime = System.currentTimeMillis();
 		UnionFindHopKarp<B> ds = new UnionFindHopKarp<>();
-		int offset = aut1.stateCount();
 
-		boolean isF1=aut1.isFinalState(aut1.initialState);
-		boolean isF2=aut2.isFinalState(aut2.initialState);
-		if(isF1!=isF2)
+		// the states of aut2 follow those of aut1 in the dense ids
+		FrozenSFA<A, B> f1 = aut1.freeze();
+		FrozenSFA<A, B> f2 = aut2.freeze();
+		int offset = f1.n;
+
+		boolean isF1 = f1.finalStates.get(f1.initialState);
+		boolean isF2 = f2.finalStates.get(f2.initialState);
+		if (isF1 != isF2)
 			return false;
-		
-		ds.add(aut1.initialState, isF1);
-		ds.add(aut2.initialState + offset, isF2);
-		ds.mergeSets(aut1.initialState, aut2.initialState + offset);
+
+		ds.add(f1.initialState, isF1);
+		ds.add(f2.initialState + offset, isF2);
+		ds.mergeSets(f1.initialState, f2.initialState + offset);
 
 		LinkedList<Pair<Integer, Integer>> toVisit = new LinkedList<>();
-		toVisit.add(new Pair<Integer, Integer>(aut1.initialState, aut2.initialState));
+		toVisit.add(new Pair<Integer, Integer>(f1.initialState, f2.initialState));
 		while (!toVisit.isEmpty()) {
-			Timers.oneMoreState();
+			metrics.oneMoreState();
 
 			if (System.currentTimeMillis() - startTime > timeout)
 				throw new TimeoutException();
+			Deadline.checkCurrent();
 
 			Pair<Integer, Integer> curr = toVisit.removeFirst();
-			for (SFAInputMove<A, B> move1 : aut1.getInputMovesFrom(curr.first))
-				for (SFAInputMove<A, B> move2 : aut2.getInputMovesFrom(curr.second)) {
-					A conj = ba.MkAnd(move1.guard, move2.guard);
+			for (int k1 = f1.moveStart[curr.first]; k1 < f1.moveStart[curr.first + 1]; k1++)
+				for (int k2 = f2.moveStart[curr.second]; k2 < f2.moveStart[curr.second + 1]; k2++) {
+					A conj = ba.MkAnd(f1.moveGuard(k1), f2.moveGuard(k2));
 					if (ba.IsSatisfiable(conj)) {
-						int r1 = move1.to;
-						int r2 = move2.to + offset;
+						int r1 = f1.moveTo[k1];
+						int r2 = f2.moveTo[k2] + offset;
 
 						if (!ds.contains(r1))
-							ds.add(r1, aut1.isFinalState(move1.to));
+							ds.add(r1, f1.finalStates.get(f1.moveTo[k1]));
 						if (!ds.contains(r2))
-							ds.add(r2, aut2.isFinalState(move2.to));
+							ds.add(r2, f2.finalStates.get(f2.moveTo[k2]));
 
 						if (!ds.areInSameSet(r1, r2)) {
 							if (!ds.mergeSets(r1, r2))
 								return false;
-							toVisit.add(new Pair<Integer, Integer>(move1.to, move2.to));
+							toVisit.add(new Pair<Integer, Integer>(f1.moveTo[k1], f2.moveTo[k2]));
 						}
 					}
 				}
@@ -902,161 +1225,103 @@ public class SFA<P, S> extends Automaton<P, S> {
 
 		return true;
 	}
-	
-	 /**
-     * Lazy Hopcroft-Karp plus determinization 
-	 * @throws TimeoutException 
-    */
-    public static <A, B> boolean areHKEquivalentNondet(SFA<A,B> aut1, SFA<A,B> aut2,
-    		BooleanAlgebra<A, B> ba, long timeout) throws TimeoutException
-    {
-    	Timers.setForCongruence();
-    	long startTime = System.currentTimeMillis();
-    	
-    	UnionFindHopKarp<B> ds = new UnionFindHopKarp<>();
-
-    	HashMap<Integer, Integer> reached1 = new HashMap<Integer, Integer>();
-    	HashMap<Integer, Integer> reached2 = new HashMap<Integer, Integer>();
-
-    	LinkedList<Pair<Integer, Integer>> toVisit = new LinkedList<Pair<Integer, Integer>>();
-
-    	LinkedList<Integer> aut1States = new LinkedList<Integer>();
-    	aut1States.addAll(aut1.getStates());
-        //PowerSetStateBuilder dfaStateBuilderForAut1 = PowerSetStateBuilder.Create(aut1States.ToArray());
-        
-        LinkedList<Integer> aut2States = new LinkedList<Integer>();
-    	aut2States.addAll(aut2.getStates());
-        //PowerSetStateBuilder dfaStateBuilderForAut2 = PowerSetStateBuilder.Create(aut2States.ToArray());
-        
-
-    	HashMap<HashSet<Integer>, Integer> reachedStates1 = new HashMap<HashSet<Integer>, Integer>();
-    	HashMap<Integer, HashSet<Integer>> idToStates1 = new HashMap<Integer, HashSet<Integer>>();
-    	
-    	HashMap<HashSet<Integer>, Integer> reachedStates2 = new HashMap<HashSet<Integer>, Integer>();
-    	HashMap<Integer, HashSet<Integer>> idToStates2 = new HashMap<Integer, HashSet<Integer>>();
-    	
-    	HashSet<Integer> detInitialState1 = new HashSet<Integer>();
-		detInitialState1.add(aut1.getInitialState());
-		reachedStates1.put(detInitialState1, 0);		
-		idToStates1.put(0, detInitialState1);
-		
-		HashSet<Integer> detInitialState2 = new HashSet<Integer>();
-		detInitialState2.add(aut2.getInitialState());
-		reachedStates2.put(detInitialState2, 0);		
-		idToStates2.put(0, detInitialState2);
-		
-        int st1 = 0;
-        int st2 = 0;
 
-        reached1.put(st1, 0);
-        reached2.put(st2, 1);
+	/**
+	 * Lazy Hopcroft-Karp plus determinization
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <A, B> boolean areHKEquivalentNondet(SFA<A, B> aut1, SFA<A, B> aut2, BooleanAlgebra<A, B> ba,
+			long timeout) throws TimeoutException {
+		AutomataMetrics metrics = AutomataMetrics.current();
+		long startTime = System.currentTimeMillis();
 
-        toVisit.add(new Pair<Integer, Integer>(st1, st2));
+		UnionFindHopKarp<B> ds = new UnionFindHopKarp<>();
+
+		// the subset states are sets of dense state ids
+		FrozenSFA<A, B> f1 = aut1.freeze();
+		FrozenSFA<A, B> f2 = aut2.freeze();
+		StateSetTable reachedStates1 = new StateSetTable();
+		StateSetTable reachedStates2 = new StateSetTable();
 
-        boolean isIn1Final = aut1.isFinalConfiguration(detInitialState1);
-        boolean isIn2Final = aut2.isFinalConfiguration(detInitialState2);
-        
-        if (isIn1Final != isIn2Final)
-            return false;
+		// union find element of every reached subset state
+		HashMap<Integer, Integer> reached1 = new HashMap<Integer, Integer>();
+		HashMap<Integer, Integer> reached2 = new HashMap<Integer, Integer>();
+
+		LinkedList<Pair<Integer, Integer>> toVisit = new LinkedList<Pair<Integer, Integer>>();
 
-        ds.add(0, isIn1Final);
-        ds.add(1, isIn2Final);
-        ds.mergeSets(0, 1);
+		StateSet detInitialState1 = StateSet.singleton(f1.initialState);
+		StateSet detInitialState2 = StateSet.singleton(f2.initialState);
+		int st1 = reachedStates1.intern(detInitialState1);
+		int st2 = reachedStates2.intern(detInitialState2);
 
-        while (toVisit.size() > 0)
-        {
-        	Timers.oneMoreState();
+		reached1.put(st1, 0);
+		reached2.put(st2, 1);
+
+		toVisit.add(new Pair<Integer, Integer>(st1, st2));
+
+		boolean isIn1Final = isFinalSubset(f1, detInitialState1);
+		boolean isIn2Final = isFinalSubset(f2, detInitialState2);
+
+		if (isIn1Final != isIn2Final)
+			return false;
+
+		ds.add(0, isIn1Final);
+		ds.add(1, isIn2Final);
+		ds.mergeSets(0, 1);
+
+		while (!toVisit.isEmpty()) {
+			metrics.oneMoreState();
 
 			if (System.currentTimeMillis() - startTime > timeout)
 				throw new TimeoutException();
+			Deadline.checkCurrent();
 
-            Pair<Integer,Integer> curr = toVisit.get(0);
-            toVisit.removeFirst();
-
-            HashSet<Integer> curr1 = idToStates1.get(curr.first);
-            HashSet<Integer> curr2 = idToStates2.get(curr.second);
-
-            ArrayList<SFAInputMove<A, B>> movesFromCurr1 = new ArrayList<>(); 
-            movesFromCurr1.addAll(aut1.getInputMovesFrom(curr1));
-            ArrayList<SFAInputMove<A, B>> movesFromCurr2 = new ArrayList<>(); 
-            movesFromCurr2.addAll(aut2.getInputMovesFrom(curr2));
-            
-            
-            
-            ArrayList<A> predicates1 = new ArrayList<>(); 
-            for(SFAInputMove<A, B> m: movesFromCurr1)
-            	predicates1.add(m.guard);
-
-            ArrayList<A> predicates2 = new ArrayList<>(); 
-            for(SFAInputMove<A, B> m: movesFromCurr2)
-            	predicates2.add(m.guard);
-
-            Collection<Pair<A, ArrayList<Integer>>> minterms1 = ba.GetMinterms(predicates1);
-            Collection<Pair<A, ArrayList<Integer>>> minterms2 = ba.GetMinterms(predicates2);
-
-
-            for (Pair<A, ArrayList<Integer>> minterm1: minterms1)
-            {                    
-            	for (Pair<A, ArrayList<Integer>> minterm2: minterms2)
-                {
-                    A conj = ba.MkAnd(minterm1.first, minterm2.first);
-                    if (ba.IsSatisfiable(conj))
-                    {
-                        HashSet<Integer> to1 = new HashSet<Integer>();
-                        for (int i = 0; i < minterm1.second.size(); i++)
-                            if (minterm1.second.get(i)==1 && ba.IsSatisfiable(ba.MkAnd(movesFromCurr1.get(i).guard, conj)))
-                                to1.add(movesFromCurr1.get(i).to);
-                        
-                        LinkedList<HashSet<Integer>> l1 = new LinkedList<HashSet<Integer>>();
-                        int to1st = getStateId(to1, reachedStates1, l1);  
-                        if(!l1.isEmpty())
-                        	idToStates1.put(reachedStates1.size()-1,to1);
-                        
-                        HashSet<Integer> to2 = new HashSet<Integer>();
-                        for (int i = 0; i < minterm2.second.size(); i++)
-                            if (minterm2.second.get(i)==1 && ba.IsSatisfiable(ba.MkAnd(movesFromCurr2.get(i).guard, conj)))
-                                to2.add(movesFromCurr2.get(i).to);
-                                                
-                        LinkedList<HashSet<Integer>> l2 = new LinkedList<HashSet<Integer>>();
-                        int to2st = getStateId(to2, reachedStates2, l2);
-                        if(!l2.isEmpty())
-                        	idToStates2.put(reachedStates2.size()-1,to2);
-                        
-                        // If not in union find add them
-                        int r1 = 0, r2 = 0;
-                        if (!reached1.containsKey(to1st))
-                        {
-                            r1 = ds.getNumberOfElements();
-                            reached1.put(to1st, r1);
-                            ds.add(r1, aut1.isFinalConfiguration(to1));
-                        }
-                        else
-                            r1 = reached1.get(to1st);
-
-                        if (!reached2.containsKey(to2st))
-                        {
-                            r2 = ds.getNumberOfElements();
-                            reached2.put(to2st, r2);
-                            ds.add(r2, aut2.isFinalConfiguration(to2));
-                        }
-                        else
-                            r2 = reached2.get(to2st);                        
-
-                        // Check whether are in simulation relation
-                        if (!ds.areInSameSet(r1, r2))
-                        {
-                            if (!ds.mergeSets(r1, r2))
-                                return false;
-
-                            toVisit.add(new Pair<Integer, Integer>(to1st, to2st));
-                        }
-                    }
-                }
-            }
-        }
-        return true;
-    }
+			Pair<Integer, Integer> curr = toVisit.removeFirst();
 
+			// the subset moves already have disjoint guards, and cover the
+			// whole alphabet so that partial automata are compared against
+			// the empty state
+			List<Pair<A, StateSet>> moves1 = getTotalSubsetMovesFrom(f1, reachedStates1.get(curr.first), ba, metrics,
+					startTime, timeout);
+			List<Pair<A, StateSet>> moves2 = getTotalSubsetMovesFrom(f2, reachedStates2.get(curr.second), ba, metrics,
+					startTime, timeout);
+
+			for (Pair<A, StateSet> move1 : moves1) {
+				for (Pair<A, StateSet> move2 : moves2) {
+					A conj = ba.MkAnd(move1.first, move2.first);
+					if (ba.IsSatisfiable(conj)) {
+						int to1st = reachedStates1.intern(move1.second);
+						int to2st = reachedStates2.intern(move2.second);
+
+						// If not in union find add them
+						Integer r1 = reached1.get(to1st);
+						if (r1 == null) {
+							r1 = ds.getNumberOfElements();
+							reached1.put(to1st, r1);
+							ds.add(r1, isFinalSubset(f1, move1.second));
+						}
+
+						Integer r2 = reached2.get(to2st);
+						if (r2 == null) {
+							r2 = ds.getNumberOfElements();
+							reached2.put(to2st, r2);
+							ds.add(r2, isFinalSubset(f2, move2.second));
+						}
+
+						// Check whether are in simulation relation
+						if (!ds.areInSameSet(r1, r2)) {
+							if (!ds.mergeSets(r1, r2))
+								return false;
+
+							toVisit.add(new Pair<Integer, Integer>(to1st, to2st));
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
 
 	/**
 	 * concatenation with aut
@@ -1134,6 +1399,40 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return MkSFA(transitions, initialState, finalStates, ba, false);
 	}
 
+	/**
+	 * @return an SFA accepting the reverse of the strings accepted by this
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> reverse(BooleanAlgebra<P, S> ba) throws TimeoutException {
+		return reverse(this, ba);
+	}
+
+	/**
+	 * language reverse: every move is flipped, the new initial state has an
+	 * epsilon move to every final state of aut, and the only final state is
+	 * the initial state of aut
+	 * 
+	 * @throws TimeoutException
+	 */
+	public static <A, B> SFA<A, B> reverse(SFA<A, B> aut, BooleanAlgebra<A, B> ba) throws TimeoutException {
+
+		if (aut.isEmpty)
+			return getEmptySFA(ba);
+
+		Collection<SFAMove<A, B>> transitions = new ArrayList<SFAMove<A, B>>();
+		Integer initialState = aut.maxStateId + 1;
+
+		for (SFAInputMove<A, B> t : aut.getInputMovesFrom(aut.states))
+			transitions.add(new SFAInputMove<A, B>(t.to, t.from, t.guard));
+		for (SFAEpsilon<A, B> t : aut.getEpsilonFrom(aut.states))
+			transitions.add(new SFAEpsilon<A, B>(t.to, t.from));
+
+		for (Integer finState : aut.finalStates)
+			transitions.add(new SFAEpsilon<A, B>(initialState, finState));
+
+		return MkSFA(transitions, initialState, Arrays.asList(aut.initialState), ba, false);
+	}
+
 	/**
 	 * @return an equivalent deterministic SFA
 	 * @throws TimeoutException
@@ -1173,75 +1472,126 @@ public class SFA<P, S> extends Automaton<P, S> {
 		Collection<Integer> finalStates = new HashSet<Integer>();
 
 		// reached contains the subset states we discovered and maps them to a
-		// stateId
-		HashMap<Collection<Integer>, Integer> reachedStates = new HashMap<Collection<Integer>, Integer>();
-		// toVisit contains the subset states we still have not explored
-		LinkedList<Collection<Integer>> toVisitStates = new LinkedList<Collection<Integer>>();
+		// stateId. States get increasing ids as they are discovered, so the
+		// states still to be explored are the ones with id at least
+		// currentStateId
+		StateSetTable reachedStates = new StateSetTable();
+
+		// the subset states are sets of dense state ids, the initial state
+		// is the set {aut.initialState}
+		FrozenSFA<A, B> frozenAut = autChecked.freeze();
+		AutomataMetrics metrics = AutomataMetrics.current();
+		reachedStates.intern(StateSet.singleton(frozenAut.initialState));
+
+		// Explore the automaton until no new subset states can be reached,
+		// a memory budget can be set with a Deadline
+		for (int currentStateId = 0; currentStateId < reachedStates.size(); currentStateId++) {
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
 
-		// the initial state is the set {aut.initialState}
-		Collection<Integer> detInitialState = new HashSet<Integer>();
-		detInitialState.add(initialState);
-		initialState = 0;
+			StateSet currentState = reachedStates.get(currentStateId);
 
-		reachedStates.put(detInitialState, 0);
-		toVisitStates.add(detInitialState);
+			// check if final
+			if (isFinalSubset(frozenAut, currentState))
+				finalStates.add(currentStateId);
 
-		long availableMemory = Runtime.getRuntime().totalMemory();
+			for (Pair<A, StateSet> move : getSubsetMovesFrom(frozenAut, currentState, ba, metrics, startTime, timeout)) {
+				int toStateId = reachedStates.intern(move.second);
+				transitions.add(new SFAInputMove<A, B>(currentStateId, toStateId, move.first));
+			}
+		}
 
-		// Explore the automaton until no new subset states can be reached
-		while (!toVisitStates.isEmpty()) {
+		SFA<A, B> determinized = MkSFA(transitions, initialState, finalStates, ba, false);
+		// set isDetermistic to true to avoid future redundancy
+		determinized.isDeterministic = true;
+		return determinized;
+	}
 
-			long freeMemory = Runtime.getRuntime().freeMemory();
-			if (freeMemory < 0.1 * availableMemory)
-				throw new TimeoutException("Out of memory");
+	/**
+	 * @return an equivalent deterministic SFA, the subset states of each
+	 *         breadth-first level are explored in parallel using
+	 *         <code>executor</code>
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> determinizeParallel(BooleanAlgebra<P, S> ba, ExecutorService executor, long timeout)
+			throws TimeoutException {
+		return determinizeParallel(this, ba, executor, timeout);
+	}
 
-			if (System.currentTimeMillis() - startTime > timeout)
-				throw new TimeoutException();
+	/**
+	 * @return a deterministic SFA that is equivalent to <code>aut</code>. The
+	 *         moves out of the subset states of each breadth-first level are
+	 *         computed in parallel using <code>executor</code>, then the new
+	 *         subset states are numbered in the order of the sequential
+	 *         construction, so the result is the same as the one of
+	 *         <code>determinize</code>.
+	 * @throws TimeoutException
+	 */
+	public static <A, B> SFA<A, B> determinizeParallel(SFA<A, B> aut, BooleanAlgebra<A, B> ba,
+			ExecutorService executor, long timeout) throws TimeoutException {
 
-			Collection<Integer> currentState = toVisitStates.removeFirst();
-			int currentStateId = reachedStates.get(currentState);
+		long startTime = System.currentTimeMillis();
 
-			// check if final
-			if (autChecked.isFinalConfiguration(currentState))
-				finalStates.add(currentStateId);
+		if (aut.isDeterministic(ba))
+			return aut;
+
+		// Remove epsilon moves before starting
+		SFA<A, B> autChecked = aut;
+		if (!aut.isEpsilonFree)
+			autChecked = aut.removeEpsilonMoves(ba);
+		final FrozenSFA<A, B> frozenAut = autChecked.freeze();
+		// the tasks record into the context of the calling thread
+		AutomataMetrics metrics = AutomataMetrics.current();
+
+		// components of new SFA
+		Collection<SFAMove<A, B>> transitions = new ArrayList<SFAMove<A, B>>();
+		Integer initialState = 0;
+		Collection<Integer> finalStates = new HashSet<Integer>();
+
+		// reached contains the subset states we discovered and maps them to a
+		// stateId
+		StateSetTable reachedStates = new StateSetTable();
+		reachedStates.intern(StateSet.singleton(frozenAut.initialState));
+
+		// the subset states of the current level have ids levelStart,...,
+		// levelEnd-1, in the order in which they were discovered
+		int levelStart = 0;
+		while (levelStart < reachedStates.size()) {
+			int levelEnd = reachedStates.size();
+
+			List<Callable<List<Pair<A, StateSet>>>> tasks = new ArrayList<Callable<List<Pair<A, StateSet>>>>();
+			for (int id = levelStart; id < levelEnd; id++) {
+				StateSet currentState = reachedStates.get(id);
+				tasks.add(Deadline.propagate(
+						() -> getSubsetMovesFrom(frozenAut, currentState, ba, metrics, startTime, timeout)));
+			}
+
+			long leftover = timeout - (System.currentTimeMillis() - startTime);
+			if (leftover <= 0)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
+
+			List<Future<List<Pair<A, StateSet>>>> results;
+			try {
+				results = executor.invokeAll(tasks, leftover, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TimeoutException(e);
+			}
 
-			// get all the moves out of the states in the current subset
-			ArrayList<SFAInputMove<A, B>> movesFromCurrState = new ArrayList<SFAInputMove<A, B>>(
-					autChecked.getInputMovesFrom(currentState));
-
-			// put in a separate list all the predicates of the moves and in the
-			// same order. We will use them to build the minterms
-			ArrayList<A> predicatesOfMoves = new ArrayList<A>();
-			for (SFAInputMove<A, B> inter : movesFromCurrState)
-				predicatesOfMoves.add(inter.guard);
-
-			// build the minterms using the predicates and iterate over them:
-			// each minterm is a predicate together with the the corresponding
-			// set of transition IDs
-			for (Pair<A, ArrayList<Integer>> minterm : ba.GetMinterms(predicatesOfMoves,
-					timeout - (System.currentTimeMillis() - startTime))) {
-
-				if (System.currentTimeMillis() - startTime > timeout)
-					throw new TimeoutException();
-
-				A guard = minterm.first;
-
-				// The new state contains all the target states of the moves
-				// with bit 1
-				ArrayList<Integer> moveBits = minterm.second;
-				Collection<Integer> toState = new HashSet<Integer>();
-				for (int moveIndex = 0; moveIndex < moveBits.size(); moveIndex++)
-					if (moveBits.get(moveIndex) == 1)
-						// add the target state of the moveIndex-th move in the
-						// list
-						toState.add(movesFromCurrState.get(moveIndex).to);
-
-				// Add new move if target state is not the empty set
-				if (toState.size() > 0) {
-					int toStateId = getStateId(toState, reachedStates, toVisitStates);
-					transitions.add(new SFAInputMove<A, B>(currentStateId, toStateId, guard));
+			// Number the new states sequentially
+			Iterator<Future<List<Pair<A, StateSet>>>> resultIt = results.iterator();
+			for (int currentStateId = levelStart; currentStateId < levelEnd; currentStateId++) {
+				if (isFinalSubset(frozenAut, reachedStates.get(currentStateId)))
+					finalStates.add(currentStateId);
+
+				for (Pair<A, StateSet> move : Deadline.getResult(resultIt.next())) {
+					int toStateId = reachedStates.intern(move.second);
+					transitions.add(new SFAInputMove<A, B>(currentStateId, toStateId, move.first));
 				}
 			}
+			levelStart = levelEnd;
 		}
 
 		SFA<A, B> determinized = MkSFA(transitions, initialState, finalStates, ba, false);
@@ -1250,6 +1600,85 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return determinized;
 	}
 
+	// Returns true if the subset state contains a final state of aut
+	private static <A, B> boolean isFinalSubset(FrozenSFA<A, B> aut, StateSet subset) {
+		for (int i = 0; i < subset.size(); i++)
+			if (aut.finalStates.get(subset.get(i)))
+				return true;
+		return false;
+	}
+
+	// Computes the moves of getSubsetMovesFrom, plus a move to the empty
+	// subset state on the characters none of them reads
+	private static <A, B> List<Pair<A, StateSet>> getTotalSubsetMovesFrom(FrozenSFA<A, B> aut,
+			StateSet currentState, BooleanAlgebra<A, B> ba, AutomataMetrics metrics, long startTime, long timeout)
+			throws TimeoutException {
+		List<Pair<A, StateSet>> moves = getSubsetMovesFrom(aut, currentState, ba, metrics, startTime, timeout);
+		A covered = ba.False();
+		for (Pair<A, StateSet> move : moves)
+			covered = ba.MkOr(covered, move.first);
+		A uncovered = ba.MkNot(covered);
+		if (ba.IsSatisfiable(uncovered))
+			moves.add(new Pair<A, StateSet>(uncovered, StateSet.empty()));
+		return moves;
+	}
+
+	// Computes the moves out of the subset state currentState of the
+	// determinization of aut: one move per minterm of the guards leaving
+	// currentState and leading to a non-empty set of states. Only reads aut.
+	private static <A, B> List<Pair<A, StateSet>> getSubsetMovesFrom(FrozenSFA<A, B> aut, StateSet currentState,
+			BooleanAlgebra<A, B> ba, AutomataMetrics metrics, long startTime, long timeout) throws TimeoutException {
+
+		// put in a list all the predicates of the moves out of the states in
+		// the current subset, and their targets in the same order. We will use
+		// them to build the minterms
+		ArrayList<A> predicatesOfMoves = new ArrayList<A>();
+		int moveCount = 0;
+		for (int i = 0; i < currentState.size(); i++) {
+			int q = currentState.get(i);
+			moveCount += aut.moveStart[q + 1] - aut.moveStart[q];
+		}
+		int[] targetsOfMoves = new int[moveCount];
+		for (int i = 0; i < currentState.size(); i++) {
+			int q = currentState.get(i);
+			for (int k = aut.moveStart[q]; k < aut.moveStart[q + 1]; k++) {
+				targetsOfMoves[predicatesOfMoves.size()] = aut.moveTo[k];
+				predicatesOfMoves.add(aut.moveGuard(k));
+			}
+		}
+
+		// build the minterms using the predicates and iterate over them:
+		// each minterm is a predicate together with the the corresponding
+		// set of transition IDs
+		List<Pair<A, StateSet>> subsetMoves = new ArrayList<Pair<A, StateSet>>();
+		int[] toStateBuffer = new int[moveCount];
+		for (Pair<A, ArrayList<Integer>> minterm : ba.GetMinterms(predicatesOfMoves,
+				timeout - (System.currentTimeMillis() - startTime))) {
+
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
+
+			metrics.add(AutomataMetrics.Counter.MINTERMS, 1);
+			A guard = minterm.first;
+
+			// The new state contains all the target states of the moves
+			// with bit 1
+			ArrayList<Integer> moveBits = minterm.second;
+			int toStateSize = 0;
+			for (int moveIndex = 0; moveIndex < moveBits.size(); moveIndex++)
+				if (moveBits.get(moveIndex) == 1)
+					// add the target state of the moveIndex-th move in the
+					// list
+					toStateBuffer[toStateSize++] = targetsOfMoves[moveIndex];
+
+			// Add new move if target state is not the empty set
+			if (toStateSize > 0)
+				subsetMoves.add(new Pair<A, StateSet>(guard, StateSet.of(toStateBuffer, toStateSize)));
+		}
+		return subsetMoves;
+	}
+
 	/**
 	 * Creates a normalized copy of the SFA where all transitions between states
 	 * are collapsed taking their union, and states are renamed with 0,1,...
@@ -1311,6 +1740,29 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return getMinimalOf(this, ba);
 	}
 
+	/**
+	 * @return a minimized copy of the SFA computed using <code>algorithm</code>
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> minimize(BooleanAlgebra<P, S> ba, MinimizationAlgorithm algorithm) throws TimeoutException {
+		return getMinimalOf(this, ba, algorithm);
+	}
+
+	/**
+	 * @return a minimized copy of <code>aut<code> computed using
+	 *         <code>algorithm</code>
+	 * @throws TimeoutException
+	 */
+	public static <A, B> SFA<A, B> getMinimalOf(SFA<A, B> aut, BooleanAlgebra<A, B> ba,
+			MinimizationAlgorithm algorithm) throws TimeoutException {
+		switch (algorithm) {
+		case HOPCROFT_ARRAY:
+			return HopcroftMinimizer.getMinimalOf(aut, ba);
+		default:
+			return getMinimalOf(aut, ba);
+		}
+	}
+
 	/**
 	 * @return a minimized copy of <code>aut<code>
 	 * @throws TimeoutException
@@ -1354,6 +1806,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 
 		// Continue until all blocks have been split
 		while (!toExploreBlocks.isEmpty()) {
+			Deadline.checkCurrent();
 			Block currentBlock = toExploreBlocks.pop();
 
 			// stateToPredIntoCurrentBlock(s) contains the predicate for which
@@ -1491,6 +1944,15 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return MkSFA(transitions, initialState, finalStates, ba, false, true);
 	}
 
+	/**
+	 * @return a table-driven matcher equivalent to <code>aut</code>
+	 * @throws TimeoutException
+	 */
+	public static CompiledCharDFA compile(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba)
+			throws TimeoutException {
+		return CompiledCharDFA.compile(aut, ba);
+	}
+
 	// ------------------------------------------------------
 	// Automata properties
 	// ------------------------------------------------------
@@ -1543,6 +2005,7 @@ public class SFA<P, S> extends Automaton<P, S> {
 		int totStates = 1;
 
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			Pair<Pair<Integer, Integer>, Boolean> currState = toVisit.removeFirst();
 			int st1 = currState.first.first;
 			int st2 = currState.first.second;
@@ -1724,19 +2187,15 @@ public class SFA<P, S> extends Automaton<P, S> {
 		Integer initialState = 0;
 		Collection<Integer> finalStates = new HashSet<Integer>();
 
-		HashSet<Integer> initStates = new HashSet<Integer>();
-		initStates.add(aut.initialState);
-		Collection<Integer> reachableFromInit = aut.getReachableStatesFrom(initStates);
-		Collection<Integer> reachingFinal = aut.getReachingStates(aut.finalStates);
-
-		Collection<Integer> aliveStates = new HashSet<Integer>();
-
 		// Computes states that reachable from initial state and can reach a
 		// final state
-		for (Integer state : reachableFromInit)
-			if (reachingFinal.contains(state)) {
-				aliveStates.add(state);
-			}
+		FrozenSFA<A, B> f = aut.freeze();
+		BitSet alive = f.reachableFrom(f.initialState);
+		alive.and(f.reaching(f.finalStates));
+
+		Collection<Integer> aliveStates = new HashSet<Integer>();
+		for (int q = alive.nextSetBit(0); q >= 0; q = alive.nextSetBit(q + 1))
+			aliveStates.add(f.stateOf[q]);
 
 		if (aliveStates.size() == 0)
 			return getEmptySFA(ba);
@@ -1755,44 +2214,6 @@ public class SFA<P, S> extends Automaton<P, S> {
 		return MkSFA(transitions, initialState, finalStates, ba, false, false);
 	}
 
-	// Computes states that reachable from states
-	private Collection<Integer> getReachableStatesFrom(Collection<Integer> states) {
-		HashSet<Integer> result = new HashSet<Integer>();
-		for (Integer state : states)
-			visitForward(state, result);
-		return result;
-	}
-
-	// Computes states that can reach states
-	private Collection<Integer> getReachingStates(Collection<Integer> states) {
-		HashSet<Integer> result = new HashSet<Integer>();
-		for (Integer state : states)
-			visitBackward(state, result);
-		return result;
-	}
-
-	// DFS accumulates in reached
-	private void visitForward(Integer state, HashSet<Integer> reached) {
-		if (!reached.contains(state)) {
-			reached.add(state);
-			for (SFAMove<P, S> t : this.getTransitionsFrom(state)) {
-				Integer nextState = t.to;
-				visitForward(nextState, reached);
-			}
-		}
-	}
-
-	// backward DFS accumulates in reached
-	private void visitBackward(Integer state, HashSet<Integer> reached) {
-		if (!reached.contains(state)) {
-			reached.add(state);
-			for (SFAMove<P, S> t : this.getTransitionsTo(state)) {
-				Integer predState = t.from;
-				visitBackward(predState, reached);
-			}
-		}
-	}
-
 	// ------------------------------------------------------
 	// Properties accessing methods
 	// ------------------------------------------------------
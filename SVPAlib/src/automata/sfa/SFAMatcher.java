@@ -0,0 +1,135 @@
+package automata.sfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import utilities.Pair;
+
+/**
+ * Finds the occurrences of the language of a character SFA in a text, with
+ * leftmost-longest semantics. A backward scan of the whole text with the DFA
+ * of <code>(True)* reverse(aut)</code> marks the positions where some match
+ * starts. Then, from the leftmost marked position, the DFA of
+ * <code>aut</code> is run forward until it dies to find the longest match,
+ * and the search resumes after it. The pairs of state and position that a
+ * forward run reaches after the end of its match are remembered, since no
+ * later run can find a longer match through them, so every pair is scanned
+ * past at most once and the search takes time linear in the length of the
+ * text for a fixed automaton, as in the maximal-munch tokenizer of Reps.
+ * No object is allocated per character.
+ */
+public final class SFAMatcher {
+
+	private final CompiledCharDFA forward;
+	private final CompiledCharDFA backward;
+
+	/**
+	 * Builds a matcher for the language of <code>aut</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFAMatcher(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba) throws TimeoutException {
+		// the dead states are removed, so the forward scan stops as soon as
+		// no longer match is possible
+		SFA<CharPred, Character> det = aut.determinize(ba);
+		forward = CompiledCharDFA.compile(SFA.MkSFA(det.getTransitions(), det.getInitialState(),
+				det.getFinalStates(), ba), ba);
+
+		SFA<CharPred, Character> prefixed = SFA.concatenate(SFA.getFullSFA(ba), aut.reverse(ba), ba);
+		backward = CompiledCharDFA.compile(prefixed, ba);
+	}
+
+	/**
+	 * @return the non-overlapping leftmost-longest matches in
+	 *         <code>text</code>, as pairs of start (included) and end
+	 *         (excluded) positions. After an empty match the search resumes
+	 *         one character later.
+	 */
+	public List<Pair<Integer, Integer>> findAll(CharSequence text) {
+		List<Pair<Integer, Integer>> matches = new ArrayList<Pair<Integer, Integer>>();
+		int length = text.length();
+		BitSet starts = matchStarts(text);
+		// barren[q] has position i set iff no final state is reachable from
+		// state q at position i
+		BitSet[] barren = new BitSet[forward.getStateCount()];
+
+		int start = starts.nextSetBit(0);
+		while (start >= 0) {
+			int end = longestMatchEnd(text, start, barren);
+			matches.add(new Pair<Integer, Integer>(start, end));
+			start = starts.nextSetBit(end > start ? end : start + 1);
+			if (start > length)
+				break;
+		}
+		return matches;
+	}
+
+	/**
+	 * @return true iff some substring of <code>text</code> is accepted
+	 */
+	public boolean find(CharSequence text) {
+		int state = backward.getInitialState();
+		if (backward.isFinalState(state))
+			return true;
+		for (int i = text.length() - 1; i >= 0; i--) {
+			state = backward.step(state, text.charAt(i));
+			if (state == CompiledCharDFA.DEAD_STATE)
+				return false;
+			if (backward.isFinalState(state))
+				return true;
+		}
+		return false;
+	}
+
+	// Position i is set iff some match starts at i, including i equal to the
+	// length of text for an empty match at the end
+	private BitSet matchStarts(CharSequence text) {
+		int length = text.length();
+		BitSet starts = new BitSet(length + 1);
+
+		int state = backward.getInitialState();
+		if (backward.isFinalState(state))
+			starts.set(length);
+		for (int i = length - 1; i >= 0 && state != CompiledCharDFA.DEAD_STATE; i--) {
+			state = backward.step(state, text.charAt(i));
+			if (state != CompiledCharDFA.DEAD_STATE && backward.isFinalState(state))
+				starts.set(i);
+		}
+		return starts;
+	}
+
+	// End of the longest match starting at start, which must exist. The
+	// pairs of state and position reached after the end of the match are
+	// added to barren, and the run stops at the pairs already in it.
+	private int longestMatchEnd(CharSequence text, int start, BitSet[] barren) {
+		int length = text.length();
+		int state = forward.getInitialState();
+		int end = start;
+		int endState = state;
+		int stop = start;
+		for (int i = start; i < length; i++) {
+			state = forward.step(state, text.charAt(i));
+			if (state == CompiledCharDFA.DEAD_STATE || (barren[state] != null && barren[state].get(i + 1)))
+				break;
+			stop = i + 1;
+			if (forward.isFinalState(state)) {
+				end = stop;
+				endState = state;
+			}
+		}
+
+		state = endState;
+		for (int i = end; i < stop; i++) {
+			state = forward.step(state, text.charAt(i));
+			if (barren[state] == null)
+				barren[state] = new BitSet();
+			barren[state].set(i + 1);
+		}
+		return end;
+	}
+}
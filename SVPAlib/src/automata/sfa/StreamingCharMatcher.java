@@ -0,0 +1,247 @@
+package automata.sfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+/**
+ * Incremental matcher for a {@link CompiledCharDFA}. Characters are fed one
+ * chunk at a time and only the current state is kept, so inputs of any size
+ * can be matched in constant memory and without boxing. Once no move applies
+ * the matcher stays in the dead state and ignores the rest of the input.
+ */
+public final class StreamingCharMatcher {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	// bytes of a file mapped at once
+	private static final int MAPPED_REGION_SIZE = 1 << 26;
+
+	private final CompiledCharDFA dfa;
+	private int state;
+	private long position;
+
+	/**
+	 * A matcher in the initial state of <code>dfa</code>
+	 */
+	public StreamingCharMatcher(CompiledCharDFA dfa) {
+		this.dfa = dfa;
+		reset();
+	}
+
+	/**
+	 * @return a matcher for <code>aut</code>, which is compiled first
+	 * @throws TimeoutException
+	 */
+	public static StreamingCharMatcher of(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba)
+			throws TimeoutException {
+		return new StreamingCharMatcher(CompiledCharDFA.compile(aut, ba));
+	}
+
+	/**
+	 * The state of a matcher at some point of the input
+	 */
+	public static final class Snapshot {
+		private final int state;
+		private final long position;
+
+		private Snapshot(int state, long position) {
+			this.state = state;
+			this.position = position;
+		}
+
+		/**
+		 * @return number of characters consumed when the snapshot was taken
+		 */
+		public long getPosition() {
+			return position;
+		}
+	}
+
+	/**
+	 * Goes back to the initial state as if no character was fed
+	 */
+	public void reset() {
+		state = dfa.getInitialState();
+		position = 0;
+	}
+
+	/**
+	 * @return the current state, to be restored later with
+	 *         {@link #restore(Snapshot)}
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(state, position);
+	}
+
+	/**
+	 * Goes back to the state saved in <code>snapshot</code>
+	 */
+	public void restore(Snapshot snapshot) {
+		state = snapshot.state;
+		position = snapshot.position;
+	}
+
+	/**
+	 * Consumes <code>c</code>
+	 */
+	public void feed(char c) {
+		position++;
+		if (state != CompiledCharDFA.DEAD_STATE)
+			state = dfa.step(state, c);
+	}
+
+	/**
+	 * Consumes the characters of <code>input</code> in positions
+	 * <code>from</code> (included) to <code>to</code> (excluded)
+	 */
+	public void feed(char[] input, int from, int to) {
+		position += to - from;
+		int s = state;
+		for (int i = from; i < to && s != CompiledCharDFA.DEAD_STATE; i++)
+			s = dfa.step(s, input[i]);
+		state = s;
+	}
+
+	/**
+	 * Consumes all the characters of <code>input</code>
+	 */
+	public void feed(CharSequence input) {
+		position += input.length();
+		int s = state;
+		for (int i = 0; i < input.length() && s != CompiledCharDFA.DEAD_STATE; i++)
+			s = dfa.step(s, input.charAt(i));
+		state = s;
+	}
+
+	/**
+	 * Consumes the remaining characters of <code>input</code>, leaving its
+	 * position at its limit
+	 */
+	public void feed(CharBuffer input) {
+		if (input.hasArray()) {
+			int offset = input.arrayOffset();
+			feed(input.array(), offset + input.position(), offset + input.limit());
+			input.position(input.limit());
+			return;
+		}
+		position += input.remaining();
+		int s = state;
+		while (input.hasRemaining() && s != CompiledCharDFA.DEAD_STATE)
+			s = dfa.step(s, input.get());
+		input.position(input.limit());
+		state = s;
+	}
+
+	/**
+	 * Consumes the characters of <code>reader</code> until its end, or until
+	 * the matcher is dead. The reader is not closed.
+	 *
+	 * @throws IOException
+	 */
+	public void feed(Reader reader) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		int read;
+		while (!isDead() && (read = reader.read(buffer)) != -1)
+			feed(buffer, 0, read);
+	}
+
+	/**
+	 * Consumes the characters of the file at <code>path</code> decoded with
+	 * <code>charset</code>. The file is memory-mapped one region at a time, so
+	 * files larger than the available memory can be matched. Stops early if
+	 * the matcher is dead.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read or is not well-formed in
+	 *             <code>charset</code>
+	 */
+	public void feed(Path path, Charset charset) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long regionStart = 0;
+			do {
+				long regionSize = Math.min(MAPPED_REGION_SIZE, size - regionStart);
+				ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+				boolean endOfInput = regionStart + regionSize == size;
+
+				CoderResult result;
+				do {
+					result = decoder.decode(bytes, chars, endOfInput);
+					if (result.isError())
+						result.throwException();
+					chars.flip();
+					feed(chars);
+					chars.clear();
+				} while (result.isOverflow() && !isDead());
+
+				if (isDead())
+					return;
+
+				// a character split between two regions is decoded with the
+				// next one
+				if (bytes.position() == 0 && !endOfInput)
+					throw new CharacterCodingException();
+				regionStart += bytes.position();
+				if (endOfInput) {
+					while (decoder.flush(chars).isOverflow()) {
+						chars.flip();
+						feed(chars);
+						chars.clear();
+					}
+					chars.flip();
+					feed(chars);
+					return;
+				}
+			} while (true);
+		}
+	}
+
+	/**
+	 * @return true iff the characters consumed so far are accepted
+	 */
+	public boolean isAccepting() {
+		return state != CompiledCharDFA.DEAD_STATE && dfa.isFinalState(state);
+	}
+
+	/**
+	 * @return true iff no move applied to some character consumed so far, so
+	 *         no continuation can be accepted
+	 */
+	public boolean isDead() {
+		return state == CompiledCharDFA.DEAD_STATE;
+	}
+
+	/**
+	 * @return the current state of the compiled automaton, or
+	 *         <code>CompiledCharDFA.DEAD_STATE</code>
+	 */
+	public int getState() {
+		return state;
+	}
+
+	/**
+	 * @return number of characters consumed since the last reset
+	 */
+	public long getPosition() {
+		return position;
+	}
+}
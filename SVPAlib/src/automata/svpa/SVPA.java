@@ -17,7 +17,10 @@ import org.sat4j.specs.TimeoutException;
 import automata.AutomataException;
 import theory.BooleanAlgebra;
 import utilities.BitVecUtil;
+import utilities.Deadline;
 import utilities.Pair;
+import utilities.StateSet;
+import utilities.StateSetTable;
 
 public class SVPA<U, S> extends VPAutomaton<U, S> {
 
@@ -272,6 +275,7 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		}
 
 		while (!toVisitStates.isEmpty()) {
+			Deadline.checkCurrent();
 			Collection<Integer> currState = toVisitStates.removeFirst();
 			int currStateId = reachedStates.get(currState);
 
@@ -342,6 +346,7 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 
 		// DFS to discover next states and transitions
 		while (!toVisitStates.isEmpty()) {
+			Deadline.checkCurrent();
 			Pair<Integer, Integer> currState = toVisitStates.removeFirst();
 			int currStateId = reachedStates.get(currState);
 
@@ -750,10 +755,18 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		
 		SVPA<A, B> deter = new SVPA<A, B>();
 
-		HashMap<Collection<Pair<Integer, Integer>>, Integer> reachedStates = new HashMap<Collection<Pair<Integer, Integer>>, Integer>();
-		LinkedList<Collection<Pair<Integer, Integer>>> toVisitStates = new LinkedList<Collection<Pair<Integer, Integer>>>();
+		// subset states are stored as sets of ids of the pairs they contain,
+		// pairs get ids in the order in which they are discovered
+		HashMap<Pair<Integer, Integer>, Integer> pairIds = new HashMap<Pair<Integer, Integer>, Integer>();
+		ArrayList<Pair<Integer, Integer>> idToPair = new ArrayList<Pair<Integer, Integer>>();
 
-		HashMap<Pair<Collection<Pair<Integer, Integer>>, A>, Integer> reachedStackStates = new HashMap<Pair<Collection<Pair<Integer, Integer>>, A>, Integer>();
+		// reached contains the subset states we discovered and maps them to a
+		// stateId. States are visited in the order of their ids, so the
+		// states visited so far are the ones with id at most currStateId
+		StateSetTable reachedStates = new StateSetTable();
+
+		// a stack state is a pair (stateId, guard)
+		HashMap<Pair<Integer, A>, Integer> reachedStackStates = new HashMap<Pair<Integer, A>, Integer>();
 
 		// Add initial state
 		Collection<Pair<Integer, Integer>> currState = new HashSet<Pair<Integer, Integer>>();
@@ -762,26 +775,19 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		deter.initialStates.add(0);
 		deter.states.add(0);
 
-		reachedStates.put(currState, 0);
-		toVisitStates.add(currState);
-
-		Collection<Collection<Pair<Integer, Integer>>> previouslyVisited = new HashSet<Collection<Pair<Integer, Integer>>>();
+		reachedStates.intern(toStateSet(currState, pairIds, idToPair));
 
-		while (toVisitStates.size() > 0) {
+		for (int visitedId = 0; visitedId < reachedStates.size(); visitedId++) {
 
-			// pop first state from tVisit and add to visited
-			currState = toVisitStates.removeFirst();
-			int currStateId = reachedStates.get(currState);
-			previouslyVisited.add(currState);
+			// pop first state to visit
+			int currStateId = visitedId;
+			currState = fromStateSet(reachedStates.get(currStateId), idToPair);
 
 			// for every stackState discovered so far, add (currState,
 			// stackState) to the those to be visited for creating the returns
-			Collection<Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>> toVisitPairStateStackStates = new HashSet<Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>>();
-			for (Pair<Collection<Pair<Integer, Integer>>, A> stackState : reachedStackStates
-					.keySet())
-				toVisitPairStateStackStates
-						.add(new Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>(
-								currState, stackState));
+			Collection<Pair<Integer, Pair<Integer, A>>> toVisitPairStateStackStates = new HashSet<Pair<Integer, Pair<Integer, A>>>();
+			for (Pair<Integer, A> stackState : reachedStackStates.keySet())
+				toVisitPairStateStackStates.add(new Pair<Integer, Pair<Integer, A>>(currStateId, stackState));
 
 			// take all the second components of the pairs in currState
 			Collection<Integer> secondComp = projectSecondComponents(currState);
@@ -821,12 +827,7 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 
 				// If guard satisfiable add move to deterministic version
 				if (ba.IsSatisfiable(guard)) {
-					Integer toStateId = reachedStates.get(toState);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(toState, toStateId);
-						toVisitStates.add(toState);
-					}
+					int toStateId = reachedStates.intern(toStateSet(toState, pairIds, idToPair));
 					deter.addTransition(new Internal<A, B>(currStateId,
 							toStateId, guard), ba, true);
 				}
@@ -861,12 +862,7 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 
 				// If guard satisfiable add move to deterministic version
 				if (ba.IsSatisfiable(guard)) {
-					Integer toStateId = reachedStates.get(toState);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(toState, toStateId);
-						toVisitStates.add(toState);
-					}
+					int toStateId = reachedStates.intern(toStateSet(toState, pairIds, idToPair));
 					deter.addTransition(new ReturnBS<A, B>(currStateId,
 							toStateId, guard), ba, true);
 				}
@@ -903,16 +899,10 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 				if (ba.IsSatisfiable(a)) {
 
 					// Pick the state id
-					Integer toStateId = reachedStates.get(sPrime);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(sPrime, toStateId);
-						toVisitStates.add(sPrime);
-					}
+					int toStateId = reachedStates.intern(toStateSet(sPrime, pairIds, idToPair));
 
 					// Add stack states to be visited by returns
-					Pair<Collection<Pair<Integer, Integer>>, A> currStackState = new Pair<Collection<Pair<Integer, Integer>>, A>(
-							currState, a);
+					Pair<Integer, A> currStackState = new Pair<Integer, A>(currStateId, a);
 
 					Integer stackStateId = reachedStackStates
 							.get(currStackState);
@@ -922,10 +912,9 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 
 						// Add new discovered stack states to those to be
 						// visited by returns
-						for (Collection<Pair<Integer, Integer>> visitedState : previouslyVisited)
+						for (int visitedStateId = 0; visitedStateId <= currStateId; visitedStateId++)
 							toVisitPairStateStackStates
-									.add(new Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>(
-											visitedState, currStackState));
+									.add(new Pair<Integer, Pair<Integer, A>>(visitedStateId, currStackState));
 					}
 
 					deter.addTransition(new Call<A, B>(currStateId, toStateId,
@@ -933,17 +922,24 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 				}
 			}
 
+			// the pairs of the states used by the returns below, decoded once
+			// per state
+			Map<Integer, Collection<Pair<Integer, Integer>>> decoded = new HashMap<Integer, Collection<Pair<Integer, Integer>>>();
+			decoded.put(visitedId, currState);
+
 			// RETURNS out of every pair in to visit PairStateStackStates
-			for (Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>> stPair : toVisitPairStateStackStates) {				
+			for (Pair<Integer, Pair<Integer, A>> stPair : toVisitPairStateStackStates) {				
 				
 				// adding delta_r(S,(S',a),b)
-				Collection<Pair<Integer, Integer>> S = stPair.first;
-				Pair<Collection<Pair<Integer, Integer>>, A> stackState = stPair.second;
-				Collection<Pair<Integer, Integer>> Sprime = stackState.first;
+				Collection<Pair<Integer, Integer>> S = decoded.computeIfAbsent(stPair.first,
+						id -> fromStateSet(reachedStates.get(id), idToPair));
+				Pair<Integer, A> stackState = stPair.second;
+				Collection<Pair<Integer, Integer>> Sprime = decoded.computeIfAbsent(stackState.first,
+						id -> fromStateSet(reachedStates.get(id), idToPair));
 				A a = stackState.second;
 				
 				//These transitions are independent from currStateId
-				currStateId = reachedStates.get(S);
+				currStateId = stPair.first;
 
 				// Calls and returns causing the match
 				// (q,q'') such that,
@@ -1005,12 +1001,7 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 					// version
 					if (ba.IsSatisfiable(b)) {
 						
-						Integer toStateId = reachedStates.get(toState);
-						if (toStateId == null) {
-							toStateId = reachedStates.size();
-							reachedStates.put(toState, toStateId);
-							toVisitStates.add(toState);
-						}
+						int toStateId = reachedStates.intern(toStateSet(toState, pairIds, idToPair));
 
 						Integer toStackStateId = reachedStackStates
 								.get(stackState);
@@ -1031,6 +1022,33 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		return deter;
 	}
 
+	// Returns the set of ids of the pairs in state, giving new ids to pairs
+	// not seen before
+	private static StateSet toStateSet(Collection<Pair<Integer, Integer>> state,
+			Map<Pair<Integer, Integer>, Integer> pairIds, List<Pair<Integer, Integer>> idToPair) {
+		int[] ids = new int[state.size()];
+		int length = 0;
+		for (Pair<Integer, Integer> pair : state) {
+			Integer id = pairIds.get(pair);
+			if (id == null) {
+				id = idToPair.size();
+				pairIds.put(pair, id);
+				idToPair.add(pair);
+			}
+			ids[length++] = id;
+		}
+		return StateSet.of(ids, length);
+	}
+
+	// Returns the pairs with ids in stateSet
+	private static Collection<Pair<Integer, Integer>> fromStateSet(StateSet stateSet,
+			List<Pair<Integer, Integer>> idToPair) {
+		HashSet<Pair<Integer, Integer>> state = new HashSet<Pair<Integer, Integer>>();
+		for (int i = 0; i < stateSet.size(); i++)
+			state.add(idToPair.get(stateSet.get(i)));
+		return state;
+	}
+
 	private static <A, B> A intersectGuards(A guard, A conjunct,
 			BooleanAlgebra<A, B> ba) throws TimeoutException {
 		if (guard == null)
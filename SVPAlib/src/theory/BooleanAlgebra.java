@@ -7,15 +7,22 @@
 package theory;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.sat4j.specs.TimeoutException;
 
+import utilities.Deadline;
 import utilities.Pair;
 
 /**
- * BooleanAlgebra over the domain <code>S</code>
+ * BooleanAlgebra over the domain <code>S</code>. The parallel algorithms,
+ * which take an <code>ExecutorService</code>, call the algebra from several
+ * threads at once, so it has to be thread-safe to be used with them.
  * @param <P> The type of predicates forming the Boolean algebra 
  * @param <S> The domain of the Boolean algebra
  */
@@ -132,39 +139,139 @@ public abstract class BooleanAlgebra<P, S> {
 	
 	private Collection<Pair<P, ArrayList<Integer>>> GetMinterms(
 			ArrayList<P> predicates, P startPred, long timeout) throws TimeoutException {
-		HashSet<Pair<P, ArrayList<Integer>>> minterms = new HashSet<Pair<P, ArrayList<Integer>>>();
-		GetMintermsRec(predicates, 0, startPred, new ArrayList<Integer>(),
-				minterms, System.currentTimeMillis(), timeout);
+		long startTime = System.currentTimeMillis();
+
+		// Remove duplicate predicates, position[i] is the index in distinct
+		// of the i-th predicate
+		ArrayList<P> distinct = new ArrayList<P>();
+		HashMap<P, Integer> distinctIndex = new HashMap<P, Integer>();
+		int[] position = new int[predicates.size()];
+		for (int i = 0; i < predicates.size(); i++) {
+			P pred = predicates.get(i);
+			Integer index = distinctIndex.get(pred);
+			if (index == null) {
+				index = distinct.size();
+				distinctIndex.put(pred, index);
+				distinct.add(pred);
+			}
+			position[i] = index;
+		}
+
+		List<Pair<P, BitSet>> distinctMinterms;
+		synchronized (mintermCache) {
+			distinctMinterms = mintermCache.get(distinct);
+			if (distinctMinterms != null)
+				mintermCacheHits++;
+		}
+		if (distinctMinterms == null) {
+			distinctMinterms = GetMintermsOfDistinct(distinct, startPred, startTime, timeout);
+			synchronized (mintermCache) {
+				mintermCache.put(distinct, distinctMinterms);
+			}
+		}
+
+		// Expand the bit vectors back to the original predicates
+		Collection<Pair<P, ArrayList<Integer>>> minterms = new ArrayList<Pair<P, ArrayList<Integer>>>(
+				distinctMinterms.size());
+		for (Pair<P, BitSet> minterm : distinctMinterms) {
+			ArrayList<Integer> setBits = new ArrayList<Integer>(predicates.size());
+			for (int i = 0; i < predicates.size(); i++)
+				setBits.add(minterm.second.get(position[i]) ? 1 : 0);
+			minterms.add(new Pair<P, ArrayList<Integer>>(minterm.first, setBits));
+		}
 		return minterms;
 	}
 
-	private void GetMintermsRec(ArrayList<P> predicates, int n, P currPred,
-			ArrayList<Integer> setBits,
-			HashSet<Pair<P, ArrayList<Integer>>> minterms, long startime, long timeout) throws TimeoutException {
-		
-		if(System.currentTimeMillis() - startime > timeout || n>2500)
-			throw new TimeoutException("Minterm construction timeout");
-			
-		if (!IsSatisfiable(currPred))
-			return;
-		
-		if (n == predicates.size())
-			minterms.add(new Pair<P, ArrayList<Integer>>(currPred, setBits));
-		else {
-			ArrayList<Integer> posList = new ArrayList<Integer>(setBits);
-			posList.add(1);
-			P pn =predicates.get(n);
-			GetMintermsRec(predicates, n + 1,
-					MkAnd(currPred, pn), posList, minterms, startime, timeout);
-
-			ArrayList<Integer> negList = new ArrayList<Integer>(setBits);
-			negList.add(0);
-			GetMintermsRec(predicates, n + 1,
-					MkAnd(currPred, MkNot(pn)), negList,
-					minterms, startime, timeout);
+	/**
+	 * Given a list of pairwise distinct <code>predicates</code>, returns all the
+	 * satisfiable Boolean combinations that imply <code>startPred</code>.
+	 * Minterms are refined one predicate at a time: a minterm is split by a
+	 * predicate only if both the predicate and its complement intersect it.
+	 * Algebras with a cheaper way of computing minterms can override this
+	 * method.
+	 * 
+	 * @return a list of pairs (p,b) where the i-th bit of b is set iff the
+	 *         i-th predicate is used positively in p
+	 * @throws TimeoutException
+	 */
+	protected List<Pair<P, BitSet>> GetMintermsOfDistinct(ArrayList<P> predicates, P startPred, long startTime,
+			long timeout) throws TimeoutException {
+
+		List<Pair<P, BitSet>> minterms = new ArrayList<Pair<P, BitSet>>();
+		if (IsSatisfiable(startPred))
+			minterms.add(new Pair<P, BitSet>(startPred, new BitSet(predicates.size())));
+
+		for (int n = 0; n < predicates.size(); n++) {
+			P pn = predicates.get(n);
+			P notPn = null;
+
+			List<Pair<P, BitSet>> refined = new ArrayList<Pair<P, BitSet>>(minterms.size() * 2);
+			for (Pair<P, BitSet> minterm : minterms) {
+				if (System.currentTimeMillis() - startTime > timeout)
+					throw new TimeoutException("Minterm construction timeout");
+				Deadline.checkCurrent();
+
+				P pos = MkAnd(minterm.first, pn);
+				if (!IsSatisfiable(pos)) {
+					// the minterm implies not pn
+					refined.add(minterm);
+					continue;
+				}
+
+				if (notPn == null)
+					notPn = MkNot(pn);
+				P neg = MkAnd(minterm.first, notPn);
+				if (!IsSatisfiable(neg)) {
+					// the minterm implies pn
+					minterm.second.set(n);
+					refined.add(minterm);
+					continue;
+				}
+
+				BitSet posBits = (BitSet) minterm.second.clone();
+				posBits.set(n);
+				refined.add(new Pair<P, BitSet>(pos, posBits));
+				refined.add(new Pair<P, BitSet>(neg, minterm.second));
+			}
+			minterms = refined;
 		}
+		return minterms;
 	}
-	
+
+	/**
+	 * @return number of calls to <code>GetMinterms</code> answered from the
+	 *         cache
+	 */
+	public long getMintermCacheHitCount() {
+		synchronized (mintermCache) {
+			return mintermCacheHits;
+		}
+	}
+
+	/**
+	 * Removes all the minterms cached by <code>GetMinterms</code>
+	 */
+	public void clearMintermCache() {
+		synchronized (mintermCache) {
+			mintermCache.clear();
+		}
+	}
+
+	// Minterms of the most recently used lists of distinct predicates
+	private static final int MINTERM_CACHE_SIZE = 1024;
+
+	private long mintermCacheHits = 0;
+
+	private final Map<List<P>, List<Pair<P, BitSet>>> mintermCache = new LinkedHashMap<List<P>, List<Pair<P, BitSet>>>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<P>, List<Pair<P, BitSet>>> eldest) {
+			return size() > MINTERM_CACHE_SIZE;
+		}
+	};
+
 	/**
 	 * Returns a list of disjoint predicates [p1,...,pn] that has union equal to true that accepts the elements of the predicates [g1...gn] given
 	 * as input.
@@ -0,0 +1,318 @@
+package theory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.sat4j.specs.TimeoutException;
+
+import utilities.Pair;
+
+/**
+ * Decorator of a Boolean algebra that hash-conses the predicates it returns
+ * and memoizes the results of MkAnd, MkOr, MkNot, IsSatisfiable and
+ * AreEquivalent. Structurally equal predicates (according to their
+ * <code>equals</code>) are replaced by one canonical instance, kept in a weak
+ * table so that unused predicates can still be collected. Each operation has
+ * a bounded LRU cache. Predicates without <code>equals</code> and
+ * <code>hashCode</code> are only shared when they are the same object.
+ */
+public class InterningBooleanAlgebra<P, S> extends BooleanAlgebra<P, S> {
+
+	/**
+	 * The memoized operations
+	 */
+	public enum Operation {
+		AND, OR, NOT, SATISFIABLE, EQUIVALENT
+	}
+
+	/**
+	 * Default number of results kept for every operation
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	private final BooleanAlgebra<P, S> ba;
+
+	// canonical instance of every predicate
+	private final WeakHashMap<P, WeakReference<P>> interned = new WeakHashMap<P, WeakReference<P>>();
+
+	private final Map<Pair<P, P>, P> andCache;
+	private final Map<Pair<P, P>, P> orCache;
+	private final Map<P, P> notCache;
+	private final Map<P, Boolean> satCache;
+	private final Map<Pair<P, P>, Boolean> equivCache;
+
+	// indexed by Operation.ordinal()
+	private final AtomicLongArray hits = new AtomicLongArray(Operation.values().length);
+	private final AtomicLongArray misses = new AtomicLongArray(Operation.values().length);
+
+	public InterningBooleanAlgebra(BooleanAlgebra<P, S> ba) {
+		this(ba, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Wraps <code>ba</code> keeping at most <code>cacheSize</code> results
+	 * for every operation
+	 */
+	public InterningBooleanAlgebra(BooleanAlgebra<P, S> ba, int cacheSize) {
+		if (cacheSize <= 0)
+			throw new IllegalArgumentException("The cache size must be positive");
+		this.ba = ba;
+		andCache = lruCache(cacheSize);
+		orCache = lruCache(cacheSize);
+		notCache = lruCache(cacheSize);
+		satCache = lruCache(cacheSize);
+		equivCache = lruCache(cacheSize);
+	}
+
+	/**
+	 * @return the wrapped algebra
+	 */
+	public BooleanAlgebra<P, S> getAlgebra() {
+		return ba;
+	}
+
+	/**
+	 * @return the canonical predicate equal to <code>p</code>
+	 */
+	public P intern(P p) {
+		if (p == null)
+			return null;
+		synchronized (interned) {
+			WeakReference<P> ref = interned.get(p);
+			if (ref != null) {
+				P canonical = ref.get();
+				if (canonical != null)
+					return canonical;
+			}
+			interned.put(p, new WeakReference<P>(p));
+			return p;
+		}
+	}
+
+	/**
+	 * @return number of canonical predicates that are still reachable
+	 */
+	public int getInternedCount() {
+		synchronized (interned) {
+			return interned.size();
+		}
+	}
+
+	/**
+	 * @return number of results of <code>op</code> found in the cache
+	 */
+	public long getHitCount(Operation op) {
+		return hits.get(op.ordinal());
+	}
+
+	/**
+	 * @return number of results of <code>op</code> computed by the wrapped
+	 *         algebra
+	 */
+	public long getMissCount(Operation op) {
+		return misses.get(op.ordinal());
+	}
+
+	/**
+	 * Sets all hit and miss counters to 0
+	 */
+	public void resetStatistics() {
+		for (Operation op : Operation.values()) {
+			hits.set(op.ordinal(), 0);
+			misses.set(op.ordinal(), 0);
+		}
+	}
+
+	/**
+	 * Removes all the cached results and canonical predicates
+	 */
+	public void clearCaches() {
+		for (Map<?, ?> cache : new Map<?, ?>[] { andCache, orCache, notCache, satCache, equivCache })
+			synchronized (cache) {
+				cache.clear();
+			}
+		synchronized (interned) {
+			interned.clear();
+		}
+		clearMintermCache();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Interning(" + ba + ")");
+		for (Operation op : Operation.values())
+			sb.append(" " + op + ": " + getHitCount(op) + " hits, " + getMissCount(op) + " misses;");
+		return sb.toString();
+	}
+
+	@Override
+	public P MkAtom(S s) {
+		return intern(ba.MkAtom(s));
+	}
+
+	@Override
+	public P MkNot(P p) throws TimeoutException {
+		P cached = lookup(Operation.NOT, notCache, p);
+		if (cached != null)
+			return cached;
+		P not = intern(ba.MkNot(p));
+		store(notCache, p, not);
+		return not;
+	}
+
+	@Override
+	public P MkOr(Collection<P> pset) throws TimeoutException {
+		return intern(ba.MkOr(pset));
+	}
+
+	@Override
+	public P MkOr(P p1, P p2) throws TimeoutException {
+		Pair<P, P> key = symmetricKey(p1, p2);
+		P cached = lookup(Operation.OR, orCache, key);
+		if (cached != null)
+			return cached;
+		P or = intern(ba.MkOr(p1, p2));
+		store(orCache, key, or);
+		return or;
+	}
+
+	@Override
+	public P MkAnd(Collection<P> pset) throws TimeoutException {
+		return intern(ba.MkAnd(pset));
+	}
+
+	@Override
+	public P MkAnd(P p1, P p2) throws TimeoutException {
+		Pair<P, P> key = symmetricKey(p1, p2);
+		P cached = lookup(Operation.AND, andCache, key);
+		if (cached != null)
+			return cached;
+		P and = intern(ba.MkAnd(p1, p2));
+		store(andCache, key, and);
+		return and;
+	}
+
+	@Override
+	public P True() {
+		return intern(ba.True());
+	}
+
+	@Override
+	public P False() {
+		return intern(ba.False());
+	}
+
+	@Override
+	public boolean AreEquivalent(P p1, P p2) throws TimeoutException {
+		if (p1 == p2)
+			return true;
+		Pair<P, P> key = symmetricKey(p1, p2);
+		Boolean cached = lookup(Operation.EQUIVALENT, equivCache, key);
+		if (cached != null)
+			return cached;
+		boolean equiv = ba.AreEquivalent(p1, p2);
+		store(equivCache, key, equiv);
+		return equiv;
+	}
+
+	@Override
+	public boolean IsSatisfiable(P p1) throws TimeoutException {
+		Boolean cached = lookup(Operation.SATISFIABLE, satCache, p1);
+		if (cached != null)
+			return cached;
+		boolean sat = ba.IsSatisfiable(p1);
+		store(satCache, p1, sat);
+		return sat;
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el) throws TimeoutException {
+		return ba.HasModel(p1, el);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el1, S el2) throws TimeoutException {
+		return ba.HasModel(p1, el1, el2);
+	}
+
+	@Override
+	public S generateWitness(P p1) throws TimeoutException {
+		return ba.generateWitness(p1);
+	}
+
+	@Override
+	public Pair<S, S> generateWitnesses(P p1) throws TimeoutException {
+		return ba.generateWitnesses(p1);
+	}
+
+	@Override
+	protected List<Pair<P, BitSet>> GetMintermsOfDistinct(ArrayList<P> predicates, P startPred, long startTime,
+			long timeout) throws TimeoutException {
+		List<Pair<P, BitSet>> minterms = ba.GetMintermsOfDistinct(predicates, startPred, startTime, timeout);
+		for (Pair<P, BitSet> minterm : minterms)
+			minterm.first = intern(minterm.first);
+		return minterms;
+	}
+
+	@Override
+	public ArrayList<P> GetSeparatingPredicates(ArrayList<Collection<S>> characterGroups, long timeout)
+			throws TimeoutException {
+		return internAll(ba.GetSeparatingPredicates(characterGroups, timeout));
+	}
+
+	@Override
+	public ArrayList<P> GetSeparatingPredicatesFromPredicates(ArrayList<Collection<P>> predicateGroups, long timeout)
+			throws TimeoutException {
+		return internAll(ba.GetSeparatingPredicatesFromPredicates(predicateGroups, timeout));
+	}
+
+	private ArrayList<P> internAll(ArrayList<P> predicates) {
+		for (int i = 0; i < predicates.size(); i++)
+			predicates.set(i, intern(predicates.get(i)));
+		return predicates;
+	}
+
+	// The operations cached with this key are commutative, so the arguments
+	// are put in a fixed order
+	private Pair<P, P> symmetricKey(P p1, P p2) {
+		if (p1 != null && p2 != null && p1.hashCode() > p2.hashCode())
+			return new Pair<P, P>(p2, p1);
+		return new Pair<P, P>(p1, p2);
+	}
+
+	private <K, V> V lookup(Operation op, Map<K, V> cache, K key) {
+		V value;
+		synchronized (cache) {
+			value = cache.get(key);
+		}
+		if (value != null)
+			hits.incrementAndGet(op.ordinal());
+		else
+			misses.incrementAndGet(op.ordinal());
+		return value;
+	}
+
+	private static <K, V> void store(Map<K, V> cache, K key, V value) {
+		synchronized (cache) {
+			cache.put(key, value);
+		}
+	}
+
+	private static <K, V> Map<K, V> lruCache(final int maxSize) {
+		return new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+}
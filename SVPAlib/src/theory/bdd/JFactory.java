@@ -18,7 +18,7 @@ import java.util.Random;
 
 import org.sat4j.specs.TimeoutException;
 
-import utilities.Timers;
+import utilities.AutomataMetrics;
 
 /**
  * <p>This is a 100% Java implementation of the BDD factory.  It is based on
@@ -979,7 +979,7 @@ public class JFactory extends BDDFactory {
     }
 
     int not_rec(int r) throws TimeoutException {
-    	 if(Timers.fullTO())
+    	 if(AutomataMetrics.current().isTimedOut())
          	throw new TimeoutException("timeout");
     	
         BddCacheDataI entry;
@@ -1342,7 +1342,7 @@ public class JFactory extends BDDFactory {
         BddCacheDataI entry;
         int res;
 
-        if(Timers.fullTO())
+        if(AutomataMetrics.current().isTimedOut())
         	throw new TimeoutException("timeout");
         
         if (l == r)
@@ -12,13 +12,12 @@ import com.google.common.collect.ImmutableList;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.RandomAccess;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
@@ -46,7 +45,9 @@ public class CharPred extends ICharPred{
 	 * included)
 	 */
 	public CharPred(Character bot, Character top, boolean isReturn) {
-		this(ImmutableList.of(ImmutablePair.of(bot, top)), isReturn);
+		this(singleInterval(bot, top));
+		if(isReturn)
+			setAsReturn();
 	}
 
 	/**
@@ -77,97 +78,205 @@ public class CharPred extends ICharPred{
 	}
 	
 	public CharPred(ImmutableList<ImmutablePair<Character, Character>> intervals, boolean isReturn) {
-		for (ImmutablePair<Character, Character> interval : checkNotNull(intervals)) {
-			checkArgument(interval.left != null && interval.right != null &&
-					interval.left <= interval.right);
-		}
-
-		this.intervals = sortIntervals(checkNotNull(intervals));
+		this(sortIntervals(checkNotNull(intervals)));
 		if(isReturn)
 			setAsReturn();
 	}
 
-	private static ImmutableList<ImmutablePair<Character, Character>> sortIntervals(
-			ImmutableList<ImmutablePair<Character, Character>> intervals) {
-		for (ImmutablePair<Character, Character> interval : checkNotNull(intervals)) {
+	// bounds must be sorted, disjoint, non-adjacent intervals, it is not
+	// copied
+	private CharPred(char[] bounds) {
+		this.bounds = bounds;
+		this.hash = Arrays.hashCode(bounds);
+		this.intervals = new IntervalView();
+	}
+
+	/**
+	 * @return the predicate of the intervals [bounds[0], bounds[1]],
+	 *         [bounds[2], bounds[3]], ..., which must be sorted and neither
+	 *         overlapping nor adjacent
+	 */
+	public static CharPred ofBounds(char[] bounds) {
+		checkArgument(bounds.length % 2 == 0);
+		for (int i = 0; i < bounds.length; i += 2)
+			checkArgument(bounds[i] <= bounds[i + 1] && (i == 0 || bounds[i] > bounds[i - 1] + 1));
+		return new CharPred(bounds.clone());
+	}
+
+	private static char[] singleInterval(Character bot, Character top) {
+		checkArgument(bot != null && top != null && bot <= top);
+		return new char[] { bot, top };
+	}
+
+	// Returns the intervals as sorted, disjoint, non-adjacent bounds
+	private static char[] sortIntervals(List<ImmutablePair<Character, Character>> intervals) {
+		// each interval is packed as left << 16 | right, so that sorting the
+		// packed values sorts the intervals by left
+		int[] packed = new int[intervals.size()];
+		int size = 0;
+		for (ImmutablePair<Character, Character> interval : intervals) {
 			checkArgument(interval.left != null && interval.right != null &&
 					interval.left <= interval.right);
+			packed[size++] = (interval.left << 16) | interval.right;
 		}
+		Arrays.sort(packed);
 
-		List<ImmutablePair<Character, Character>> sortLeft = new ArrayList<ImmutablePair<Character, Character>>(intervals);
-		Collections.sort(sortLeft, new Comparator<ImmutablePair<Character, Character>>() {
-				public int compare(ImmutablePair<Character, Character> o1,
-						ImmutablePair<Character, Character> o2) {
-					return checkNotNull(o1).left - checkNotNull(o2).left;
-				}
-			});
-
-		ImmutableList.Builder<ImmutablePair<Character, Character>> ansBuilder = ImmutableList.builder();
-		for (int i = 0; i < sortLeft.size(); i++) {
-			char left = sortLeft.get(i).left;
-			char right = sortLeft.get(i).right;
-			for (int j = i + 1; j < sortLeft.size() && sortLeft.get(j).left <= right + 1; j++) {
-				right = (char)Math.max(right, sortLeft.get(j).right);
-				i++;
+		char[] bounds = new char[2 * size];
+		int length = 0;
+		for (int i = 0; i < size; i++) {
+			char left = (char) (packed[i] >>> 16);
+			char right = (char) packed[i];
+			if (length > 0 && left <= bounds[length - 1] + 1) {
+				if (right > bounds[length - 1])
+					bounds[length - 1] = right;
+			} else {
+				bounds[length++] = left;
+				bounds[length++] = right;
 			}
-			ansBuilder.add(ImmutablePair.of(left, right));
-		}
-
-		ImmutableList<ImmutablePair<Character, Character>> ans = ansBuilder.build();
-		for (int i = 1; i < ans.size(); i++) {
-			ImmutablePair<Character, Character> curr = ans.get(i);
-			ImmutablePair<Character, Character> prev = ans.get(i - 1);
-			checkArgument(prev.right < curr.left);
-			checkArgument(prev.right + 1 < curr.left);
 		}
-
-		return ans;
+		return length == bounds.length ? bounds : Arrays.copyOf(bounds, length);
 	}
 
 	public static ImmutableList<ImmutablePair<Character, Character>> invertIntervals(
                 ImmutableList<ImmutablePair<Character, Character>> intervals) {
+		return ImmutableList.copyOf(new CharPred(intervals).complement().intervals);
+	}
 
-                List<ImmutablePair<Character, Character>> ret =
-                    new ArrayList<ImmutablePair<Character, Character>>();
-
-                intervals = sortIntervals(intervals);
-
-                char end_point = MIN_CHAR;
-                for (int i = 0; i < intervals.size(); i++) {
-                    ImmutablePair<Character, Character> interval = intervals.get(i);
-                    if (interval.left != MIN_CHAR) {
-                        ret.add(ImmutablePair.of(end_point, (char)(interval.left - 1)));
-                        end_point = (char) (interval.right + 1);
-                    }
-                    if (i == intervals.size() - 1) {
-                        if (interval.right != MAX_CHAR)
-                            ret.add(ImmutablePair.of((char)(interval.right + 1), MAX_CHAR));
-                    }
-                }
-                return ImmutableList.copyOf(ret);
-        }
+	/**
+	 * @return number of maximal intervals in the set
+	 */
+	public int intervalCount() {
+		return bounds.length / 2;
+	}
 
-	public boolean isSatisfiedBy(char c) {
-		for (ImmutablePair<Character, Character> interval : intervals) {
-			if (interval.left <= c && c <= interval.right) {
-				return true;
+	/**
+	 * @return the smallest character of the <code>i</code>-th interval
+	 */
+	public char getLow(int i) {
+		return bounds[2 * i];
+	}
+
+	/**
+	 * @return the largest character of the <code>i</code>-th interval
+	 */
+	public char getHigh(int i) {
+		return bounds[2 * i + 1];
+	}
+
+	/**
+	 * @return true iff the set is empty
+	 */
+	public boolean isEmpty() {
+		return bounds.length == 0;
+	}
+
+	/**
+	 * @return the set of characters in both this and <code>other</code>
+	 */
+	public CharPred intersectionWith(CharPred other) {
+		char[] b1 = bounds;
+		char[] b2 = checkNotNull(other).bounds;
+		if (b1.length == 0 || b2.length == 0)
+			return StdCharPred.FALSE;
+
+		char[] res = new char[b1.length + b2.length];
+		int length = 0;
+		for (int i = 0, j = 0; i < b1.length && j < b2.length;) {
+			char lo = (char) Math.max(b1[i], b2[j]);
+			char hi = (char) Math.min(b1[i + 1], b2[j + 1]);
+			if (lo <= hi) {
+				res[length++] = lo;
+				res[length++] = hi;
 			}
+			if (b1[i + 1] == hi)
+				i += 2;
+			else
+				j += 2;
 		}
+		return new CharPred(Arrays.copyOf(res, length));
+	}
+
+	/**
+	 * @return the set of characters in this or in <code>other</code>
+	 */
+	public CharPred unionWith(CharPred other) {
+		char[] b1 = bounds;
+		char[] b2 = checkNotNull(other).bounds;
 
-		return false;
+		char[] res = new char[b1.length + b2.length];
+		int length = 0;
+		for (int i = 0, j = 0; i < b1.length || j < b2.length;) {
+			// take the interval with the smallest left end
+			char lo, hi;
+			if (j == b2.length || (i < b1.length && b1[i] <= b2[j])) {
+				lo = b1[i];
+				hi = b1[i + 1];
+				i += 2;
+			} else {
+				lo = b2[j];
+				hi = b2[j + 1];
+				j += 2;
+			}
+			if (length > 0 && lo <= res[length - 1] + 1) {
+				if (hi > res[length - 1])
+					res[length - 1] = hi;
+			} else {
+				res[length++] = lo;
+				res[length++] = hi;
+			}
+		}
+		return new CharPred(Arrays.copyOf(res, length));
+	}
+
+	/**
+	 * @return the set of characters not in this
+	 */
+	public CharPred complement() {
+		if (bounds.length == 0)
+			return StdCharPred.TRUE;
+
+		char[] res = new char[bounds.length + 2];
+		int length = 0;
+		if (bounds[0] > MIN_CHAR) {
+			res[length++] = MIN_CHAR;
+			res[length++] = (char) (bounds[0] - 1);
+		}
+		for (int i = 1; i + 1 < bounds.length; i += 2) {
+			res[length++] = (char) (bounds[i] + 1);
+			res[length++] = (char) (bounds[i + 1] - 1);
+		}
+		if (bounds[bounds.length - 1] < MAX_CHAR) {
+			res[length++] = (char) (bounds[bounds.length - 1] + 1);
+			res[length++] = MAX_CHAR;
+		}
+		return new CharPred(Arrays.copyOf(res, length));
+	}
+
+	public boolean isSatisfiedBy(char c) {
+		// binary search for the last interval with left end <= c
+		int lo = 0;
+		int hi = bounds.length / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (bounds[2 * mid] <= c)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		return hi >= 0 && c <= bounds[2 * hi + 1];
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("[");
-		for (ImmutablePair<Character, Character> pair : intervals) {
-			if (pair.left == pair.right)
-				sb.append(printChar(pair.left));
+		for (int i = 0; i < bounds.length; i += 2) {
+			if (bounds[i] == bounds[i + 1])
+				sb.append(printChar(bounds[i]));
 			else {
-				sb.append(printChar(pair.left));
+				sb.append(printChar(bounds[i]));
 				sb.append("-");
-				sb.append(printChar(pair.right));
+				sb.append(printChar(bounds[i + 1]));
 			}
 		}
 		sb.append("]");
@@ -177,8 +286,11 @@ public class CharPred extends ICharPred{
 
 	@Override
 	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
 		if (obj instanceof CharPred) {
-			return Objects.equals(intervals, ((CharPred)obj).intervals);
+			CharPred other = (CharPred) obj;
+			return hash == other.hash && Arrays.equals(bounds, other.bounds);
 		} else {
 			return false;
 		}
@@ -186,14 +298,38 @@ public class CharPred extends ICharPred{
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(CharPred.class, intervals);
+		return hash;
 	}
 
-	public final ImmutableList<ImmutablePair<Character, Character>> intervals;
+	// the intervals [bounds[2i], bounds[2i+1]], sorted, disjoint and not
+	// adjacent
+	private final char[] bounds;
+	private final int hash;
+
+	/**
+	 * Read-only view of the sorted, disjoint intervals of the set
+	 */
+	public final List<ImmutablePair<Character, Character>> intervals;
 
 	public static final char MIN_CHAR = Character.MIN_VALUE;
     public static final char MAX_CHAR = Character.MAX_VALUE;
 
+	private final class IntervalView extends AbstractList<ImmutablePair<Character, Character>>
+			implements RandomAccess {
+
+		@Override
+		public ImmutablePair<Character, Character> get(int index) {
+			if (index < 0 || 2 * index >= bounds.length)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			return ImmutablePair.of(bounds[2 * index], bounds[2 * index + 1]);
+		}
+
+		@Override
+		public int size() {
+			return bounds.length / 2;
+		}
+	}
+
 	// Only prints readable chars, otherwise print unicode
 	public static String printChar(char c) {
 		Map<Character, String> unescapeMap = new HashMap<Character, String>();
@@ -10,16 +10,22 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.sat4j.specs.TimeoutException;
 
 import com.google.common.collect.ImmutableList;
 
 import theory.BooleanAlgebraSubst;
 import theory.characters.*;
+import utilities.Deadline;
 import utilities.Pair;
 
 /**
@@ -29,36 +35,7 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 
 	@Override
 	public CharPred MkNot(CharPred u) {
-		List<ImmutablePair<Character,Character>> newIntervals =
-				new ArrayList<ImmutablePair<Character, Character>>();
-
-		if(checkNotNull(u).intervals.isEmpty()) {
-			return StdCharPred.TRUE;
-		}
-
-		Character curBot = u.intervals.get(0).left;
-		if(CharPred.MIN_CHAR < curBot) {
-			newIntervals.add(ImmutablePair.of(CharPred.MIN_CHAR, (char)(curBot - 1)));
-		}
-
-		char prevTop = u.intervals.get(0).right;
-		for(int i = 1; i < u.intervals.size(); i++) {
-			ImmutablePair<Character,Character> curr = u.intervals.get(i);
-			curBot = curr.left;
-			char newIntLo = (char)(prevTop + 1);
-			char newIntHi = (char)(curBot - 1);
-			if (newIntLo <= newIntHi) {
-				newIntervals.add(ImmutablePair.of(newIntLo, newIntHi));
-			}
-
-			prevTop = curr.right;
-		}
-
-		if(prevTop < CharPred.MAX_CHAR) {
-			newIntervals.add(ImmutablePair.of((char)(prevTop + 1), CharPred.MAX_CHAR));
-		}
-
-		return new CharPred(ImmutableList.copyOf(newIntervals));
+		return checkNotNull(u).complement();
 	}
 
 	@Override
@@ -72,7 +49,7 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 
 	@Override
 	public CharPred MkOr(CharPred u1, CharPred u2) {
-		return MkNot(MkAnd(MkNot(u1), MkNot(u2)));
+		return checkNotNull(u1).unionWith(u2);
 	}
 
 	@Override
@@ -86,31 +63,7 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 
 	@Override
 	public CharPred MkAnd(CharPred u1, CharPred u2) {
-		if(checkNotNull(u1).intervals.isEmpty() || checkNotNull(u2).intervals.isEmpty()) {
-			return False();
-		}
-
-		List<ImmutablePair<Character,Character>> newIntervals =
-				new ArrayList<ImmutablePair<Character, Character>>();
-
-		for (int i = 0, j = 0; i < u1.intervals.size() && j < u2.intervals.size(); ) {
-			ImmutablePair<Character, Character> cur1 = u1.intervals.get(i);
-			ImmutablePair<Character, Character> cur2 = u2.intervals.get(j);
-
-			char lo = (char)Math.max(cur1.left, cur2.left);
-			char hi = (char)Math.min(cur1.right, cur2.right);
-			if (lo <= hi) {
-				newIntervals.add(ImmutablePair.of(lo, hi));
-			}
-
-			if (cur1.right == hi) {
-				i++;
-			} else {
-				j++;
-			}
-		}
-
-		return new CharPred(ImmutableList.copyOf(newIntervals));
+		return checkNotNull(u1).intersectionWith(u2);
 	}
 
 	@Override
@@ -135,7 +88,7 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 
 	@Override
 	public boolean IsSatisfiable(CharPred u) {
-		return !checkNotNull(u).intervals.isEmpty();
+		return !checkNotNull(u).isEmpty();
 	}
 
 	@Override
@@ -150,14 +103,14 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 
 	@Override
 	public Character generateWitness(CharPred u) {
-		if (checkNotNull(u).intervals.isEmpty()) {
+		if (checkNotNull(u).isEmpty()) {
 			return null;
 		} else {
 			Random r = new Random();
-			int whichInterval = r.nextInt(u.intervals.size());
-			ImmutablePair<Character, Character> interval = u.intervals.get(whichInterval);
-			int diff = interval.right-interval.left;
-			Character c= (char)(Character.valueOf(interval.left) + (diff==0?0:r.nextInt(diff+1)));
+			int whichInterval = r.nextInt(u.intervalCount());
+			char left = u.getLow(whichInterval);
+			int diff = u.getHigh(whichInterval) - left;
+			Character c= (char)(left + (diff==0?0:r.nextInt(diff+1)));
 			return c;
 		}
 	}
@@ -222,6 +175,66 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 		}
 	}
 
+	/**
+	 * Computes the minterms with one sweep over the sorted endpoints of the
+	 * intervals of all the predicates: between two consecutive endpoints the
+	 * set of predicates containing a character does not change.
+	 */
+	@Override
+	protected List<Pair<CharPred, BitSet>> GetMintermsOfDistinct(ArrayList<CharPred> predicates, CharPred startPred,
+			long startTime, long timeout) throws TimeoutException {
+		if (!checkNotNull(startPred).equals(True()))
+			return super.GetMintermsOfDistinct(predicates, startPred, startTime, timeout);
+
+		// an event is (position, predicate index, 1 if the predicate starts
+		// and 0 if it ends at position) packed in a long
+		int eventCount = 0;
+		for (CharPred p : predicates)
+			eventCount += 2 * p.intervalCount();
+		long[] events = new long[eventCount];
+		eventCount = 0;
+		for (int i = 0; i < predicates.size(); i++) {
+			CharPred p = predicates.get(i);
+			for (int k = 0; k < p.intervalCount(); k++) {
+				events[eventCount++] = ((long) p.getLow(k) << 32) | (i << 1) | 1;
+				if (p.getHigh(k) < CharPred.MAX_CHAR)
+					events[eventCount++] = ((long) (p.getHigh(k) + 1) << 32) | (i << 1);
+			}
+		}
+		Arrays.sort(events, 0, eventCount);
+
+		// group the segments between endpoints by the predicates containing
+		// them
+		Map<BitSet, ImmutableList.Builder<ImmutablePair<Character, Character>>> groups = new LinkedHashMap<>();
+		BitSet current = new BitSet(predicates.size());
+		int e = 0;
+		int pos = CharPred.MIN_CHAR;
+		while (pos <= CharPred.MAX_CHAR) {
+			for (; e < eventCount && (int) (events[e] >>> 32) == pos; e++) {
+				int predIndex = (int) (events[e] & 0xFFFFFFFFL) >>> 1;
+				current.set(predIndex, (events[e] & 1) == 1);
+			}
+			int nextPos = e < eventCount ? (int) (events[e] >>> 32) : CharPred.MAX_CHAR + 1;
+
+			ImmutableList.Builder<ImmutablePair<Character, Character>> group = groups.get(current);
+			if (group == null) {
+				group = ImmutableList.builder();
+				groups.put((BitSet) current.clone(), group);
+			}
+			group.add(ImmutablePair.of((char) pos, (char) (nextPos - 1)));
+			pos = nextPos;
+		}
+
+		if (System.currentTimeMillis() - startTime > timeout)
+			throw new TimeoutException("Minterm construction timeout");
+		Deadline.checkCurrent();
+
+		List<Pair<CharPred, BitSet>> minterms = new ArrayList<Pair<CharPred, BitSet>>(groups.size());
+		for (Map.Entry<BitSet, ImmutableList.Builder<ImmutablePair<Character, Character>>> group : groups.entrySet())
+			minterms.add(new Pair<CharPred, BitSet>(new CharPred(group.getValue().build()), group.getKey()));
+		return minterms;
+	}
+
 	/**
 	 * returns a string of a list of CharPred
 	 * @param charPreds
@@ -14,9 +14,10 @@ import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
 
 import org.sat4j.specs.TimeoutException;
-import static com.google.common.base.Preconditions.checkNotNull;
 
 import automata.Automaton;
 import automata.Move;
@@ -25,6 +26,7 @@ import automata.sfa.SFAMove;
 import automata.sfa.SFAEpsilon;
 import automata.sfa.SFAInputMove;
 import theory.BooleanAlgebraSubst;
+import utilities.Deadline;
 import utilities.Pair;
 
 
@@ -55,6 +57,9 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	protected Map<Integer, Collection<SFTEpsilon<P, F, S>>> epsTransitionsFrom;
 	protected Map<Integer, Collection<SFTEpsilon<P, F, S>>> epsTransitionsTo;
 
+	// built by getRunner, SFTs are not modified after construction
+	private volatile SFTRunner<P, F, S> runner;
+
 	public Integer stateCount() {
 		return states.size();
 	}
@@ -140,59 +145,45 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <P, F, S> List<S> outputOn(SFT<P, F, S> sftWithEps, List<S> input,
 												 BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		return sftWithEps.getRunner(ba).outputOn(input);
+	}
 
-		// codes for nondeterministic but single-valued symbolic finite transducers
-		List<List<S>> outputs = new ArrayList<List<S>>();
-
-		SFT<P, F, S> sft = sftWithEps.removeEpsilonMoves(ba);
-		// guarantee that there are no epsilon transitions for now
-
-		backtrack(outputs, new ArrayList<S>(), sft, sft.getInitialState(), input, 0, ba);
+	/**
+	 * Computes one of the outputs produced when reading every input of <code>inputs</code>, in parallel using
+	 * <code>executor</code>. The epsilon moves are removed once for the whole batch.
+	 *
+	 * @return the outputs in the order of the inputs, null for the inputs on which the output is undefined
+	 * @throws TimeoutException
+	 */
+	public List<List<S>> outputOnAll(Iterable<List<S>> inputs, BooleanAlgebraSubst<P, F, S> ba,
+			ExecutorService executor) throws TimeoutException {
+		return getRunner(ba).outputOnAll(inputs, executor);
+	}
 
-		// if you want the method to be adapt to non single-valued symbolic finite transducers, you could just return
-		// the whole outputs.
-		if (outputs.size() != 0)
-			return outputs.get(0);
-		else
-			return null;
+	/**
+	 * Computes one of the outputs produced when reading every input of <code>inputs</code>, in parallel using
+	 * <code>executor</code>, and passes the index of every input with its output, null if undefined, to
+	 * <code>callback</code> on the calling thread as soon as it is computed.
+	 *
+	 * @throws TimeoutException
+	 */
+	public void outputOnAll(Iterable<List<S>> inputs, BooleanAlgebraSubst<P, F, S> ba, ExecutorService executor,
+			BiConsumer<Integer, ? super List<S>> callback) throws TimeoutException {
+		getRunner(ba).outputOnAll(inputs, executor, callback);
 	}
 
-	// use backtrack method to get all possible outputs
-	private static <P, F, S> void backtrack(List<List<S>> outputs, List<S> tempList, SFT<P, F, S> sft,
-											Integer currentState, List<S> input, int position,
-											BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-
-		if (position > input.size())
-			return;
-		else if (position == input.size()) {
-			if (sft.isFinalState(currentState)) {
-				if (sft.getFinalStatesAndTails().get(currentState).size() == 0) {
-					outputs.add(new ArrayList<S>(tempList));
-				} else {
-					for (List<S> tail: sft.getFinalStatesAndTails().get(currentState)) {
-						List<S> finalResult = new ArrayList<S>(tempList);
-						finalResult.addAll(tail);
-						outputs.add(new ArrayList<S>(finalResult));
-					}
-				}
-			}
-			return;
-		} else {
-			Collection<SFTInputMove<P, F, S>> transitions = sft.getInputMovesFrom(currentState);
-			boolean canMove = false;
-			for (SFTInputMove<P, F, S> transition: transitions) {
-				if (ba.HasModel(transition.guard, input.get(position))) {
-					for (F outputFunc: transition.outputFunctions)
-						tempList.add(ba.MkSubstFuncConst(outputFunc, input.get(position)));
-					backtrack(outputs, tempList, sft, transition.to, input, position + 1, ba);
-					for (int i = 0; i < transition.outputFunctions.size(); i++)
-						tempList.remove(tempList.size() - 1);
-					canMove = true;
-				}
-			}
-			if (!canMove)
-				return;
+	/**
+	 * Returns the runner of this SFT, built once per Boolean algebra, to transduce inputs in a single pass
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFTRunner<P, F, S> getRunner(BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		SFTRunner<P, F, S> cached = runner;
+		if (cached == null || !cached.isFor(ba)) {
+			cached = new SFTRunner<P, F, S>(this, ba);
+			runner = cached;
 		}
+		return cached;
 	}
 
 	/**
@@ -234,6 +225,7 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 
 		// depth first search
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			Pair<Integer, Integer> currState = toVisit.pop();
 			int currStateId = reached.get(currState);
 
@@ -485,28 +477,30 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	 */
 	private static <P, F, S> List<List<SFTMove<P, F, S>>> possibleTransitionChains(SFT<P, F, S> sft, Integer startState, int steps) {
 		List<List<SFTMove<P, F, S>>> chains = new ArrayList<List<SFTMove<P, F, S>>>();
+		if (steps <= 0)
+			return chains; // no solution
+
+		// extend the chains one step at a time, instead of backtracking
+		List<List<SFTMove<P, F, S>>> prefixes = new ArrayList<List<SFTMove<P, F, S>>>();
 		for (SFTMove<P, F, S> initialTransition: sft.getInputMovesFrom(startState)) {
-			List<SFTMove<P, F, S>> tempList = new LinkedList<SFTMove<P, F, S>>();
-			tempList.add(initialTransition);
-			backtrack(chains, tempList, sft, steps - 1);
+			List<SFTMove<P, F, S>> prefix = new ArrayList<SFTMove<P, F, S>>();
+			prefix.add(initialTransition);
+			prefixes.add(prefix);
 		}
-		return chains;
-	}
-
-	// use backtrack method to get all possible transition chains
-	private static <P, F, S> void backtrack(List<List<SFTMove<P, F, S>>> chains, List<SFTMove<P, F, S>> tempList, SFT<P, F, S> sft, int remainSteps) {
-		if (remainSteps < 0)
-			return; // no solution
-		else if (remainSteps == 0)
-			chains.add(new ArrayList<SFTMove<P, F, S>>(tempList));
-		else {
-			Integer currentState = tempList.get(tempList.size() - 1).to;
-			for (SFTMove<P, F, S> transition: sft.getTransitionsFrom(currentState)) {
-				tempList.add(transition);
-				backtrack(chains, tempList, sft, remainSteps - 1);
-				tempList.remove(tempList.size() - 1);
+		for (int step = 1; step < steps; step++) {
+			List<List<SFTMove<P, F, S>>> extended = new ArrayList<List<SFTMove<P, F, S>>>();
+			for (List<SFTMove<P, F, S>> prefix: prefixes) {
+				Integer currentState = prefix.get(prefix.size() - 1).to;
+				for (SFTMove<P, F, S> transition: sft.getTransitionsFrom(currentState)) {
+					List<SFTMove<P, F, S>> chain = new ArrayList<SFTMove<P, F, S>>(prefix);
+					chain.add(transition);
+					extended.add(chain);
+				}
 			}
+			prefixes = extended;
 		}
+		chains.addAll(prefixes);
+		return chains;
 	}
 
 	public boolean decide1equality(SFT<P, F, S> otherSftWithEps, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
@@ -524,145 +518,26 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	public static <P, F, S> boolean decide1equality(SFT<P, F, S> sft1withEps,
 													SFT<P, F, S> sft2withEps,
 													BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		// Figure 3 line 1: C := A  \times B;
-		SFTProduct<P, F, S> product = SFTProduct.MkSFTProduct(sft1withEps, sft2withEps, ba);
-		// <code>product</code> is a product without epsilon transitions.
-
-		// Figure 3 line 1: Q := \{q_c^0 \mapsto (\epsilon, \epsilon)\};
-		HashMap<Integer, Pair<List<S>, List<S>>> reached = new HashMap<Integer, Pair<List<S>, List<S>>>();
-		reached.put(product.getInitialState(), new Pair(new ArrayList<S>(), new ArrayList<S>()));
-
-		// Figure 3 line 1: S := stack(q_c^0);
-		LinkedList<Integer> toVisit = new LinkedList<Integer>();
-		toVisit.add(product.getInitialState());
-
-		// Figure 3 line 2: \textbf{while} \ S \neq \emptyset
-		while (!toVisit.isEmpty()) {
-
-			// Figure 3 line 3: p := pop(S);
-			Integer currState = toVisit.pop();
-
-			// Figure 3 line 3: (\alpha, \beta) := Q(p);
-			Pair<List<S>, List<S>> promise = reached.get(currState);
-
-			// Figure 3 line 4: \textbf{foreach} \  (p, \varphi, (\textbf f, \textbf g), q) \in R_C(p)
-			for (SFTProductInputMove transition: product.getInputMovesFrom(currState)) {
-
-				// Figure 3 line 5: (u, v) := (\alpha \cdot \textbf f,\beta \cdot \textbf g);
-				List<F> u = new ArrayList<F>();
-				List<F> v = new ArrayList<F>();
-				for (S a: promise.first)
-					u.add(ba.MkFuncConst(a));
-				for (S b: promise.second)
-					v.add(ba.MkFuncConst(b));
-				u.addAll(transition.outputFunctions1);
-				v.addAll(transition.outputFunctions2);
-
-				// Figure 3 line 6: \textbf{if} \ q \in F_C \wedge |u| \neq |v| \ \textbf{return} \ f;
-				/* the following code is the precise implementation of Figure 3 line 6.
-				if (product.isFinalState(currState) && u.size() != v.size())
-					return false;
-				*/
-				// However, we add tails for final states, so the SFT here is different from the SFT described on paper.
-				// Here is the modification of Figure 3 line 6 so that the method decide1equality adapts to SFT with tails
-				if (product.isFinalState(currState)) {
-					Set<List<S>> tails1 = checkNotNull(product.getFinalStatesAndTails().get(currState).first);
-					Set<List<S>> tails2 = checkNotNull(product.getFinalStatesAndTails().get(currState).second);
-					// since product is constructed by 2 SFTs in MkSFTProduct in SFTProduct.java, tails1 and tails2
-					// could not be null pointers.
-					if (tails1.size() > 1 || tails2.size() > 1) // if any final state in any SFT has many tails, their
-						// outputs are uncertain, so 2 SFTs cannot be 1-equality
-						return false;
-					List<F> finalU = new ArrayList<F>(u);
-					List<F> finalV = new ArrayList<F>(v);
-					for (List<S> tail: tails1)
-						for (S element: tail)
-							finalU.add(ba.MkFuncConst(element));
-					for (List<S> tail: tails2)
-						for (S element: tail)
-							finalV.add(ba.MkFuncConst(element));
-					if (finalU.size() != finalV.size())
-						return false;
-					for (int i = 0; i < finalU.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, finalU.get(i), finalV.get(i)))
-							return false;
-				}
-
-				// Figure 3 line 7: \textbf{if} \ |u| \geq |v|
-				if (u.size() >= v.size()) {
-
-					// Figure 3 line 8: \textbf{if} \ \vee_{i=0}^{|v|-1}u_i \not\equiv_\varphi v_i \ \textbf{return} \ f;
-					for (int i = 0; i < v.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i)))
-							return false;
-
-					// Figure 3 line 9: w := [u_{|v|,\dots,u_{|u|-1}}];
-					List<F> w = new ArrayList<F>();
-					for (int i = v.size(); i < u.size(); i++)
-						w.add(u.get(i));
-
-					// Figure 3 line 9: c := [\![ w]\!](witness(\varphi));
-					S witness = (S)transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < u.size() - v.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-
-					// Figure 3 line 10: \textbf{if} \ w \not\equiv_\varphi c \vee (q \in Dom(Q) \wedge Q(q) \neq
-					// (\textbf c, \epsilon)) \textbf{return} \ f;
-					for (int i = 0; i < u.size() - v.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard)))
-							return false;
-
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(c, new ArrayList<S>())))
-						return false;
-
-					// Figure 3 line 11: \textbf{if} \ q \not\in Dom(Q) \ push(q,S);
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-
-						// Figure 3 line 11: Q(q):=(\textbf c, \epsilon);
-						reached.put(nextState, new Pair(c, new ArrayList<S>()));
-					}
+		return witness1disequality(sft1withEps, sft2withEps, ba) == null;
+	}
 
-				// Figure 3 line 12: \textbf{if} \ |u|<|v| \dots (symmetrical \ to \ the \  case \ |u|>|v|)
-				} else { // u.size() < v.size()
-					for (int i = 0; i < u.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i)))
-							return false;
-					List<F> w = new ArrayList<F>();
-					for (int i = u.size(); i < v.size(); i++)
-						w.add(v.get(i));
-					S witness = (S)transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < v.size() - u.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-					for (int i = 0; i < v.size() - u.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard)))
-							return false;
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(new ArrayList<S>(), c)))
-						return false;
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-						reached.put(nextState, new Pair(new ArrayList<S>(), c));
-					}
-				}
-			}
-		}
+	public boolean decide1equalityParallel(SFT<P, F, S> otherSftWithEps, BooleanAlgebraSubst<P, F, S> ba,
+			ExecutorService executor, long timeout) throws TimeoutException {
+		return decide1equalityParallel(this, otherSftWithEps, ba, executor, timeout);
+	}
 
-		// Figure 3 line 13: \textbf{return} \ t;
-		return true;
+	/**
+	 * judge whether <code>sft1withEps</code> and <code>sft2withEps</code> are 1-equality
+	 * (partial equivalent), expanding the states of every breadth-first level of their
+	 * product in parallel using <code>executor</code>.
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, F, S> boolean decide1equalityParallel(SFT<P, F, S> sft1withEps,
+															SFT<P, F, S> sft2withEps,
+															BooleanAlgebraSubst<P, F, S> ba,
+															ExecutorService executor, long timeout) throws TimeoutException {
+		return witness1disequalityParallel(sft1withEps, sft2withEps, ba, executor, timeout) == null;
 	}
 
 	public List<S> witness1disequality(SFT<P, F, S> otherSft, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
@@ -671,7 +546,8 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 
 	/**
 	 * generate a witness if <code>sft1withEps</code> and <code>sft2withEps</code> are not
-	 * 1-equality
+	 * 1-equality. Their product is explored breadth-first, so the witness goes through as
+	 * few states of the product as possible
 	 *
 	 * @param sft1withEps symbolic finite transducer 1 who may has epsilon transitions
 	 * @param sft2withEps symbolic finite transducer 2 who may has epsilon transitions
@@ -679,130 +555,27 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	public static <P, F, S> List<S> witness1disequality(SFT<P, F, S> sft1withEps,
 														SFT<P, F, S> sft2withEps,
 														BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		SFTProduct<P, F, S> product = SFTProduct.MkSFTProduct(sft1withEps, sft2withEps, ba);
-		// a product without epsilon transitions
-
-		HashMap<Integer, Pair<List<S>, List<S>>> reached = new HashMap<Integer, Pair<List<S>, List<S>>>();
-		LinkedList<Integer> toVisit = new LinkedList<Integer>();
-		HashMap<Integer, List<S>> path = new HashMap<Integer, List<S>>();
-
-		reached.put(product.getInitialState(), new Pair(new ArrayList<S>(), new ArrayList<S>()));
-		// stores reached states and its promise
-		toVisit.add(product.getInitialState());
-		path.put(product.getInitialState(), new ArrayList<S>());
-		// stores reached states and the latest path from the initial state to it, which means if there are many possible
-		// paths from the initial state to it, only store the latest used one in the following loop
-
-		while (!toVisit.isEmpty()) {
-
-			Integer currState = toVisit.pop();
-			Pair<List<S>, List<S>> promise = reached.get(currState);
-
-			for (SFTProductInputMove transition: product.getInputMovesFrom(currState)) {
-
-				List<S> previousPath = new ArrayList<S>(path.get(transition.from));
-				previousPath.add((S) transition.getWitness(ba));
-				path.put(transition.to, previousPath);
-
-				List<F> u = new ArrayList<F>();
-				List<F> v = new ArrayList<F>();
-				for (S a: promise.first)
-					u.add(ba.MkFuncConst(a));
-				for (S b: promise.second)
-					v.add(ba.MkFuncConst(b));
-				u.addAll(transition.outputFunctions1);
-				v.addAll(transition.outputFunctions2);
-
-				if (product.isFinalState(currState)) {
-					Set<List<S>> tails1 = checkNotNull(product.getFinalStatesAndTails().get(currState).first);
-					Set<List<S>> tails2 = checkNotNull(product.getFinalStatesAndTails().get(currState).second);
-
-					if (tails1.size() > 1 || tails2.size() > 1)
-						return previousPath;
-					List<F> finalU = new ArrayList<F>(u);
-					List<F> finalV = new ArrayList<F>(v);
-					for (List<S> tail: tails1)
-						for (S element: tail)
-							finalU.add(ba.MkFuncConst(element));
-					for (List<S> tail: tails2)
-						for (S element: tail)
-							finalV.add(ba.MkFuncConst(element));
-					if (finalU.size() != finalV.size())
-						return previousPath;
-					for (int i = 0; i < finalU.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, finalU.get(i), finalV.get(i)))
-							return previousPath;
-				}
+		return new SFTEquality<P, F, S>(sft1withEps, sft2withEps, ba).witness();
+	}
 
-				if (u.size() >= v.size()) {
-					for (int i = 0; i < v.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					List<F> w = new ArrayList<F>();
-					for (int i = v.size(); i < u.size(); i++)
-						w.add(u.get(i));
-					S witness = (S) transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < u.size() - v.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-					for (int i = 0; i < u.size() - v.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(c, new ArrayList<S>()))) {
-						previousPath.addAll(product.getWitness(transition.to, ba));
-						return previousPath;
-					}
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-						reached.put(nextState, new Pair(c, new ArrayList<S>()));
-					}
-				} else { // u.size() < v.size()
-					for (int i = 0; i < u.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					List<F> w = new ArrayList<F>();
-					for (int i = u.size(); i < v.size(); i++)
-						w.add(v.get(i));
-					S witness = (S) transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < v.size() - u.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-					for (int i = 0; i < v.size() - u.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(new ArrayList<S>(), c))) {
-						previousPath.addAll(product.getWitness(transition.to, ba));
-						return previousPath;
-					}
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-						reached.put(nextState, new Pair(new ArrayList<S>(), c));
-					}
-				}
+	public List<S> witness1disequalityParallel(SFT<P, F, S> otherSft, BooleanAlgebraSubst<P, F, S> ba,
+			ExecutorService executor, long timeout) throws TimeoutException {
+		return witness1disequalityParallel(this, otherSft, ba, executor, timeout);
+	}
 
-			}
-		}
-		return null; // two SFTs are partial equivalent
+	/**
+	 * generate a witness if <code>sft1withEps</code> and <code>sft2withEps</code> are not
+	 * 1-equality, expanding the states of every breadth-first level of their product in
+	 * parallel using <code>executor</code>. The level stops being expanded as soon as a
+	 * witness is found, and the shortest witness found in it is returned.
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, F, S> List<S> witness1disequalityParallel(SFT<P, F, S> sft1withEps,
+																SFT<P, F, S> sft2withEps,
+																BooleanAlgebraSubst<P, F, S> ba,
+																ExecutorService executor, long timeout) throws TimeoutException {
+		return new SFTEquality<P, F, S>(sft1withEps, sft2withEps, ba).witness(executor, timeout);
 	}
 
 	/**
@@ -902,6 +675,7 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 
 		// Combined has set of variables the disjoint union of the two sets
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			Pair<Integer, Integer> currState = toVisit.removeFirst();
 			int currStateId = reached.get(currState);
 
@@ -943,6 +717,7 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 
 		// depth first search
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			Integer currState = toVisit.pop();
 			int currStateId = reached.get(currState);
 
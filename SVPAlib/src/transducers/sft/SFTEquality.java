@@ -0,0 +1,296 @@
+package transducers.sft;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+import utilities.Deadline;
+import utilities.Pair;
+
+/**
+ * Decides the 1-equality of two SFTs over their product, following Figure 3
+ * of the paper Symbolic Finite State Transducers: Algorithms And
+ * Applications. Every reached state of the product is memoized with the
+ * output delay of the two SFTs when reaching it, and the product is explored
+ * breadth-first, so the counterexample returned goes through the smallest
+ * number of states. The states of a breadth-first level can be expanded in
+ * parallel; the expansion of the level then stops as soon as one of them
+ * finds a counterexample.
+ */
+final class SFTEquality<P, F, S> {
+
+	private final SFTProduct<P, F, S> product;
+	private final BooleanAlgebraSubst<P, F, S> ba;
+
+	// the moves out of every state, never modified so the workers can share
+	// them
+	private final Map<Integer, List<SFTProductInputMove<P, F, S>>> movesFrom;
+
+	// Figure 3 Q: the output delay of every reached state, the output of one
+	// SFT that the other one has not produced yet
+	private final Map<Integer, Pair<List<S>, List<S>>> delays = new HashMap<Integer, Pair<List<S>, List<S>>>();
+
+	// every reached state but the initial one is first reached from
+	// parents[q] reading symbols[q]
+	private final Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+	private final Map<Integer, S> symbols = new HashMap<Integer, S>();
+
+	// the delays reached by the moves out of a state, in the order of
+	// movesFrom, until the first move on which the SFTs disagree
+	private static final class Expansion<S> {
+		final List<Pair<List<S>, List<S>>> delays = new ArrayList<Pair<List<S>, List<S>>>();
+		final List<S> symbols = new ArrayList<S>();
+		int failure = -1;
+	}
+
+	SFTEquality(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps, BooleanAlgebraSubst<P, F, S> ba) {
+		// Figure 3 line 1: C := A \times B;
+		this.product = SFTProduct.MkSFTProduct(sft1withEps, sft2withEps, ba);
+		this.ba = ba;
+		movesFrom = new HashMap<Integer, List<SFTProductInputMove<P, F, S>>>();
+		for (Integer state : product.getStates())
+			movesFrom.put(state, new ArrayList<SFTProductInputMove<P, F, S>>(product.getInputMovesFrom(state)));
+	}
+
+	/**
+	 * @return an input on which the SFTs have different outputs, null if they
+	 *         are 1-equal
+	 * @throws TimeoutException
+	 */
+	List<S> witness() throws TimeoutException {
+		List<Integer> level = start();
+		if (level == null)
+			return new ArrayList<S>();
+
+		while (!level.isEmpty()) {
+			List<Expansion<S>> expansions = new ArrayList<Expansion<S>>();
+			for (Integer state : level)
+				expansions.add(expand(state, delays.get(state), null));
+
+			List<Integer> next = new ArrayList<Integer>();
+			List<S> counterexample = merge(level, expansions, next);
+			if (counterexample != null)
+				return counterexample;
+			level = next;
+		}
+		// Figure 3 line 13: \textbf{return} \ t;
+		return null;
+	}
+
+	/**
+	 * @return an input on which the SFTs have different outputs, null if they
+	 *         are 1-equal. The states of every breadth-first level are
+	 *         expanded in parallel using <code>executor</code>.
+	 * @throws TimeoutException
+	 */
+	List<S> witness(ExecutorService executor, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		List<Integer> level = start();
+		if (level == null)
+			return new ArrayList<S>();
+
+		while (!level.isEmpty()) {
+			// set by the first task finding a counterexample, stops the others
+			AtomicBoolean failed = new AtomicBoolean(false);
+			List<Callable<Expansion<S>>> tasks = new ArrayList<Callable<Expansion<S>>>();
+			for (Integer state : level) {
+				Pair<List<S>, List<S>> delay = delays.get(state);
+				tasks.add(Deadline.propagate(() -> expand(state, delay, failed)));
+			}
+
+			long leftover = timeout - (System.currentTimeMillis() - startTime);
+			if (leftover <= 0)
+				throw new TimeoutException();
+			Deadline.checkCurrent();
+
+			List<Future<Expansion<S>>> results;
+			try {
+				results = executor.invokeAll(tasks, leftover, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TimeoutException(e);
+			}
+			List<Expansion<S>> expansions = new ArrayList<Expansion<S>>();
+			for (Future<Expansion<S>> result : results)
+				expansions.add(Deadline.getResult(result));
+
+			List<Integer> next = new ArrayList<Integer>();
+			List<S> counterexample = merge(level, expansions, next);
+			if (counterexample != null)
+				return counterexample;
+			level = next;
+		}
+		return null;
+	}
+
+	// Figure 3 line 1: Q := \{q_c^0 \mapsto (\epsilon, \epsilon)\};
+	// @return the first level, null if the SFTs differ on the empty input
+	private List<Integer> start() throws TimeoutException {
+		Integer initialState = product.getInitialState();
+		Pair<Set<List<S>>, Set<List<S>>> tails = product.getFinalStatesAndTails().get(initialState);
+		if (tails != null && !tailsAgree(ba.True(), new ArrayList<F>(), new ArrayList<F>(), tails))
+			return null;
+		delays.put(initialState, new Pair<List<S>, List<S>>(new ArrayList<S>(), new ArrayList<S>()));
+		return Collections.singletonList(initialState);
+	}
+
+	// Figure 3 lines 4-10 for the moves out of state, stopping early once
+	// failed is set
+	private Expansion<S> expand(Integer state, Pair<List<S>, List<S>> delay, AtomicBoolean failed)
+			throws TimeoutException {
+		Expansion<S> expansion = new Expansion<S>();
+		// Figure 3 line 3: (\alpha, \beta) := Q(p);
+		List<F> alpha = constants(delay.first);
+		List<F> beta = constants(delay.second);
+
+		for (SFTProductInputMove<P, F, S> move : moves(state)) {
+			if (failed != null && failed.get())
+				break;
+			Deadline.checkCurrent();
+
+			S witness = move.getWitness(ba);
+			expansion.symbols.add(witness);
+			Pair<List<S>, List<S>> next = step(alpha, beta, move, witness);
+			if (next == null) {
+				expansion.failure = expansion.symbols.size() - 1;
+				if (failed != null)
+					failed.set(true);
+				break;
+			}
+			expansion.delays.add(next);
+		}
+		return expansion;
+	}
+
+	// @return the delay reached by move from the delay (alpha, beta), null if
+	// the SFTs disagree on the move
+	private Pair<List<S>, List<S>> step(List<F> alpha, List<F> beta, SFTProductInputMove<P, F, S> move,
+			S witness) throws TimeoutException {
+		// Figure 3 line 5: (u, v) := (\alpha \cdot \textbf f,\beta \cdot \textbf g);
+		List<F> u = new ArrayList<F>(alpha);
+		List<F> v = new ArrayList<F>(beta);
+		u.addAll(move.outputFunctions1);
+		v.addAll(move.outputFunctions2);
+
+		// Figure 3 line 6: \textbf{if} \ q \in F_C \wedge |u| \neq |v| \ \textbf{return} \ f;
+		// adapted to the tails of the final states
+		Pair<Set<List<S>>, Set<List<S>>> tails = product.getFinalStatesAndTails().get(move.to);
+		if (tails != null && !tailsAgree(move.guard, u, v, tails))
+			return null;
+
+		// Figure 3 line 8: \textbf{if} \ \vee_{i=0}^{min(|u|,|v|)-1}u_i \not\equiv_\varphi v_i \ \textbf{return} \ f;
+		int common = Math.min(u.size(), v.size());
+		for (int i = 0; i < common; i++)
+			if (!ba.CheckGuardedEquality(move.guard, u.get(i), v.get(i)))
+				return null;
+
+		// Figure 3 lines 9-10: the output w not matched yet has to be the
+		// constant c := [\![ w]\!](witness(\varphi)) on \varphi
+		List<F> w = u.size() >= v.size() ? u.subList(common, u.size()) : v.subList(common, v.size());
+		List<S> c = new ArrayList<S>();
+		for (F f : w) {
+			F constant = ba.MkSubstFuncFunc(f, ba.MkFuncConst(witness));
+			if (!ba.AreEquivalent(ba.MkSubstFuncPred(f, move.guard), ba.MkSubstFuncPred(constant, move.guard)))
+				return null;
+			c.add(ba.MkSubstFuncConst(f, witness));
+		}
+
+		// Figure 3 line 11: (\textbf c, \epsilon) or symmetrically (\epsilon, \textbf c)
+		if (u.size() >= v.size())
+			return new Pair<List<S>, List<S>>(c, new ArrayList<S>());
+		return new Pair<List<S>, List<S>>(new ArrayList<S>(), c);
+	}
+
+	// true iff u and v followed by the tails are equal on guard; a final
+	// state with several tails has uncertain outputs, so it never agrees
+	private boolean tailsAgree(P guard, List<F> u, List<F> v, Pair<Set<List<S>>, Set<List<S>>> tails) {
+		if (tails.first.size() > 1 || tails.second.size() > 1)
+			return false;
+		List<F> finalU = new ArrayList<F>(u);
+		List<F> finalV = new ArrayList<F>(v);
+		for (List<S> tail : tails.first)
+			finalU.addAll(constants(tail));
+		for (List<S> tail : tails.second)
+			finalV.addAll(constants(tail));
+		if (finalU.size() != finalV.size())
+			return false;
+		for (int i = 0; i < finalU.size(); i++)
+			if (!ba.CheckGuardedEquality(guard, finalU.get(i), finalV.get(i)))
+				return false;
+		return true;
+	}
+
+	// Records the delays reached from the states of level, in order, adding
+	// the states reached for the first time to next (Figure 3 line 11)
+	// @return the shortest counterexample found, null if there is none
+	private List<S> merge(List<Integer> level, List<Expansion<S>> expansions, List<Integer> next) {
+		List<S> shortest = null;
+		for (int k = 0; k < level.size(); k++) {
+			Integer state = level.get(k);
+			Expansion<S> expansion = expansions.get(k);
+			List<SFTProductInputMove<P, F, S>> moves = moves(state);
+
+			if (expansion.failure >= 0)
+				shortest = shorter(shortest,
+						counterexample(state, expansion.symbols.get(expansion.failure), moves.get(expansion.failure).to));
+
+			for (int i = 0; i < expansion.delays.size(); i++) {
+				Integer to = moves.get(i).to;
+				Pair<List<S>, List<S>> delay = expansion.delays.get(i);
+				Pair<List<S>, List<S>> known = delays.get(to);
+				if (known == null) {
+					delays.put(to, delay);
+					parents.put(to, state);
+					symbols.put(to, expansion.symbols.get(i));
+					next.add(to);
+				} else if (!known.equals(delay)) {
+					// Figure 3 line 10: q \in Dom(Q) \wedge Q(q) \neq (\textbf c, \epsilon)
+					shortest = shorter(shortest, counterexample(state, expansion.symbols.get(i), to));
+				}
+			}
+		}
+		return shortest;
+	}
+
+	// the input reaching state, then symbol, then reaching a final state from
+	// to
+	private List<S> counterexample(Integer state, S symbol, Integer to) {
+		List<S> input = new ArrayList<S>();
+		for (Integer q = state; parents.containsKey(q); q = parents.get(q))
+			input.add(symbols.get(q));
+		Collections.reverse(input);
+		input.add(symbol);
+		List<S> suffix = product.getWitness(to, ba);
+		if (suffix != null)
+			input.addAll(suffix);
+		return input;
+	}
+
+	private static <S> List<S> shorter(List<S> shortest, List<S> counterexample) {
+		return shortest == null || counterexample.size() < shortest.size() ? counterexample : shortest;
+	}
+
+	private List<SFTProductInputMove<P, F, S>> moves(Integer state) {
+		List<SFTProductInputMove<P, F, S>> moves = movesFrom.get(state);
+		return moves == null ? Collections.<SFTProductInputMove<P, F, S>> emptyList() : moves;
+	}
+
+	private List<F> constants(List<S> symbols) {
+		List<F> functions = new ArrayList<F>();
+		for (S symbol : symbols)
+			functions.add(ba.MkFuncConst(symbol));
+		return functions;
+	}
+}
@@ -0,0 +1,399 @@
+package transducers.sft;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+
+/**
+ * Runs a chain of SFTs on concrete inputs, feeding the output of every SFT
+ * to the next one, without building their composition. Every symbol goes
+ * through the {@link SFTRunner}s of the stages. When all the stages are
+ * deterministic the pipeline can also compose them on demand: the tuples of
+ * states of the stages reached while running are cached together with their
+ * moves on the concrete symbols read, so a cached step costs one lookup.
+ * The cache holds at most a fixed number of tuples and
+ * {@link #MOVES_PER_TUPLE} times as many moves, after which the new tuples
+ * and moves are computed again on every step. Runs are not thread-safe.
+ */
+public class SFTPipeline<P, F, S> {
+
+	/**
+	 * Default maximum number of cached tuples of states
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Average number of cached moves per cached tuple of states
+	 */
+	public static final int MOVES_PER_TUPLE = 64;
+
+	private final List<SFTRunner<P, F, S>> runners;
+	private final int capacity;
+	private final long moveCapacity;
+
+	// the cache, null if a stage is not deterministic or caching is off
+	private final Map<Tuple, Entry<S>> cache;
+	private Entry<S> initialEntry;
+	private long cachedMoves = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	// A tuple of states, one per stage
+	private static final class Tuple {
+		final int[] states;
+
+		Tuple(int[] states) {
+			this.states = states;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Tuple && Arrays.equals(states, ((Tuple) other).states);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(states);
+		}
+	}
+
+	// A tuple reached while running, with its moves on the symbols read so
+	// far, a null target if the pipeline gets stuck
+	private static final class Entry<S> {
+		final int[] states;
+		final Map<S, Entry<S>> targets = new HashMap<S, Entry<S>>();
+		final Map<S, Object[]> outputs = new HashMap<S, Object[]>();
+
+		Entry(int[] states) {
+			this.states = states;
+		}
+	}
+
+	/**
+	 * Pipeline running <code>stages</code> one after the other, caching at
+	 * most <code>DEFAULT_CAPACITY</code> tuples of states if they are all
+	 * deterministic
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFTPipeline(List<SFT<P, F, S>> stages, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		this(stages, ba, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Pipeline running <code>stages</code> one after the other, caching at
+	 * most <code>capacity</code> tuples of states if they are all
+	 * deterministic, no cache if <code>capacity</code> is 0
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFTPipeline(List<SFT<P, F, S>> stages, BooleanAlgebraSubst<P, F, S> ba, int capacity)
+			throws TimeoutException {
+		if (stages.isEmpty())
+			throw new IllegalArgumentException("A pipeline needs at least one stage");
+		if (capacity < 0)
+			throw new IllegalArgumentException("The capacity must be non-negative");
+		this.capacity = capacity;
+		moveCapacity = (long) capacity * MOVES_PER_TUPLE;
+
+		runners = new ArrayList<SFTRunner<P, F, S>>();
+		boolean deterministic = true;
+		for (SFT<P, F, S> stage : stages) {
+			SFTRunner<P, F, S> runner = stage.getRunner(ba);
+			runners.add(runner);
+			deterministic &= runner.isDeterministic();
+		}
+
+		cache = deterministic && capacity > 0 ? new HashMap<Tuple, Entry<S>>() : null;
+		if (cache != null) {
+			int[] initial = new int[runners.size()];
+			for (int i = 0; i < initial.length; i++)
+				initial[i] = runners.get(i).initialState();
+			initialEntry = entry(initial);
+		}
+	}
+
+	/**
+	 * @return true iff the tuples of states are cached
+	 */
+	public boolean isCaching() {
+		return cache != null;
+	}
+
+	/**
+	 * @return number of cached tuples of states
+	 */
+	public int getCachedStates() {
+		return cache == null ? 0 : cache.size();
+	}
+
+	/**
+	 * @return number of cached moves on concrete symbols
+	 */
+	public long getCachedMoves() {
+		return cachedMoves;
+	}
+
+	/**
+	 * @return number of steps that found their move in the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of steps that computed their move
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return a new run of the pipeline that emits its output to
+	 *         <code>out</code>
+	 */
+	public Run newRun(Consumer<? super S> out) {
+		return cache != null ? new CachedRun(out) : new ChainedRun(out);
+	}
+
+	/**
+	 * @return the output of the last stage on the output of the previous ones
+	 *         on <code>input</code>, null if it is undefined
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(Iterable<S> input) throws TimeoutException {
+		List<S> output = new ArrayList<S>();
+		Run run = newRun(output::add);
+		for (S symbol : input)
+			if (!run.step(symbol))
+				return null;
+		return run.finish() ? output : null;
+	}
+
+	/**
+	 * Transduces the characters read from <code>input</code> to
+	 * <code>out</code>
+	 *
+	 * @return true iff the input is in the domain of the pipeline, if not
+	 *         <code>out</code> may have received part of an output
+	 * @throws TimeoutException
+	 * @throws IOException
+	 */
+	public static <P, F> boolean transduce(SFTPipeline<P, F, Character> pipeline, Reader input, Appendable out)
+			throws TimeoutException, IOException {
+		try {
+			SFTPipeline<P, F, Character>.Run run = pipeline.newRun(c -> {
+				try {
+					out.append(c);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = input.read(buffer)) >= 0)
+				for (int i = 0; i < read; i++)
+					if (!run.step(buffer[i]))
+						return false;
+			return run.finish();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// the cached entry of states, a new uncached one if the cache is full
+	private Entry<S> entry(int[] states) {
+		Tuple tuple = new Tuple(states);
+		Entry<S> entry = cache.get(tuple);
+		if (entry == null) {
+			entry = new Entry<S>(states);
+			if (cache.size() < capacity)
+				cache.put(tuple, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * A run of the pipeline on an input given one symbol at a time
+	 */
+	public abstract class Run {
+
+		/**
+		 * Reads <code>symbol</code>
+		 *
+		 * @return false iff no input starting with the symbols read so far is
+		 *         in the domain of the pipeline
+		 * @throws TimeoutException
+		 */
+		public abstract boolean step(S symbol) throws TimeoutException;
+
+		/**
+		 * Ends the input and emits the rest of the output
+		 *
+		 * @return true iff the input read is in the domain of the pipeline
+		 * @throws TimeoutException
+		 */
+		public abstract boolean finish() throws TimeoutException;
+	}
+
+	// Carries a TimeoutException of a stage through the consumer feeding it
+	private static final class StageTimeout extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		StageTimeout(TimeoutException cause) {
+			super(cause);
+		}
+	}
+
+	// Runs every stage on the output of the previous one as it is emitted
+	private final class ChainedRun extends Run {
+
+		private final List<SFTRunner<P, F, S>.Run> runs = new ArrayList<SFTRunner<P, F, S>.Run>();
+		private boolean stuck = false;
+
+		ChainedRun(Consumer<? super S> out) {
+			Consumer<? super S> next = out;
+			for (int i = runners.size() - 1; i >= 0; i--) {
+				SFTRunner<P, F, S>.Run run = runners.get(i).newRun(next);
+				runs.add(0, run);
+				next = symbol -> {
+					try {
+						if (!run.step(symbol))
+							stuck = true;
+					} catch (TimeoutException e) {
+						throw new StageTimeout(e);
+					}
+				};
+			}
+		}
+
+		@Override
+		public boolean step(S symbol) throws TimeoutException {
+			try {
+				if (stuck || !runs.get(0).step(symbol))
+					stuck = true;
+			} catch (StageTimeout e) {
+				throw (TimeoutException) e.getCause();
+			}
+			return !stuck;
+		}
+
+		@Override
+		public boolean finish() throws TimeoutException {
+			try {
+				for (SFTRunner<P, F, S>.Run run : runs)
+					if (stuck || !run.finish())
+						stuck = true;
+			} catch (StageTimeout e) {
+				throw (TimeoutException) e.getCause();
+			}
+			boolean accepted = !stuck;
+			stuck = true;
+			return accepted;
+		}
+	}
+
+	// Follows the cached moves between tuples of states, computing the
+	// missing ones through the deterministic stages
+	private final class CachedRun extends Run {
+
+		private final Consumer<? super S> out;
+		private Entry<S> current;
+
+		CachedRun(Consumer<? super S> out) {
+			this.out = out;
+			current = isStuck(initialEntry.states) ? null : initialEntry;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean step(S symbol) throws TimeoutException {
+			if (current == null)
+				return false;
+
+			Object[] output = current.outputs.get(symbol);
+			Entry<S> target;
+			if (output != null) {
+				hits++;
+				target = current.targets.get(symbol);
+			} else {
+				misses++;
+				int[] states = current.states.clone();
+				List<S> symbols = new ArrayList<S>();
+				symbols.add(symbol);
+				for (int i = 0; i < states.length && symbols != null; i++)
+					symbols = feed(states, i, symbols);
+				if (symbols != null) {
+					target = entry(states);
+					output = symbols.toArray();
+				} else {
+					target = null;
+					output = new Object[0];
+				}
+				if (cachedMoves < moveCapacity) {
+					current.targets.put(symbol, target);
+					current.outputs.put(symbol, output);
+					cachedMoves++;
+				}
+			}
+
+			if (target == null) {
+				current = null;
+				return false;
+			}
+			for (Object emitted : output)
+				out.accept((S) emitted);
+			current = target;
+			return true;
+		}
+
+		@Override
+		public boolean finish() throws TimeoutException {
+			if (current == null)
+				return false;
+			int[] states = current.states.clone();
+			current = null;
+
+			// the tail of every stage goes through the next ones
+			List<S> symbols = new ArrayList<S>();
+			for (int i = 0; i < states.length; i++) {
+				symbols = feed(states, i, symbols);
+				if (symbols == null || !runners.get(i).tail(states[i], symbols::add))
+					return false;
+			}
+			for (S symbol : symbols)
+				out.accept(symbol);
+			return true;
+		}
+
+		// runs the i-th stage on symbols, updating its state in states
+		// @return the output of the stage, null if it gets stuck
+		private List<S> feed(int[] states, int i, List<S> symbols) throws TimeoutException {
+			List<S> output = new ArrayList<S>();
+			for (S symbol : symbols) {
+				states[i] = runners.get(i).move(states[i], symbol, output::add);
+				if (states[i] < 0)
+					return null;
+			}
+			return output;
+		}
+	}
+
+	private static boolean isStuck(int[] states) {
+		for (int q : states)
+			if (q < 0)
+				return true;
+		return false;
+	}
+}
@@ -218,44 +218,6 @@ public class SFTProduct<P, F, S> extends Automaton<P, S> {
 		return aut;
 	}
 
-	private List<List<SFTProductInputMove<P, F, S>>> getPossibleTransitionChains(Integer startState, int steps) {
-		return possibleTransitionChains(this, startState, steps);
-	}
-
-	/**
-	 * Given a symbolic finite transducer and the start state, return all possible transition chains in
-	 * <code>steps</code> steps
-	 * @param sft symbolic finite transducer
-	 * @param startState the start state which could be any state, including but not limited to the initial state
-	 * @param steps the number of steps, which should be a natural number
-	 * @return
-	 */
-	private static <P, F, S> List<List<SFTProductInputMove<P, F, S>>> possibleTransitionChains(SFTProduct<P, F, S> sft, Integer startState, int steps) {
-		List<List<SFTProductInputMove<P, F, S>>> chains = new ArrayList<List<SFTProductInputMove<P, F, S>>>();
-		for (SFTProductInputMove<P, F, S> initialTransition: sft.getInputMovesFrom(startState)) {
-			List<SFTProductInputMove<P, F, S>> tempList = new LinkedList<SFTProductInputMove<P, F, S>>();
-			tempList.add(initialTransition); // so the size of tempList is greater than 1
-			backtrack(chains, tempList, sft, steps - 1);
-		}
-		return chains;
-	}
-
-	// use backtrack method to get all possible transition chains
-	private static <P, F, S> void backtrack(List<List<SFTProductInputMove<P, F, S>>> chains, List<SFTProductInputMove<P, F, S>> tempList, SFTProduct<P, F, S> sft, int remainSteps) {
-		if (remainSteps < 0)
-			return; // no solution
-		else if (remainSteps == 0)
-			chains.add(new ArrayList<SFTProductInputMove<P, F, S>>(tempList));
-		else {
-			Integer currentState = tempList.get(tempList.size() - 1).to;
-			for (SFTProductInputMove<P, F, S> transition: sft.getInputMovesFrom(currentState)) {
-				tempList.add(transition);
-				backtrack(chains, tempList, sft, remainSteps - 1);
-				tempList.remove(tempList.size() - 1);
-			}
-		}
-	}
-
 	/**
 	 * Computes the domain automaton of the sft
 	 *
@@ -273,7 +235,7 @@ public class SFTProduct<P, F, S> extends Automaton<P, S> {
 	}
 
 	/**
-	 * use DFS to find a witness from the <code>startState</code> to a final state
+	 * use BFS to find a shortest witness from the <code>startState</code> to a final state
 	 * if there the <code>startState</code> is in a dead end, return null
 	 * @param startState
 	 * @param ba
@@ -287,21 +249,21 @@ public class SFTProduct<P, F, S> extends Automaton<P, S> {
 		toVisit.add(startState);
 
 		while (!toVisit.isEmpty()) {
-			Integer currState = toVisit.pop();
+			Integer currState = toVisit.removeFirst();
 			if (this.isFinalState(currState)) {
 				return reached.get(currState);
 			}
-			for (SFTProductInputMove transition: this.getInputMovesFrom(currState)) {
-				List<S> previousPath = new ArrayList<S>(reached.get(transition.from));
+			for (SFTProductInputMove<P, F, S> transition: this.getInputMovesFrom(currState)) {
+				if (reached.containsKey(transition.to))
+					continue;
+				List<S> previousPath = new ArrayList<S>(reached.get(currState));
 				try {
-					previousPath.add((S) transition.getWitness(ba));
+					previousPath.add(transition.getWitness(ba));
 				} catch (TimeoutException te) {
 					te.printStackTrace();
 				}
-				if (this.isFinalState(transition.to)) {
-					return previousPath;
-				}
 				reached.put(transition.to, previousPath);
+				toVisit.addLast(transition.to);
 			}
 		}
 		return null; // there is no such a path from the <code>startState</code> to any final state
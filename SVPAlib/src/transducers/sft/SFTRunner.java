@@ -0,0 +1,541 @@
+package transducers.sft;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+import utilities.Batch;
+
+/**
+ * Runs an SFT on its input in a single left-to-right pass, without
+ * recursion, and streams its output. The epsilon moves are removed and the
+ * moves are stored in arrays once, when the runner is built. A deterministic
+ * SFT has a single run, and the output of every move is emitted as soon as
+ * the move is taken. Otherwise all the runs that can still reach a final
+ * state are followed at once, one per state, each with the output it has
+ * produced and not yet emitted; the longest common prefix of these outputs
+ * is emitted after every symbol. For a single-valued SFT the runs reaching the
+ * same state have produced the same output, so the number of runs is bounded
+ * by the number of states, and the outputs not emitted yet are shared in a
+ * tree, so a step takes time proportional to the output of its moves. If the
+ * SFT is not single-valued one of its outputs is produced; a final state with
+ * several tails always outputs its shortest one.
+ */
+public final class SFTRunner<P, F, S> {
+
+	private final BooleanAlgebraSubst<P, F, S> ba;
+
+	// states are renamed to 0,...,n-1
+	private final int n;
+	private final int initialState;
+
+	// the moves out of q are q -guards[q][i]/outputs[q][i]-> targets[q][i]
+	private final Object[][] guards;
+	private final Object[][][] outputs;
+	private final int[][] targets;
+
+	// the tail output by every final state, null for the other states
+	private final Object[][] tails;
+
+	// the states from which a final state can be reached
+	private final BitSet live;
+
+	private final boolean deterministic;
+
+	/**
+	 * Builds a runner for <code>sftWithEps</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFTRunner(SFT<P, F, S> sftWithEps, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		this.ba = ba;
+		SFT<P, F, S> sft = sftWithEps.removeEpsilonMoves(ba);
+
+		List<Integer> states = new ArrayList<Integer>(sft.getStates());
+		if (!states.contains(sft.getInitialState()))
+			states.add(sft.getInitialState());
+		Collections.sort(states);
+		n = states.size();
+		Map<Integer, Integer> idOf = new HashMap<Integer, Integer>();
+		for (int q = 0; q < n; q++)
+			idOf.put(states.get(q), q);
+		initialState = idOf.get(sft.getInitialState());
+
+		guards = new Object[n][];
+		outputs = new Object[n][][];
+		targets = new int[n][];
+		tails = new Object[n][];
+		boolean isDeterministic = true;
+		for (int q = 0; q < n; q++) {
+			Collection<SFTInputMove<P, F, S>> moves = sft.getInputMovesFrom(states.get(q));
+			guards[q] = new Object[moves.size()];
+			outputs[q] = new Object[moves.size()][];
+			targets[q] = new int[moves.size()];
+			int i = 0;
+			for (SFTInputMove<P, F, S> move : moves) {
+				for (int j = 0; j < i && isDeterministic; j++)
+					if (ba.IsSatisfiable(ba.MkAnd(move.guard, guard(q, j))))
+						isDeterministic = false;
+				guards[q][i] = move.guard;
+				outputs[q][i] = move.outputFunctions.toArray();
+				targets[q][i++] = idOf.get(move.to);
+			}
+
+			Set<List<S>> finalTails = sft.getFinalStatesAndTails().get(states.get(q));
+			if (finalTails != null)
+				tails[q] = firstTail(finalTails);
+		}
+		deterministic = isDeterministic;
+
+		// a state is live if it is final or has a move to a live state
+		live = new BitSet(n);
+		for (int q = 0; q < n; q++)
+			if (tails[q] != null)
+				live.set(q);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int q = 0; q < n; q++)
+				if (!live.get(q))
+					for (int t : targets[q])
+						if (live.get(t)) {
+							live.set(q);
+							changed = true;
+							break;
+						}
+		}
+	}
+
+	// the shortest tail, the smallest by their string forms among the
+	// shortest ones, so the same tail is chosen at every run
+	private static <S> Object[] firstTail(Set<List<S>> tails) {
+		List<S> first = null;
+		for (List<S> tail : tails)
+			if (first == null || tail.size() < first.size()
+					|| (tail.size() == first.size() && tail.toString().compareTo(first.toString()) < 0))
+				first = tail;
+		return first == null ? new Object[0] : first.toArray();
+	}
+
+	/**
+	 * @return true iff every state has pairwise disjoint guards, so the
+	 *         output is emitted without delay
+	 */
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+
+	// true iff the runner evaluates guards and outputs with ba
+	boolean isFor(BooleanAlgebraSubst<P, F, S> ba) {
+		return this.ba == ba;
+	}
+
+	/**
+	 * @return a new run of the SFT that emits its output to <code>out</code>
+	 */
+	public Run newRun(Consumer<? super S> out) {
+		return new Run(out);
+	}
+
+	/**
+	 * @return one of the outputs produced when reading <code>input</code>,
+	 *         null if no such output exists
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(Iterable<S> input) throws TimeoutException {
+		List<S> output = new ArrayList<S>();
+		Run run = new Run(output::add);
+		for (S symbol : input)
+			if (!run.step(symbol))
+				return null;
+		return run.finish() ? output : null;
+	}
+
+	/**
+	 * @return the output on every input of <code>inputs</code>, in order, null
+	 *         for the inputs not in the domain of the SFT. The inputs are
+	 *         transduced in parallel using <code>executor</code>, every task
+	 *         reusing a single run
+	 * @throws TimeoutException
+	 */
+	public List<List<S>> outputOnAll(Iterable<? extends Iterable<S>> inputs, ExecutorService executor)
+			throws TimeoutException {
+		// the batch restarts every run with its own consumer
+		return Batch.transduce(inputs, () -> new Run(null), executor);
+	}
+
+	/**
+	 * Transduces the inputs of <code>inputs</code> in parallel using
+	 * <code>executor</code> and passes the index of every input and its
+	 * output, null if it is not in the domain of the SFT, to
+	 * <code>callback</code> on the calling thread, as soon as they are
+	 * available
+	 *
+	 * @throws TimeoutException
+	 */
+	public void outputOnAll(Iterable<? extends Iterable<S>> inputs, ExecutorService executor,
+			BiConsumer<Integer, ? super List<S>> callback) throws TimeoutException {
+		Batch.transduce(inputs, () -> new Run(null), executor, callback);
+	}
+
+	/**
+	 * Transduces the characters of <code>input</code> to <code>out</code>
+	 *
+	 * @return true iff <code>input</code> is in the domain of the SFT, if not
+	 *         <code>out</code> may have received part of an output
+	 * @throws TimeoutException
+	 * @throws IOException
+	 */
+	public static <P, F> boolean transduce(SFTRunner<P, F, Character> runner, CharSequence input, Appendable out)
+			throws TimeoutException, IOException {
+		try {
+			SFTRunner<P, F, Character>.Run run = runner.newRun(appender(out));
+			for (int i = 0; i < input.length(); i++)
+				if (!run.step(input.charAt(i)))
+					return false;
+			return run.finish();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Transduces the characters read from <code>input</code> to
+	 * <code>out</code>, without buffering more than a block of the input
+	 *
+	 * @return true iff the input is in the domain of the SFT, if not
+	 *         <code>out</code> may have received part of an output
+	 * @throws TimeoutException
+	 * @throws IOException
+	 */
+	public static <P, F> boolean transduce(SFTRunner<P, F, Character> runner, Reader input, Appendable out)
+			throws TimeoutException, IOException {
+		try {
+			SFTRunner<P, F, Character>.Run run = runner.newRun(appender(out));
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = input.read(buffer)) >= 0)
+				for (int i = 0; i < read; i++)
+					if (!run.step(buffer[i]))
+						return false;
+			return run.finish();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static Consumer<Character> appender(Appendable out) {
+		return c -> {
+			try {
+				out.append(c);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	// the initial state, -1 if no final state can be reached from it
+	int initialState() {
+		return live.get(initialState) ? initialState : -1;
+	}
+
+	// the state reached from q reading symbol in a deterministic SFT, -1 if
+	// no final state can be reached from it, passing the output to out
+	int move(int q, S symbol, Consumer<? super S> out) throws TimeoutException {
+		for (int i = 0; i < targets[q].length; i++)
+			if (ba.HasModel(guard(q, i), symbol)) {
+				int t = targets[q][i];
+				if (!live.get(t))
+					return -1;
+				for (int j = 0; j < outputs[q][i].length; j++)
+					out.accept(ba.MkSubstFuncConst(output(q, i, j), symbol));
+				return t;
+			}
+		return -1;
+	}
+
+	// passes the tail of q to out, false if q is not final
+	boolean tail(int q, Consumer<? super S> out) {
+		if (tails[q] == null)
+			return false;
+		for (int j = 0; j < tails[q].length; j++)
+			out.accept(tail(q, j));
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private P guard(int q, int i) {
+		return (P) guards[q][i];
+	}
+
+	@SuppressWarnings("unchecked")
+	private F output(int q, int i, int j) {
+		return (F) outputs[q][i][j];
+	}
+
+	@SuppressWarnings("unchecked")
+	private S tail(int q, int j) {
+		return (S) tails[q][j];
+	}
+
+	/**
+	 * A run of the SFT on an input given one symbol at a time
+	 */
+	public final class Run implements Batch.Transduction<S> {
+
+		private Consumer<? super S> out;
+
+		// the live runs, by state, with the node of the output they produced
+		private int[] current;
+		private Output[] nodes;
+		private int size;
+
+		// runs of the next step, slotOf[q] is the index of the one in q
+		private int[] next;
+		private Output[] nextNodes;
+		private final int[] slotOf;
+
+		// the output not emitted yet: every live run descends from one of the
+		// nodes of the cut, whose symbols before offsets[i] are emitted
+		private final List<Output> cut = new ArrayList<Output>();
+		private int[] offsets;
+
+		private boolean stuck;
+
+		private Run(Consumer<? super S> out) {
+			this.out = out;
+			current = new int[n];
+			next = new int[n];
+			nodes = new Output[n];
+			nextNodes = new Output[n];
+			slotOf = new int[n];
+			offsets = new int[n];
+			reset();
+		}
+
+		/**
+		 * Starts again on a new input, emitting the output to
+		 * <code>out</code> and keeping the buffers of the run
+		 */
+		@Override
+		public void restart(Consumer<? super S> out) {
+			this.out = out;
+			reset();
+		}
+
+		private void reset() {
+			Arrays.fill(nodes, null);
+			Arrays.fill(nextNodes, null);
+			Arrays.fill(slotOf, -1);
+			cut.clear();
+			size = 0;
+			stuck = !live.get(initialState);
+			if (!stuck) {
+				current[0] = initialState;
+				nodes[0] = new Output(null, new Object[0]);
+				cut.add(nodes[0]);
+				offsets[0] = 0;
+				size = 1;
+			}
+		}
+
+		/**
+		 * Reads <code>symbol</code>
+		 *
+		 * @return false iff no input starting with the symbols read so far is
+		 *         in the domain of the SFT
+		 * @throws TimeoutException
+		 */
+		@Override
+		public boolean step(S symbol) throws TimeoutException {
+			if (stuck)
+				return false;
+			if (deterministic)
+				return stepDeterministic(symbol);
+
+			int nextSize = 0;
+			for (int k = 0; k < size; k++) {
+				int q = current[k];
+				for (int i = 0; i < targets[q].length; i++) {
+					int t = targets[q][i];
+					if (slotOf[t] >= 0 || !live.get(t) || !ba.HasModel(guard(q, i), symbol))
+						continue;
+					Object[] output = new Object[outputs[q][i].length];
+					for (int j = 0; j < output.length; j++)
+						output[j] = ba.MkSubstFuncConst(output(q, i, j), symbol);
+					slotOf[t] = nextSize;
+					next[nextSize] = t;
+					nextNodes[nextSize++] = new Output(nodes[k], output);
+				}
+			}
+			for (int k = 0; k < nextSize; k++)
+				slotOf[next[k]] = -1;
+			for (int k = 0; k < size; k++) {
+				nodes[k].release();
+				nodes[k] = null;
+			}
+
+			int[] swap = current;
+			current = next;
+			next = swap;
+			Output[] swapNodes = nodes;
+			nodes = nextNodes;
+			nextNodes = swapNodes;
+			size = nextSize;
+
+			if (size == 0) {
+				stuck = true;
+				return false;
+			}
+			emitCommonPrefix();
+			return true;
+		}
+
+		// a deterministic SFT has at most one live run, with nothing pending
+		private boolean stepDeterministic(S symbol) throws TimeoutException {
+			int t = move(current[0], symbol, out);
+			if (t >= 0) {
+				current[0] = t;
+				return true;
+			}
+			stuck = true;
+			size = 0;
+			return false;
+		}
+
+		// emits the longest common prefix of the outputs of the live runs
+		private void emitCommonPrefix() {
+			while (advanceCut()) {
+				Object symbol = cut.get(0).symbols[offsets[0]];
+				for (int i = 1; i < cut.size(); i++)
+					if (!symbol.equals(cut.get(i).symbols[offsets[i]]))
+						return;
+				for (int i = 0; i < cut.size(); i++)
+					offsets[i]++;
+				out.accept(emitted(symbol));
+			}
+		}
+
+		// drops the dead nodes of the cut and replaces the nodes whose symbols
+		// are all emitted by their children
+		// @return true iff every node of the cut has a symbol left to emit
+		private boolean advanceCut() {
+			boolean hasNext = true;
+			int i = 0;
+			while (i < cut.size()) {
+				Output node = cut.get(i);
+				if (!node.isLive()) {
+					removeFromCut(i);
+				} else if (offsets[i] < node.symbols.length) {
+					i++;
+				} else if (node.children.isEmpty()) {
+					// a live run whose whole output is emitted
+					hasNext = false;
+					i++;
+				} else {
+					removeFromCut(i);
+					for (Output child : node.children) {
+						child.parent = null;
+						if (cut.size() == offsets.length)
+							offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+						offsets[cut.size()] = 0;
+						cut.add(child);
+					}
+				}
+			}
+			return hasNext && !cut.isEmpty();
+		}
+
+		private void removeFromCut(int i) {
+			int last = cut.size() - 1;
+			cut.set(i, cut.get(last));
+			offsets[i] = offsets[last];
+			cut.remove(last);
+		}
+
+		@SuppressWarnings("unchecked")
+		private S emitted(Object symbol) {
+			return (S) symbol;
+		}
+
+		/**
+		 * Ends the input and emits the rest of the output
+		 *
+		 * @return true iff the input read is in the domain of the SFT
+		 */
+		@Override
+		public boolean finish() {
+			if (stuck)
+				return false;
+			stuck = true;
+			for (int k = 0; k < size; k++) {
+				int q = current[k];
+				if (tails[q] != null) {
+					// the nodes from the one of the cut to the one of the run
+					List<Output> path = new ArrayList<Output>();
+					for (Output node = nodes[k]; node != null; node = node.parent)
+						path.add(node);
+					Collections.reverse(path);
+					int offset = offsets[cut.indexOf(path.get(0))];
+					for (Output node : path) {
+						for (int j = offset; j < node.symbols.length; j++)
+							out.accept(emitted(node.symbols[j]));
+						offset = 0;
+					}
+					tail(q, out);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	// The output of a move taken by a run, appended to the output of the run
+	// before the move. The outputs of all the runs form a tree, so a step
+	// only creates the nodes of the outputs of its moves.
+	private static final class Output {
+		// null once the node is in the cut of the emitted output
+		Output parent;
+		final Object[] symbols;
+		final List<Output> children = new ArrayList<Output>(1);
+		// true while the node is the output of a live run
+		boolean held = true;
+
+		Output(Output parent, Object[] symbols) {
+			this.parent = parent;
+			this.symbols = symbols;
+			if (parent != null)
+				parent.children.add(this);
+		}
+
+		boolean isLive() {
+			return held || !children.isEmpty();
+		}
+
+		// the run of this node moved on, drops the nodes no live run descends
+		// from
+		void release() {
+			held = false;
+			Output node = this;
+			while (!node.isLive() && node.parent != null) {
+				node.parent.children.remove(node);
+				node = node.parent;
+			}
+		}
+	}
+}
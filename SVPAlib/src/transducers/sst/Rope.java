@@ -0,0 +1,106 @@
+package transducers.sst;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Immutable sequence of symbols used as the value of an SST variable. A
+ * concatenation shares its operands, so a variable update takes time
+ * proportional to its number of tokens and not to the length of the values.
+ * Short leaves are merged into chunks of up to {@link #CHUNK} symbols, so a
+ * variable extended one symbol at a time does not allocate a node per
+ * symbol.
+ */
+final class Rope<S> {
+
+	static final int CHUNK = 32;
+
+	private static final Rope<?> EMPTY = new Rope<Object>(new Object[0]);
+
+	final long length;
+
+	// a leaf has symbols, a concatenation has left and right
+	private final Object[] symbols;
+	private final Rope<S> left;
+	private final Rope<S> right;
+
+	private Rope(Object[] symbols) {
+		this.length = symbols.length;
+		this.symbols = symbols;
+		this.left = null;
+		this.right = null;
+	}
+
+	private Rope(Rope<S> left, Rope<S> right) {
+		this.length = left.length + right.length;
+		this.symbols = null;
+		this.left = left;
+		this.right = right;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <S> Rope<S> empty() {
+		return (Rope<S>) EMPTY;
+	}
+
+	/**
+	 * @return the rope of the first <code>count</code> elements of
+	 *         <code>symbols</code>
+	 */
+	static <S> Rope<S> of(Object[] symbols, int count) {
+		if (count == 0)
+			return empty();
+		return new Rope<S>(Arrays.copyOf(symbols, count));
+	}
+
+	private boolean isLeaf() {
+		return symbols != null;
+	}
+
+	/**
+	 * @return the rope of the symbols of <code>left</code> followed by the
+	 *         ones of <code>right</code>
+	 */
+	static <S> Rope<S> concat(Rope<S> left, Rope<S> right) {
+		if (left.length == 0)
+			return right;
+		if (right.length == 0)
+			return left;
+		if (right.isLeaf() && right.length < CHUNK) {
+			if (left.isLeaf() && left.length + right.length <= CHUNK)
+				return new Rope<S>(join(left.symbols, right.symbols));
+			// a value extended at its end keeps a chunk as its last leaf
+			if (!left.isLeaf() && left.right.isLeaf() && left.right.length + right.length <= CHUNK)
+				return new Rope<S>(left.left, new Rope<S>(join(left.right.symbols, right.symbols)));
+		}
+		return new Rope<S>(left, right);
+	}
+
+	private static Object[] join(Object[] first, Object[] second) {
+		Object[] joined = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, joined, first.length, second.length);
+		return joined;
+	}
+
+	/**
+	 * Passes the symbols to <code>out</code> in order
+	 */
+	@SuppressWarnings("unchecked")
+	void forEach(Consumer<? super S> out) {
+		// concatenations can be nested as deep as the input is long
+		Deque<Rope<S>> toVisit = new ArrayDeque<Rope<S>>();
+		toVisit.push(this);
+		while (!toVisit.isEmpty()) {
+			Rope<S> rope = toVisit.pop();
+			if (rope.isLeaf()) {
+				for (Object symbol : rope.symbols)
+					out.accept((S) symbol);
+			} else {
+				toVisit.push(rope.right);
+				toVisit.push(rope.left);
+			}
+		}
+	}
+}
@@ -15,11 +15,14 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
 
 import org.sat4j.specs.TimeoutException;
 
 import theory.BooleanAlgebra;
 import theory.BooleanAlgebraSubst;
+import utilities.Deadline;
 import utilities.Pair;
 import automata.Automaton;
 import automata.Move;
@@ -60,6 +63,9 @@ public class SST<P, F, S> extends Automaton<P, S> {
 	protected Map<Integer, Collection<SSTEpsilon<P, F, S>>> epsTransitionsFrom;
 	protected Map<Integer, Collection<SSTEpsilon<P, F, S>>> epsTransitionsTo;
 
+	// built by getRunner, SSTs are not modified after construction
+	private volatile SSTRunner<P, F, S> runner;
+
 	public Integer stateCount() {
 		return states.size();
 	}
@@ -189,56 +195,49 @@ public class SST<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <P1, F1, S1> List<S1> outputOn(SST<P1, F1, S1> sstWithEps, List<S1> input,
 			BooleanAlgebraSubst<P1, F1, S1> ba) throws TimeoutException {
-
-		// composition
-		SST<P1, F1, S1> sst = sstWithEps.removeEpsilonMoves(ba);
-		// Assume that there are no epsilon transitions for now
-
-		Map<Integer, Collection<VariableAssignment<S1>>> currConf = new HashMap<Integer, Collection<VariableAssignment<S1>>>();
-
-		List<VariableAssignment<S1>> initialVariableAssignment = new ArrayList<VariableAssignment<S1>>();
-		initialVariableAssignment.add(VariableAssignment.MkInitialValue(sst.variableCount, ba));
-		currConf.put(sst.initialState, initialVariableAssignment);
-
-		for (S1 el : input)
-			currConf = sst.getNextConfig(currConf, el, ba);
-
-		for (int state : currConf.keySet()) {
-			if (sst.isFinalState(state)) {
-				Collection<VariableAssignment<S1>> varVals = currConf.get(state);
-				for (VariableAssignment<S1> assignment : varVals) {
-					// apply outputFunction
-					OutputUpdate<P1, F1, S1> outputUpdate = sst.outputFunction.get(state);
-
-					return outputUpdate.applyTo(assignment, ba);
-				}
-			}
-		}
-
-		return null;
+		return sstWithEps.getRunner(ba).outputOn(input);
 	}
 
-	// Makes one step on the current config and symbol in the sst
-	private Map<Integer, Collection<VariableAssignment<S>>> getNextConfig(
-			Map<Integer, Collection<VariableAssignment<S>>> currConfig, S input, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-
-		Map<Integer, Collection<VariableAssignment<S>>> newConfig = new HashMap<Integer, Collection<VariableAssignment<S>>>();
+	/**
+	 * Computes one of the outputs produced when reading every input of
+	 * <code>inputs</code>, in parallel using <code>executor</code>. The
+	 * epsilon moves are removed once for the whole batch.
+	 * 
+	 * @return the outputs in the order of the inputs, null for the inputs on
+	 *         which the output is undefined
+	 * @throws TimeoutException
+	 */
+	public List<List<S>> outputOnAll(Iterable<List<S>> inputs, BooleanAlgebraSubst<P, F, S> ba,
+			ExecutorService executor) throws TimeoutException {
+		return getRunner(ba).outputOnAll(inputs, executor);
+	}
 
-		for (int state : currConfig.keySet()) {
-			Collection<VariableAssignment<S>> sourceAssignments = currConfig.get(state);
-			for (SSTInputMove<P, F, S> move : getInputMovesFrom(state))
-				if (move.hasModel(input, ba)) {
-					Collection<VariableAssignment<S>> targetAssignments = new ArrayList<VariableAssignment<S>>();
-					if (newConfig.containsKey(move.to))
-						targetAssignments = newConfig.get(move.to);
-					else
-						newConfig.put(move.to, targetAssignments);
+	/**
+	 * Computes one of the outputs produced when reading every input of
+	 * <code>inputs</code>, in parallel using <code>executor</code>, and passes
+	 * the index of every input with its output, null if undefined, to
+	 * <code>callback</code> on the calling thread as soon as it is computed.
+	 * 
+	 * @throws TimeoutException
+	 */
+	public void outputOnAll(Iterable<List<S>> inputs, BooleanAlgebraSubst<P, F, S> ba, ExecutorService executor,
+			BiConsumer<Integer, ? super List<S>> callback) throws TimeoutException {
+		getRunner(ba).outputOnAll(inputs, executor, callback);
+	}
 
-					for (VariableAssignment<S> assig : sourceAssignments)
-						targetAssignments.add(move.variableUpdate.applyTo(assig, input, ba));
-				}
+	/**
+	 * Returns the runner of this SST, built once per Boolean algebra, to
+	 * transduce inputs in a single pass
+	 * 
+	 * @throws TimeoutException
+	 */
+	public SSTRunner<P, F, S> getRunner(BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		SSTRunner<P, F, S> cached = runner;
+		if (cached == null || !cached.isFor(ba)) {
+			cached = new SSTRunner<P, F, S>(this, ba);
+			runner = cached;
 		}
-		return newConfig;
+		return cached;
 	}
 
 	/**
@@ -280,6 +279,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 
 		// Combined has set of variables the disjoint union of the two sets
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			Pair<Integer, Integer> currState = toVisit.removeFirst();
 			int currStateId = reached.get(currState);
 
@@ -357,6 +357,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 
 		// Combined has set of variables the disjoint union of the two sets
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			Pair<Integer, Integer> currState = toVisit.removeFirst();
 			int currStateId = reached.get(currState);
 
@@ -832,6 +833,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 		Collection<SSTMove<P1, F1, S1>> transitionFirstStretch = new ArrayList<SSTMove<P1, F1, S1>>();
 		// Start composing them
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			List<Integer> currState = toVisit.removeFirst();
 			int currStateId = reached.get(currState);
 
@@ -1040,6 +1042,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 		Collection<SSTMove<P1, F1, S1>> transitionOtherStretches = new ArrayList<SSTMove<P1, F1, S1>>();
 		// Start composing them
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			List<Integer> currState = toVisit.removeFirst();
 			int currStateId = reached.get(currState);
 			idToState.put(currStateId, currState);
@@ -1375,6 +1378,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 
 		// do a DFS and look for reachable states
 		while (!toVisit.isEmpty()) {
+			Deadline.checkCurrent();
 			Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>> currState = toVisit.removeFirst();
 			int currStateId = reached.get(currState);
 
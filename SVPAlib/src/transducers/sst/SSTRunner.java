@@ -0,0 +1,429 @@
+package transducers.sst;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+import utilities.Batch;
+
+/**
+ * Runs an SST on its input in a single left-to-right pass. The epsilon moves
+ * are removed and the variable updates are compiled to arrays once, when the
+ * runner is built. The values of the variables are ropes, so an update
+ * shares the values it concatenates instead of copying them and a run takes
+ * time linear in the input. The runs that can still reach a final state are
+ * followed at once, one per state: for a functional SST any two runs reaching
+ * the same state produce the same output, so the others are dropped.
+ */
+public final class SSTRunner<P, F, S> {
+
+	// kinds of the tokens of a compiled update
+	private static final byte VARIABLE = 0;
+	private static final byte CONSTANT = 1;
+	private static final byte FUNCTION = 2;
+
+	private final BooleanAlgebraSubst<P, F, S> ba;
+
+	// states are renamed to 0,...,n-1
+	private final int n;
+	private final int initialState;
+	private final int variableCount;
+
+	// the moves out of q are q -guards[q][i]-> targets[q][i] with the update
+	// updates[q][i]
+	private final Object[][] guards;
+	private final int[][] targets;
+	private final Update[][] updates;
+
+	// the output function of every final state, null for the other states
+	private final Update[] outputs;
+
+	// the states from which a final state can be reached
+	private final BitSet live;
+
+	// the tokens assigned to every variable, as kinds and arguments: the index
+	// of a variable, a constant or a function
+	private static final class Update {
+		final byte[][] kinds;
+		final Object[][] arguments;
+
+		Update(List<? extends List<? extends Token<?, ?, ?>>> update, int variableCount) {
+			kinds = new byte[variableCount][];
+			arguments = new Object[variableCount][];
+			for (int x = 0; x < variableCount; x++) {
+				List<? extends Token<?, ?, ?>> tokens = x < update.size() ? update.get(x)
+						: Collections.<Token<?, ?, ?>> emptyList();
+				kinds[x] = new byte[tokens.size()];
+				arguments[x] = new Object[tokens.size()];
+				int i = 0;
+				for (Token<?, ?, ?> token : tokens) {
+					if (token instanceof SSTVariable<?, ?, ?>) {
+						kinds[x][i] = VARIABLE;
+						arguments[x][i] = ((SSTVariable<?, ?, ?>) token).id;
+					} else if (token instanceof CharConstant<?, ?, ?>) {
+						kinds[x][i] = CONSTANT;
+						arguments[x][i] = ((CharConstant<?, ?, ?>) token).constant;
+					} else if (token instanceof CharFunction<?, ?, ?>) {
+						kinds[x][i] = FUNCTION;
+						arguments[x][i] = ((CharFunction<?, ?, ?>) token).unaryFunction;
+					} else
+						throw new IllegalArgumentException("Unknown token " + token);
+					i++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds a runner for <code>sstWithEps</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public SSTRunner(SST<P, F, S> sstWithEps, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		this.ba = ba;
+		SST<P, F, S> sst = sstWithEps.removeEpsilonMoves(ba);
+		variableCount = sst.variableCount;
+
+		List<Integer> states = new ArrayList<Integer>(sst.getStates());
+		if (!states.contains(sst.getInitialState()))
+			states.add(sst.getInitialState());
+		Collections.sort(states);
+		n = states.size();
+		Map<Integer, Integer> idOf = new HashMap<Integer, Integer>();
+		for (int q = 0; q < n; q++)
+			idOf.put(states.get(q), q);
+		initialState = idOf.get(sst.getInitialState());
+
+		guards = new Object[n][];
+		targets = new int[n][];
+		updates = new Update[n][];
+		outputs = new Update[n];
+		for (int q = 0; q < n; q++) {
+			Collection<SSTInputMove<P, F, S>> moves = sst.getInputMovesFrom(states.get(q));
+			guards[q] = new Object[moves.size()];
+			targets[q] = new int[moves.size()];
+			updates[q] = new Update[moves.size()];
+			int i = 0;
+			for (SSTInputMove<P, F, S> move : moves) {
+				guards[q][i] = move.guard;
+				targets[q][i] = idOf.get(move.to);
+				updates[q][i++] = new Update(move.variableUpdate.variableUpdate, variableCount);
+			}
+
+			OutputUpdate<P, F, S> output = sst.outputFunction.get(states.get(q));
+			if (output != null)
+				outputs[q] = new Update(Collections.singletonList(output.update), 1);
+		}
+
+		// a state is live if it is final or has a move to a live state
+		live = new BitSet(n);
+		for (int q = 0; q < n; q++)
+			if (outputs[q] != null)
+				live.set(q);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int q = 0; q < n; q++)
+				if (!live.get(q))
+					for (int t : targets[q])
+						if (live.get(t)) {
+							live.set(q);
+							changed = true;
+							break;
+						}
+		}
+	}
+
+	// true iff the runner evaluates guards and functions with ba
+	boolean isFor(BooleanAlgebraSubst<P, F, S> ba) {
+		return this.ba == ba;
+	}
+
+	/**
+	 * @return a new run of the SST
+	 */
+	public Run newRun() {
+		return new Run();
+	}
+
+	/**
+	 * @return one of the outputs produced when reading <code>input</code>,
+	 *         null if no such output exists
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(Iterable<S> input) throws TimeoutException {
+		Run run = new Run();
+		for (S symbol : input)
+			if (!run.step(symbol))
+				return null;
+		List<S> output = new ArrayList<S>();
+		return run.finish(output::add) ? output : null;
+	}
+
+	/**
+	 * @return one of the outputs on every input of <code>inputs</code>, in
+	 *         order, null for the inputs not in the domain of the SST. The
+	 *         inputs are transduced in parallel using <code>executor</code>,
+	 *         every task reusing a single run
+	 * @throws TimeoutException
+	 */
+	public List<List<S>> outputOnAll(Iterable<? extends Iterable<S>> inputs, ExecutorService executor)
+			throws TimeoutException {
+		return Batch.transduce(inputs, Run::new, executor);
+	}
+
+	/**
+	 * Transduces the inputs of <code>inputs</code> in parallel using
+	 * <code>executor</code> and passes the index of every input and its
+	 * output, null if it is not in the domain of the SST, to
+	 * <code>callback</code> on the calling thread, as soon as they are
+	 * available
+	 *
+	 * @throws TimeoutException
+	 */
+	public void outputOnAll(Iterable<? extends Iterable<S>> inputs, ExecutorService executor,
+			BiConsumer<Integer, ? super List<S>> callback) throws TimeoutException {
+		Batch.transduce(inputs, Run::new, executor, callback);
+	}
+
+	/**
+	 * Transduces the characters of <code>input</code> to <code>out</code>
+	 *
+	 * @return true iff <code>input</code> is in the domain of the SST
+	 * @throws TimeoutException
+	 * @throws IOException
+	 */
+	public static <P, F> boolean transduce(SSTRunner<P, F, Character> runner, CharSequence input, Appendable out)
+			throws TimeoutException, IOException {
+		SSTRunner<P, F, Character>.Run run = runner.newRun();
+		for (int i = 0; i < input.length(); i++)
+			if (!run.step(input.charAt(i)))
+				return false;
+		return finish(run, out);
+	}
+
+	/**
+	 * Transduces the characters read from <code>input</code> to
+	 * <code>out</code>
+	 *
+	 * @return true iff the input is in the domain of the SST
+	 * @throws TimeoutException
+	 * @throws IOException
+	 */
+	public static <P, F> boolean transduce(SSTRunner<P, F, Character> runner, Reader input, Appendable out)
+			throws TimeoutException, IOException {
+		SSTRunner<P, F, Character>.Run run = runner.newRun();
+		char[] buffer = new char[8192];
+		int read;
+		while ((read = input.read(buffer)) >= 0)
+			for (int i = 0; i < read; i++)
+				if (!run.step(buffer[i]))
+					return false;
+		return finish(run, out);
+	}
+
+	private static <P, F> boolean finish(SSTRunner<P, F, Character>.Run run, Appendable out) throws IOException {
+		try {
+			return run.finish(c -> {
+				try {
+					out.append(c);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// a new array of count values of variables
+	@SuppressWarnings("unchecked")
+	private static <S> Rope<S>[] newValues(int count) {
+		return (Rope<S>[]) new Rope<?>[count];
+	}
+
+	// a new array of count arrays of values of variables
+	@SuppressWarnings("unchecked")
+	private static <S> Rope<S>[][] newValueArrays(int count) {
+		return (Rope<S>[][]) new Rope<?>[count][];
+	}
+
+	@SuppressWarnings("unchecked")
+	private P guard(int q, int i) {
+		return (P) guards[q][i];
+	}
+
+	/**
+	 * A run of the SST on an input given one symbol at a time
+	 */
+	public final class Run implements Batch.Transduction<S> {
+
+		// the consumer of the output given to restart, if any
+		private Consumer<? super S> out;
+
+		// the live runs, by state, with the values of their variables
+		private int[] current;
+		private Rope<S>[][] values;
+		private int size;
+
+		// runs of the next step, slotOf[q] is the index of the one in q
+		private int[] next;
+		private Rope<S>[][] nextValues;
+		private final int[] slotOf;
+
+		// the symbols of an update between two variables
+		private final Object[] buffer = new Object[Rope.CHUNK];
+
+		private boolean stuck;
+
+		private Run() {
+			current = new int[n];
+			next = new int[n];
+			values = newValueArrays(n);
+			nextValues = newValueArrays(n);
+			slotOf = new int[n];
+			reset();
+		}
+
+		/**
+		 * Starts again on a new input, keeping the buffers of the run. The
+		 * output is passed to <code>out</code> by {@link #finish()}.
+		 */
+		@Override
+		public void restart(Consumer<? super S> out) {
+			this.out = out;
+			reset();
+		}
+
+		private void reset() {
+			Arrays.fill(values, null);
+			Arrays.fill(nextValues, null);
+			Arrays.fill(slotOf, -1);
+			size = 0;
+			stuck = !live.get(initialState);
+			if (!stuck) {
+				current[0] = initialState;
+				values[0] = newValues(variableCount);
+				Arrays.fill(values[0], Rope.<S> empty());
+				size = 1;
+			}
+		}
+
+		/**
+		 * Reads <code>symbol</code>
+		 *
+		 * @return false iff no input starting with the symbols read so far is
+		 *         in the domain of the SST
+		 * @throws TimeoutException
+		 */
+		@Override
+		public boolean step(S symbol) throws TimeoutException {
+			if (stuck)
+				return false;
+
+			int nextSize = 0;
+			for (int k = 0; k < size; k++) {
+				int q = current[k];
+				for (int i = 0; i < targets[q].length; i++) {
+					int t = targets[q][i];
+					if (slotOf[t] >= 0 || !live.get(t) || !ba.HasModel(guard(q, i), symbol))
+						continue;
+					Update update = updates[q][i];
+					Rope<S>[] updated = newValues(variableCount);
+					for (int x = 0; x < variableCount; x++)
+						updated[x] = apply(update, x, values[k], symbol);
+					slotOf[t] = nextSize;
+					next[nextSize] = t;
+					nextValues[nextSize++] = updated;
+				}
+			}
+			for (int k = 0; k < nextSize; k++)
+				slotOf[next[k]] = -1;
+
+			int[] swap = current;
+			current = next;
+			next = swap;
+			Rope<S>[][] swapValues = values;
+			values = nextValues;
+			nextValues = swapValues;
+			Arrays.fill(nextValues, 0, size, null);
+			size = nextSize;
+
+			if (size == 0) {
+				stuck = true;
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Ends the input and passes the output to the consumer given to
+		 * {@link #restart}
+		 *
+		 * @return true iff the input read is in the domain of the SST
+		 */
+		@Override
+		public boolean finish() {
+			if (out == null)
+				throw new IllegalStateException("No consumer was given to restart");
+			return finish(out);
+		}
+
+		/**
+		 * Ends the input and passes the output to <code>out</code>
+		 *
+		 * @return true iff the input read is in the domain of the SST
+		 */
+		public boolean finish(Consumer<? super S> out) {
+			if (stuck)
+				return false;
+			stuck = true;
+			for (int k = 0; k < size; k++) {
+				int q = current[k];
+				if (outputs[q] != null) {
+					apply(outputs[q], 0, values[k], null).forEach(out);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// the value assigned to the variable x by update
+		@SuppressWarnings("unchecked")
+		private Rope<S> apply(Update update, int x, Rope<S>[] variables, S symbol) {
+			byte[] kinds = update.kinds[x];
+			Object[] arguments = update.arguments[x];
+			Rope<S> value = Rope.empty();
+			int buffered = 0;
+			for (int i = 0; i < kinds.length; i++) {
+				if (kinds[i] == VARIABLE) {
+					value = Rope.concat(value, Rope.<S> of(buffer, buffered));
+					buffered = 0;
+					value = Rope.concat(value, variables[(Integer) arguments[i]]);
+				} else {
+					if (buffered == buffer.length) {
+						value = Rope.concat(value, Rope.<S> of(buffer, buffered));
+						buffered = 0;
+					}
+					buffer[buffered++] = kinds[i] == CONSTANT ? arguments[i]
+							: ba.MkSubstFuncConst((F) arguments[i], symbol);
+				}
+			}
+			return Rope.concat(value, Rope.<S> of(buffer, buffered));
+		}
+	}
+}
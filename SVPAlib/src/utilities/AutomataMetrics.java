@@ -0,0 +1,217 @@
+package utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Timers and counters of the automata algorithms. The algorithms record into
+ * {@link #current()}, which is the context bound to the running thread by
+ * {@link #bind()} or, if there is none, a process-wide context. Bind a
+ * separate context to every check that runs concurrently with others to get
+ * its own numbers. A context can be updated by many threads at once; its
+ * full timer measures one run at a time. This holds for the process-wide
+ * context too, as for the former static timers: concurrent runs that are not
+ * bound restart each other's full timer, and with it the timeout checked by
+ * {@link #isTimedOut()}, so bind a context to every concurrent run whose
+ * full time or timeout matters.
+ */
+public final class AutomataMetrics {
+
+	/**
+	 * Timed phases of an algorithm
+	 */
+	public enum Timer {
+		FULL, SOLVER, SUBSUMPTION
+	}
+
+	/**
+	 * Counted events of an algorithm
+	 */
+	public enum Counter {
+		EXPLORED_STATES, SUCCESSFUL_SUBSUMPTIONS, SOLVER_CALLS, MINTERMS
+	}
+
+	private static final AutomataMetrics GLOBAL = new AutomataMetrics();
+	private static final ThreadLocal<AutomataMetrics> CURRENT = new ThreadLocal<AutomataMetrics>();
+
+	private final LongAdder[] nanos;
+	private final LongAdder[] counts;
+
+	// the running full run, and its timeout in nanoseconds
+	private volatile boolean fullRunning = false;
+	private volatile long fullStart;
+	private volatile long timeout = Long.MAX_VALUE;
+
+	public AutomataMetrics() {
+		nanos = new LongAdder[Timer.values().length];
+		for (int i = 0; i < nanos.length; i++)
+			nanos[i] = new LongAdder();
+		counts = new LongAdder[Counter.values().length];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = new LongAdder();
+	}
+
+	/**
+	 * @return the process-wide context
+	 */
+	public static AutomataMetrics global() {
+		return GLOBAL;
+	}
+
+	/**
+	 * @return the context bound to the running thread, the process-wide one
+	 *         if there is none
+	 */
+	public static AutomataMetrics current() {
+		AutomataMetrics metrics = CURRENT.get();
+		return metrics == null ? GLOBAL : metrics;
+	}
+
+	/**
+	 * Binds this context to the running thread until the returned scope is
+	 * closed, which restores the previous one
+	 */
+	public Scope bind() {
+		return Scope.bind(CURRENT, this);
+	}
+
+	// ------------------------------------------------------
+	// Recording
+	// ------------------------------------------------------
+
+	/**
+	 * Starts timing a run that times out after <code>timeout</code>
+	 * milliseconds, replacing the run timed so far if any
+	 */
+	public void startFull(long timeout) {
+		this.timeout = timeout >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeout);
+		fullStart = System.nanoTime();
+		fullRunning = true;
+	}
+
+	/**
+	 * Stops timing the run
+	 */
+	public void stopFull() {
+		if (fullRunning) {
+			fullRunning = false;
+			nanos[Timer.FULL.ordinal()].add(System.nanoTime() - fullStart);
+		}
+	}
+
+	/**
+	 * @return true iff the running run exceeded its timeout
+	 */
+	public boolean isTimedOut() {
+		return fullRunning && System.nanoTime() - fullStart > timeout;
+	}
+
+	/**
+	 * @throws TimeoutException
+	 *             if the running run exceeded its timeout
+	 */
+	public void assertNotTimedOut() throws TimeoutException {
+		if (isTimedOut())
+			throw new TimeoutException("Timeout");
+	}
+
+	/**
+	 * @return the start time of a phase, to pass to <code>stop</code>
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Adds the time elapsed since <code>start</code> to <code>timer</code>
+	 */
+	public void stop(Timer timer, long start) {
+		nanos[timer.ordinal()].add(System.nanoTime() - start);
+	}
+
+	/**
+	 * Records a solver call that started at <code>start</code>
+	 */
+	public void stopSolver(long start) {
+		stop(Timer.SOLVER, start);
+		counts[Counter.SOLVER_CALLS.ordinal()].increment();
+	}
+
+	/**
+	 * Records a subsumption check that started at <code>start</code>
+	 */
+	public void stopSubsumption(long start) {
+		stop(Timer.SUBSUMPTION, start);
+	}
+
+	public void oneMoreState() {
+		counts[Counter.EXPLORED_STATES.ordinal()].increment();
+	}
+
+	public void oneMoreSub() {
+		counts[Counter.SUCCESSFUL_SUBSUMPTIONS.ordinal()].increment();
+	}
+
+	public void add(Counter counter, long n) {
+		counts[counter.ordinal()].add(n);
+	}
+
+	// ------------------------------------------------------
+	// Reading
+	// ------------------------------------------------------
+
+	/**
+	 * @return the nanoseconds recorded by <code>timer</code>
+	 */
+	public long getNanos(Timer timer) {
+		return nanos[timer.ordinal()].sum();
+	}
+
+	/**
+	 * @return the milliseconds recorded by <code>timer</code>
+	 */
+	public long getMillis(Timer timer) {
+		return TimeUnit.NANOSECONDS.toMillis(getNanos(timer));
+	}
+
+	/**
+	 * @return the value of <code>counter</code>
+	 */
+	public long getCount(Counter counter) {
+		return counts[counter.ordinal()].sum();
+	}
+
+	/**
+	 * Sets all the timers and counters to 0
+	 */
+	public void reset() {
+		for (LongAdder adder : nanos)
+			adder.reset();
+		for (LongAdder adder : counts)
+			adder.reset();
+	}
+
+	/**
+	 * @return all the timers, in nanoseconds, and counters by name, such as
+	 *         <code>solver.nanos</code> and <code>explored_states</code>, to
+	 *         export them to a metrics registry
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+		for (Timer timer : Timer.values())
+			snapshot.put(timer.name().toLowerCase(Locale.ROOT) + ".nanos", getNanos(timer));
+		for (Counter counter : Counter.values())
+			snapshot.put(counter.name().toLowerCase(Locale.ROOT), getCount(counter));
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+}
@@ -0,0 +1,188 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Applies a function to a batch of inputs in parallel. The inputs are split
+ * into chunks of {@link #CHUNK} consecutive inputs, and every chunk is
+ * processed by one task with a worker of its own, so a worker can reuse its
+ * buffers across the inputs of its chunk without synchronization. The results
+ * are passed back to the calling thread, and the tasks run with its
+ * {@link Deadline}. Transducers are run on batches of inputs with
+ * {@link #transduce}, every task restarting a single {@link Transduction}.
+ */
+public final class Batch {
+
+	/**
+	 * Number of consecutive inputs processed by a task
+	 */
+	public static final int CHUNK = 64;
+
+	private Batch() {
+	}
+
+	/**
+	 * Function applied to the inputs of a chunk, by a single thread
+	 */
+	@FunctionalInterface
+	public interface Worker<I, O> {
+		O apply(I input) throws TimeoutException;
+	}
+
+	/**
+	 * A run of a transducer on an input given one symbol at a time, that can
+	 * start again on a new input keeping its buffers
+	 */
+	public interface Transduction<S> {
+
+		/**
+		 * Starts again on a new input, emitting the output to
+		 * <code>out</code>
+		 */
+		void restart(Consumer<? super S> out);
+
+		/**
+		 * Reads <code>symbol</code>
+		 *
+		 * @return false iff no input starting with the symbols read so far is
+		 *         in the domain of the transducer
+		 * @throws TimeoutException
+		 */
+		boolean step(S symbol) throws TimeoutException;
+
+		/**
+		 * Ends the input and emits the rest of the output
+		 *
+		 * @return true iff the input read is in the domain of the transducer
+		 * @throws TimeoutException
+		 */
+		boolean finish() throws TimeoutException;
+	}
+
+	/**
+	 * @return the results of the workers supplied by <code>workers</code> on
+	 *         <code>inputs</code>, in the order of the inputs
+	 * @throws TimeoutException
+	 */
+	public static <I, O> List<O> map(Iterable<? extends I> inputs, Supplier<? extends Worker<? super I, ? extends O>> workers,
+			ExecutorService executor) throws TimeoutException {
+		List<O> results = new ArrayList<O>();
+		forEach(inputs, workers, executor, (index, result) -> {
+			while (results.size() <= index)
+				results.add(null);
+			results.set(index, result);
+		});
+		return results;
+	}
+
+	/**
+	 * Passes the index of every input of <code>inputs</code> and the result of
+	 * a worker supplied by <code>workers</code> on it to
+	 * <code>callback</code>, on the calling thread, as soon as the chunk of
+	 * the input is processed
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <I, O> void forEach(Iterable<? extends I> inputs, Supplier<? extends Worker<? super I, ? extends O>> workers,
+			ExecutorService executor, BiConsumer<Integer, ? super O> callback) throws TimeoutException {
+		CompletionService<List<O>> completion = new ExecutorCompletionService<List<O>>(executor);
+		// the index of the first input of the chunk of every task
+		Map<Future<List<O>>, Integer> starts = new HashMap<Future<List<O>>, Integer>();
+
+		try {
+			List<I> chunk = new ArrayList<I>();
+			int start = 0;
+			for (I input : inputs) {
+				chunk.add(input);
+				if (chunk.size() == CHUNK) {
+					starts.put(completion.submit(task(chunk, workers)), start);
+					start += chunk.size();
+					chunk = new ArrayList<I>();
+				}
+			}
+			if (!chunk.isEmpty())
+				starts.put(completion.submit(task(chunk, workers)), start);
+
+			for (int done = 0; done < starts.size(); done++) {
+				Future<List<O>> future;
+				try {
+					future = completion.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new TimeoutException(e);
+				}
+				Deadline.checkCurrent();
+				List<O> results = Deadline.getResult(future);
+				int first = starts.get(future);
+				for (int i = 0; i < results.size(); i++)
+					callback.accept(first + i, results.get(i));
+			}
+		} finally {
+			// stops the other chunks if one failed
+			for (Future<List<O>> future : starts.keySet())
+				future.cancel(true);
+		}
+	}
+
+	/**
+	 * @return the output of the runs supplied by <code>runs</code> on every
+	 *         input of <code>inputs</code>, in order, null for the inputs not
+	 *         in the domain of the transducer
+	 * @throws TimeoutException
+	 */
+	public static <S> List<List<S>> transduce(Iterable<? extends Iterable<S>> inputs,
+			Supplier<? extends Transduction<S>> runs, ExecutorService executor) throws TimeoutException {
+		return map(inputs, () -> transducer(runs.get()), executor);
+	}
+
+	/**
+	 * Passes the index of every input of <code>inputs</code> and the output
+	 * of a run supplied by <code>runs</code> on it, null if it is not in the
+	 * domain of the transducer, to <code>callback</code> as in
+	 * {@link #forEach}
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <S> void transduce(Iterable<? extends Iterable<S>> inputs, Supplier<? extends Transduction<S>> runs,
+			ExecutorService executor, BiConsumer<Integer, ? super List<S>> callback) throws TimeoutException {
+		forEach(inputs, () -> transducer(runs.get()), executor, callback);
+	}
+
+	// Transduces the inputs of a chunk one after the other with a single run
+	private static <S> Worker<Iterable<S>, List<S>> transducer(Transduction<S> run) {
+		return input -> {
+			List<S> output = new ArrayList<S>();
+			run.restart(output::add);
+			for (S symbol : input)
+				if (!run.step(symbol))
+					return null;
+			return run.finish() ? output : null;
+		};
+	}
+
+	private static <I, O> Callable<List<O>> task(List<I> chunk, Supplier<? extends Worker<? super I, ? extends O>> workers) {
+		return Deadline.propagate(() -> {
+			Worker<? super I, ? extends O> worker = workers.get();
+			List<O> results = new ArrayList<O>(chunk.size());
+			for (I input : chunk) {
+				Deadline.checkCurrent();
+				results.add(worker.apply(input));
+			}
+			return results;
+		});
+	}
+
+}
@@ -0,0 +1,207 @@
+package utilities;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Limits on a run of the automata algorithms: a time limit, a number of steps
+ * and a number of bytes of used heap. Any thread can also cancel the run. The
+ * algorithms check {@link #checkCurrent()} in their main loops, so a run
+ * stops with a <code>TimeoutException</code> within a few steps of one of the
+ * limits being hit. This applies in addition to their <code>timeout</code>
+ * parameters. Bind the deadline to the thread running the algorithm with
+ * {@link #bind()}; the parallel algorithms pass it to their tasks.
+ */
+public final class Deadline {
+
+	// the heap is measured once every this many steps
+	private static final int MEMORY_CHECK_PERIOD = 64;
+
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+	// System.nanoTime() after which the run times out
+	private final long expiry;
+	private final boolean hasExpiry;
+
+	private volatile long stepBudget = Long.MAX_VALUE;
+	private volatile long memoryBudget = Long.MAX_VALUE;
+
+	private final AtomicLong steps = new AtomicLong();
+	private volatile boolean cancelled = false;
+
+	private Deadline(long expiry, boolean hasExpiry) {
+		this.expiry = expiry;
+		this.hasExpiry = hasExpiry;
+	}
+
+	/**
+	 * @return a deadline with no limit, that only stops when cancelled
+	 */
+	public static Deadline none() {
+		return new Deadline(0, false);
+	}
+
+	/**
+	 * @return a deadline expiring <code>timeout</code> <code>unit</code>s
+	 *         from now
+	 */
+	public static Deadline after(long timeout, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(timeout), true);
+	}
+
+	/**
+	 * Limits the run to <code>steps</code> steps of the algorithms' main
+	 * loops
+	 *
+	 * @return this deadline
+	 */
+	public Deadline withStepBudget(long steps) {
+		if (steps < 0)
+			throw new IllegalArgumentException("The step budget must be non-negative");
+		stepBudget = steps;
+		return this;
+	}
+
+	/**
+	 * Stops the run when the used heap exceeds <code>bytes</code>
+	 *
+	 * @return this deadline
+	 */
+	public Deadline withMemoryBudget(long bytes) {
+		if (bytes < 0)
+			throw new IllegalArgumentException("The memory budget must be non-negative");
+		memoryBudget = bytes;
+		return this;
+	}
+
+	/**
+	 * @return the deadline bound to the running thread, null if there is none
+	 */
+	public static Deadline current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Checks the deadline bound to the running thread, if any, counting one
+	 * step
+	 *
+	 * @throws TimeoutException
+	 *             if a limit was hit or the run was cancelled
+	 */
+	public static void checkCurrent() throws TimeoutException {
+		Deadline deadline = CURRENT.get();
+		if (deadline != null)
+			deadline.check();
+	}
+
+	/**
+	 * Binds this deadline to the running thread until the returned scope is
+	 * closed, which restores the previous one
+	 */
+	public Scope bind() {
+		return Scope.bind(CURRENT, this);
+	}
+
+	/**
+	 * @return <code>task</code> running with the deadline bound to the calling
+	 *         thread, to submit it to another thread
+	 */
+	public static <V> Callable<V> propagate(Callable<V> task) {
+		Deadline deadline = CURRENT.get();
+		if (deadline == null)
+			return task;
+		return () -> {
+			Scope scope = deadline.bind();
+			try {
+				return task.call();
+			} finally {
+				scope.close();
+			}
+		};
+	}
+
+	/**
+	 * Waits for the result of a task submitted to another thread
+	 *
+	 * @return the result of <code>future</code>
+	 * @throws TimeoutException
+	 *             if the task threw one, was cancelled or the wait was
+	 *             interrupted. The other exceptions of the task are rethrown
+	 *             as they are, wrapped in an
+	 *             <code>IllegalStateException</code> if they are checked.
+	 */
+	public static <T> T getResult(Future<T> future) throws TimeoutException {
+		try {
+			return future.get();
+		} catch (CancellationException e) {
+			throw new TimeoutException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TimeoutException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TimeoutException)
+				throw (TimeoutException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the run at its next check, can be called by any thread
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true iff the run was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return number of steps counted so far
+	 */
+	public long getSteps() {
+		return steps.get();
+	}
+
+	/**
+	 * @return milliseconds left before the time limit, Long.MAX_VALUE if there
+	 *         is none, to pass as the <code>timeout</code> of an algorithm
+	 */
+	public long remainingMillis() {
+		if (!hasExpiry)
+			return Long.MAX_VALUE;
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiry - System.nanoTime()));
+	}
+
+	/**
+	 * Counts one step and checks all the limits
+	 *
+	 * @throws TimeoutException
+	 *             if a limit was hit or the run was cancelled
+	 */
+	public void check() throws TimeoutException {
+		if (cancelled)
+			throw new TimeoutException("Cancelled");
+		long step = steps.incrementAndGet();
+		if (step > stepBudget)
+			throw new TimeoutException("Step budget exceeded");
+		if (hasExpiry && System.nanoTime() - expiry > 0)
+			throw new TimeoutException("Timeout");
+		if (memoryBudget != Long.MAX_VALUE && step % MEMORY_CHECK_PERIOD == 0) {
+			Runtime runtime = Runtime.getRuntime();
+			if (runtime.totalMemory() - runtime.freeMemory() > memoryBudget)
+				throw new TimeoutException("Memory budget exceeded");
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package utilities;
+
+/**
+ * Binding of a value to the running thread, such as a {@link Deadline} or
+ * {@link AutomataMetrics} context. Closing the scope restores the value that
+ * was bound before, in the thread that created the scope.
+ */
+public final class Scope implements AutoCloseable {
+
+	private final Runnable restore;
+
+	private Scope(Runnable restore) {
+		this.restore = restore;
+	}
+
+	// Binds value to current in the running thread until the returned scope
+	// is closed
+	static <T> Scope bind(ThreadLocal<T> current, T value) {
+		T previous = current.get();
+		current.set(value);
+		return new Scope(() -> {
+			if (previous == null)
+				current.remove();
+			else
+				current.set(previous);
+		});
+	}
+
+	/**
+	 * Restores the value bound before this scope
+	 */
+	@Override
+	public void close() {
+		restore.run();
+	}
+}
@@ -0,0 +1,157 @@
+package utilities;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of integer states stored as a sorted array without
+ * duplicates. The hash code is computed once, so sets can be used as keys at
+ * the cost of a single array comparison on a hit. Use a
+ * {@link StateSetTable} to store each distinct set only once.
+ */
+public final class StateSet implements Iterable<Integer> {
+
+	private static final StateSet EMPTY = new StateSet(new int[0]);
+
+	private final int[] states;
+	private final int hash;
+
+	private StateSet(int[] states) {
+		this.states = states;
+		this.hash = Arrays.hashCode(states);
+	}
+
+	/**
+	 * @return the empty set
+	 */
+	public static StateSet empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * @return the set containing only <code>state</code>
+	 */
+	public static StateSet singleton(int state) {
+		return new StateSet(new int[] { state });
+	}
+
+	/**
+	 * @return the set of the elements of <code>states</code>
+	 */
+	public static StateSet of(Collection<Integer> states) {
+		int[] array = new int[states.size()];
+		int length = 0;
+		for (Integer state : states)
+			array[length++] = state;
+		return of(array, length);
+	}
+
+	/**
+	 * @return the set of the first <code>length</code> elements of
+	 *         <code>states</code>, the array is sorted in place but not kept
+	 */
+	public static StateSet of(int[] states, int length) {
+		if (length == 0)
+			return EMPTY;
+
+		Arrays.sort(states, 0, length);
+		int distinct = 1;
+		for (int i = 1; i < length; i++)
+			if (states[i] != states[distinct - 1])
+				states[distinct++] = states[i];
+		return new StateSet(Arrays.copyOf(states, distinct));
+	}
+
+	/**
+	 * @return number of states in the set
+	 */
+	public int size() {
+		return states.length;
+	}
+
+	/**
+	 * @return true iff the set is empty
+	 */
+	public boolean isEmpty() {
+		return states.length == 0;
+	}
+
+	/**
+	 * @return the <code>index</code>-th smallest state of the set
+	 */
+	public int get(int index) {
+		return states[index];
+	}
+
+	/**
+	 * @return true iff <code>state</code> is in the set
+	 */
+	public boolean contains(int state) {
+		return Arrays.binarySearch(states, state) >= 0;
+	}
+
+	/**
+	 * @return true iff every state of this set is in <code>other</code>
+	 */
+	public boolean isSubsetOf(StateSet other) {
+		if (states.length > other.states.length)
+			return false;
+		int j = 0;
+		for (int i = 0; i < states.length; i++) {
+			while (j < other.states.length && other.states[j] < states[i])
+				j++;
+			if (j == other.states.length || other.states[j] != states[i])
+				return false;
+			j++;
+		}
+		return true;
+	}
+
+	/**
+	 * @return a sorted copy of the states
+	 */
+	public int[] toArray() {
+		return states.clone();
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < states.length;
+			}
+
+			@Override
+			public Integer next() {
+				if (next >= states.length)
+					throw new NoSuchElementException();
+				return states[next++];
+			}
+		};
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof StateSet))
+			return false;
+		StateSet otherSet = (StateSet) other;
+		return hash == otherSet.hash && Arrays.equals(states, otherSet.states);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(states);
+	}
+}
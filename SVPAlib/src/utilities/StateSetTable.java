@@ -0,0 +1,95 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * Hash-consing table of {@link StateSet}s. Every distinct set is stored once
+ * and gets the id 0,1,... in the order in which it was first added, so the
+ * table can be used both as the map from subset states to state ids and as
+ * the list of subset states to visit during a subset construction.
+ */
+public final class StateSetTable {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// sets[id] is the set with the given id
+	private StateSet[] sets;
+	private int size;
+
+	// open addressing table containing id+1 of the sets, 0 if the slot is
+	// empty
+	private int[] slots;
+
+	public StateSetTable() {
+		sets = new StateSet[INITIAL_CAPACITY];
+		slots = new int[2 * INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * @return the id of <code>set</code>, adding it to the table if it is not
+	 *         there yet
+	 */
+	public int intern(StateSet set) {
+		int slot = findSlot(set);
+		if (slots[slot] != 0)
+			return slots[slot] - 1;
+
+		if (size == sets.length)
+			sets = Arrays.copyOf(sets, 2 * size);
+		sets[size] = set;
+		slots[slot] = ++size;
+
+		if (2 * size > slots.length)
+			rehash();
+		return size - 1;
+	}
+
+	/**
+	 * @return the id of <code>set</code>, or -1 if it is not in the table
+	 */
+	public int getId(StateSet set) {
+		return slots[findSlot(set)] - 1;
+	}
+
+	/**
+	 * @return the canonical set with id <code>id</code>
+	 */
+	public StateSet get(int id) {
+		if (id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("No set with id " + id);
+		return sets[id];
+	}
+
+	/**
+	 * @return number of distinct sets in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	// Returns the slot containing set, or the empty slot where it should go
+	private int findSlot(StateSet set) {
+		int mask = slots.length - 1;
+		int slot = spread(set.hashCode()) & mask;
+		while (slots[slot] != 0 && !sets[slots[slot] - 1].equals(set))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void rehash() {
+		slots = new int[2 * slots.length];
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = spread(sets[id].hashCode()) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = id + 1;
+		}
+	}
+
+	private static int spread(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -3,19 +3,26 @@ package test.SAFA;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
+import automata.CharAutomataSerializer;
 import automata.safa.BooleanExpressionFactory;
 import automata.safa.SAFA;
 import automata.safa.SAFAInputMove;
 import automata.safa.SATRelation;
+import automata.safa.booleanexpression.BDDExpressionFactory;
 import automata.safa.booleanexpression.PositiveBooleanExpression;
 import automata.safa.booleanexpression.SumOfProducts;
 import automata.safa.booleanexpression.SumOfProductsFactory;
@@ -24,6 +31,9 @@ import theory.characters.CharPred;
 import theory.characters.StdCharPred;
 import theory.intervals.UnaryCharIntervalSolver;
 import theory.safa.SAFABooleanAlgebra;
+import utilities.AutomataMetrics;
+import utilities.Pair;
+import utilities.Scope;
 
 public class SAFAUnitTest {
 	@Test
@@ -199,6 +209,121 @@ public class SAFAUnitTest {
 		assertTrue(SAFA.isEquivalent(intersection1, intersection2, ba, pos).first);
 	}
 
+	@Test
+	public void testSATRelationCaching() throws TimeoutException {
+		SATRelation rel = new SATRelation();
+		PositiveBooleanExpression sp0 = boolexpr.MkState(0);
+		PositiveBooleanExpression sp1 = boolexpr.MkState(1);
+		PositiveBooleanExpression sp2 = boolexpr.MkState(2);
+
+		// identical expressions never reach the solver
+		assertTrue(rel.isMember(sp0, sp0));
+		assertTrue(rel.isMember(boolexpr.MkAnd(sp0, sp1), boolexpr.MkAnd(sp0, sp1)));
+		assertTrue(rel.getSolverCallCount() == 0);
+
+		assertFalse(rel.isMember(sp0, sp1));
+		assertFalse(rel.isMember(sp1, sp0));
+		assertTrue(rel.getSolverCallCount() == 1);
+
+		// adding a pair invalidates the negative answers
+		rel.add(sp1, sp2);
+		assertFalse(rel.isMember(sp0, sp1));
+		assertTrue(rel.getSolverCallCount() == 2);
+		assertTrue(rel.isMember(sp2, sp1));
+		assertTrue(rel.getSolverCallCount() == 2);
+
+		rel.add(sp0, sp1);
+		assertTrue(rel.isMember(sp0, sp2));
+		assertTrue(rel.isMember(sp2, sp0));
+		assertTrue(rel.isMember(boolexpr.MkOr(sp0, sp1), sp2));
+		assertTrue(rel.getSolverCallCount() == 4);
+		assertTrue(rel.getCacheHitCount() == 5);
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		SAFA<CharPred, Character> intersection1 = atLeastOneAlpha.intersectionWith(atLeastOneNum, ba);
+		SAFA<CharPred, Character> intersection2 = atLeastOneNum.intersectionWith(atLeastOneAlpha, ba);
+
+		AutomataMetrics bound = new AutomataMetrics();
+		Scope scope = bound.bind();
+		try {
+			assertTrue(SAFA.isEquivalent(intersection1, intersection2, ba, boolexpr).first);
+		} finally {
+			scope.close();
+		}
+		assertTrue(bound.getCount(AutomataMetrics.Counter.EXPLORED_STATES) > 0);
+		assertTrue(bound.getCount(AutomataMetrics.Counter.SOLVER_CALLS) > 0);
+		assertTrue(bound.getNanos(AutomataMetrics.Timer.FULL) > 0);
+		assertTrue(AutomataMetrics.current() == AutomataMetrics.global());
+	}
+
+	@Test
+	public void testParallelEquivalence() throws TimeoutException {
+		SAFA<CharPred, Character> intersection1 = atLeastOneAlpha.intersectionWith(atLeastOneNum, ba);
+		SAFA<CharPred, Character> intersection2 = atLeastOneNum.intersectionWith(atLeastOneAlpha, ba);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertTrue(SAFA.isEquivalentParallel(intersection1, intersection2, ba, boolexpr, executor, 4,
+					Long.MAX_VALUE).first);
+			assertTrue(SAFA.isEquivalentParallel(atLeastOneAlpha, atLeastOneAlpha.negate(ba).negate(ba), ba,
+					boolexpr, executor, 3, Long.MAX_VALUE).first);
+
+			// the witness is accepted by exactly one of the two
+			Pair<Boolean, List<Character>> result = SAFA.isEquivalentParallel(atLeastOneAlpha, intersection1, ba,
+					boolexpr, executor, 4, Long.MAX_VALUE);
+			assertFalse(result.first);
+			assertTrue(atLeastOneAlpha.accepts(result.second, ba) != intersection1.accepts(result.second, ba));
+
+			for (int workers = 1; workers <= 4; workers++)
+				assertTrue(SAFA.isEquivalent(atLeastOneNum, intersection2, ba, boolexpr).first == SAFA
+						.isEquivalentParallel(atLeastOneNum, intersection2, ba, boolexpr, executor, workers,
+								Long.MAX_VALUE).first);
+
+			// the expressions of the BDD factory share its state, the workers
+			// only read them holding its lock
+			BDDExpressionFactory bdds = new BDDExpressionFactory(
+					atLeastOneAlpha.getMaxStateId() + intersection1.getMaxStateId() + 2);
+			for (int workers = 1; workers <= 4; workers++) {
+				assertTrue(SAFA.isEquivalentParallel(intersection1, intersection2, ba, bdds, executor, workers,
+						Long.MAX_VALUE).first);
+				result = SAFA.isEquivalentParallel(atLeastOneAlpha, intersection1, ba, bdds, executor, workers,
+						Long.MAX_VALUE);
+				assertFalse(result.first);
+				assertTrue(atLeastOneAlpha.accepts(result.second, ba) != intersection1.accepts(result.second, ba));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSerialization() throws TimeoutException, IOException {
+		SAFA<CharPred, Character> a = atLeastOneAlpha.intersectionWith(atLeastOneNum, ba);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CharAutomataSerializer.write(a, out);
+		CharAutomataSerializer.write(atLeastOneAlpha, out);
+
+		ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+		SAFA<CharPred, Character> readA = CharAutomataSerializer.readSAFA(in, ba);
+		SAFA<CharPred, Character> readAlpha = CharAutomataSerializer.readSAFA(in, ba);
+		assertFalse(in.hasRemaining());
+		assertTrue(SAFA.isEquivalent(a, readA, ba, boolexpr).first);
+		assertTrue(SAFA.isEquivalent(atLeastOneAlpha, readAlpha, ba, boolexpr).first);
+		assertTrue(readA.getTransitionCount().equals(a.getTransitionCount()));
+
+		// a deeply nested initial expression is rejected without overflowing
+		// the stack
+		byte[] deep = new byte[6 + 1000000];
+		System.arraycopy(new byte[] { 'S', 'V', 'P', 'A', 1, 3 }, 0, deep, 0, 6);
+		Arrays.fill(deep, 6, deep.length, (byte) 3);
+		try {
+			CharAutomataSerializer.readSAFA(ByteBuffer.wrap(deep), ba);
+			assertTrue(false);
+		} catch (IOException e) {
+		}
+	}
+
 	@Test
 	public void testNegate() throws TimeoutException {
 		SAFA<CharPred, Character> a = atLeastOneAlpha.intersectionWith(atLeastOneNum, ba);
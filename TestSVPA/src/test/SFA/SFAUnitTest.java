@@ -3,24 +3,50 @@ package test.SFA;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
+import automata.CharAutomataSerializer;
+import automata.sfa.CompiledCharDFA;
+import automata.sfa.LazyDFAMatcher;
+import automata.sfa.MappedSFA;
+import automata.sfa.MinimizationAlgorithm;
+import automata.sfa.MultiSFAMatcher;
 import automata.sfa.SFA;
 import automata.sfa.SFAEpsilon;
 import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMatcher;
 import automata.sfa.SFAMove;
+import automata.sfa.StreamingCharMatcher;
 import theory.characters.CharPred;
 import theory.characters.StdCharPred;
 import theory.intervals.UnaryCharIntervalSolver;
+import utilities.AutomataMetrics;
+import utilities.Deadline;
 import utilities.Pair;
+import utilities.Scope;
 
 public class SFAUnitTest {
 
@@ -130,6 +156,109 @@ public class SFAUnitTest {
 
 	}
 
+	@Test
+	public void testSparseStateIds() throws TimeoutException {
+		// a(b|c)*, nondeterministic, with large and unordered state ids
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		transitions.add(new SFAInputMove<>(1000, 7, new CharPred('a')));
+		transitions.add(new SFAInputMove<>(1000, 42, new CharPred('a')));
+		transitions.add(new SFAInputMove<>(7, 7, new CharPred('b')));
+		transitions.add(new SFAInputMove<>(42, 42, new CharPred('b', 'c')));
+		transitions.add(new SFAInputMove<>(42, 5000, new CharPred('c')));
+		transitions.add(new SFAInputMove<>(5000, 42, new CharPred('b')));
+		transitions.add(new SFAEpsilon<>(42, 7));
+		SFA<CharPred, Character> sparse = SFA.MkSFA(transitions, 1000, Arrays.asList(7), ba);
+
+		Collection<SFAMove<CharPred, Character>> dense = new LinkedList<>();
+		dense.add(new SFAInputMove<>(0, 1, new CharPred('a')));
+		dense.add(new SFAInputMove<>(1, 1, new CharPred('b', 'c')));
+		SFA<CharPred, Character> expected = SFA.MkSFA(dense, 0, Arrays.asList(1), ba);
+
+		assertTrue(sparse.isEquivalentTo(expected, ba));
+		assertTrue(sparse.isHopcroftKarpEquivalentTo(expected, ba));
+		assertTrue(sparse.determinize(ba).isEquivalentTo(expected, ba));
+		assertTrue(sparse.minimize(ba).stateCount() == expected.minimize(ba).stateCount());
+		assertTrue(sparse.intersectionWith(expected, ba).isEquivalentTo(expected, ba));
+		assertTrue(expected.isIncludedIn(sparse, ba));
+		assertFalse(sparse.accepts(lOfS("abd"), ba));
+		assertTrue(sparse.accepts(lOfS("acbc"), ba));
+	}
+
+	@Test
+	public void testIntersectionWitness() throws TimeoutException {
+		assertFalse(SFA.intersectionIsEmpty(autA, autB, ba));
+		List<Character> witness = SFA.intersectionWitness(Arrays.asList(autA, autB), ba);
+		assertTrue(witness.size() == 1);
+		assertTrue(autA.accepts(witness, ba) && autB.accepts(witness, ba));
+
+		// [a-z]*, [a-z][0-9]*, [a-z]+ and [a-z]+ with ambiguous moves
+		List<SFA<CharPred, Character>> auts = Arrays.asList(autA, autB, getSFAtoMin2(ba), getAmbSFA(ba));
+		witness = SFA.intersectionWitness(auts, ba);
+		assertTrue(witness.size() == 1);
+		for (SFA<CharPred, Character> aut : auts)
+			assertTrue(aut.accepts(witness, ba));
+
+		// the shortest witness of [a-z]{2,} and [a-z]* is 2 characters long
+		witness = SFA.intersectionWitness(Arrays.asList(getSFAtoMin2(ba).concatenateWith(justAlpha(ba), ba), autA),
+				ba);
+		assertTrue(witness.size() == 2);
+
+		// epsilon moves are followed, the empty word is accepted by autA
+		assertTrue(SFA.intersectionWitness(Arrays.asList(autA, getSFAc(ba)), ba).isEmpty());
+
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, num));
+		SFA<CharPred, Character> digits = SFA.MkSFA(transitions, 0, Arrays.asList(1), ba);
+		assertTrue(SFA.intersectionIsEmpty(autA, digits, ba));
+		assertTrue(SFA.intersectionWitness(Arrays.asList(autB, getSFAtoMin2(ba), digits), ba) == null);
+	}
+
+	@Test
+	public void testInclusion() throws TimeoutException {
+		SFA<CharPred, Character> plus = getSFAtoMin2(ba);
+
+		assertTrue(plus.isIncludedIn(autA, ba));
+		assertTrue(getAmbSFA(ba).isIncludedIn(plus, ba));
+		assertTrue(SFA.getEmptySFA(ba).isIncludedIn(autB, ba));
+
+		// the empty word is in [a-z]* and not in [a-z]+
+		Pair<Boolean, List<Character>> res = SFA.isIncludedInPlusWitness(autA, plus, ba, Long.MAX_VALUE);
+		assertFalse(res.first);
+		assertTrue(res.second.isEmpty());
+
+		res = SFA.isIncludedInPlusWitness(autB, autA, ba, Long.MAX_VALUE);
+		assertFalse(res.first);
+		assertTrue(res.second.size() == 2);
+		assertTrue(autB.accepts(res.second, ba) && !autA.accepts(res.second, ba));
+
+		assertFalse(autA.isIncludedIn(SFA.getEmptySFA(ba), ba));
+		assertTrue(autB.isIncludedIn(SFA.getFullSFA(ba), ba));
+	}
+
+	@Test
+	public void testAntichainEquivalence() throws TimeoutException {
+		// [a-z]*a[a-z]{5} and the same language with a different structure
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 0, alpha));
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, a));
+		for (int i = 1; i <= 5; i++)
+			transitions.add(new SFAInputMove<CharPred, Character>(i, i + 1, alpha));
+		SFA<CharPred, Character> nfa = SFA.MkSFA(transitions, 0, Arrays.asList(6), ba);
+		SFA<CharPred, Character> dfa = nfa.determinize(ba).minimize(ba);
+
+		assertTrue(SFA.areAntichainEquivalentPlusWitness(nfa, dfa, ba, Long.MAX_VALUE).first);
+		assertTrue(SFA.areAntichainEquivalentPlusWitness(getAmbSFA(ba), getUnambSFA(ba), ba, Long.MAX_VALUE).first);
+
+		Pair<Boolean, List<Character>> res = SFA.areAntichainEquivalentPlusWitness(nfa, autA, ba, Long.MAX_VALUE);
+		assertFalse(res.first);
+		assertTrue(res.second.isEmpty());
+
+		res = SFA.areAntichainEquivalentPlusWitness(nfa, nfa.concatenateWith(autA, ba), ba, Long.MAX_VALUE);
+		assertFalse(res.first);
+		assertTrue(res.second.size() == 7);
+		assertTrue(nfa.accepts(res.second, ba) != nfa.concatenateWith(autA, ba).accepts(res.second, ba));
+	}
+
 	@Test
 	public void testMinimization() throws TimeoutException {
 		SFA<CharPred, Character> autM = getSFAtoMin2(ba);
@@ -146,6 +275,36 @@ public class SFAUnitTest {
 		assertTrue(min.isEquivalentTo(autM, ba));
 	}
 
+	@Test
+	public void testMinimizationHopcroftArray() throws TimeoutException {
+		List<SFA<CharPred, Character>> auts = new LinkedList<>();
+		auts.add(getSFAtoMin2(ba));
+		auts.add(autA);
+		auts.add(autB);
+		auts.add(autA.unionWith(autB, ba));
+		auts.add(autB.complement(ba));
+		auts.add(SFA.getEmptySFA(ba));
+		auts.add(SFA.getFullSFA(ba));
+
+		// strings whose length is a multiple of 6 counting only digits
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		for (int i = 0; i < 12; i++) {
+			transitions.add(new SFAInputMove<CharPred, Character>(i, (i + 1) % 12, num));
+			transitions.add(new SFAInputMove<CharPred, Character>(i, i, ba.MkNot(num)));
+		}
+		auts.add(SFA.MkSFA(transitions, 0, Arrays.asList(0, 6), ba));
+
+		for (SFA<CharPred, Character> aut : auts) {
+			SFA<CharPred, Character> min = aut.minimize(ba);
+			SFA<CharPred, Character> minArray = aut.minimize(ba, MinimizationAlgorithm.HOPCROFT_ARRAY);
+
+			assertTrue(min.stateCount().equals(minArray.stateCount()));
+			assertTrue(minArray.isEquivalentTo(aut, ba));
+		}
+		assertTrue(auts.get(0).minimize(ba, MinimizationAlgorithm.HOPCROFT_ARRAY).stateCount() == 3);
+		assertTrue(auts.get(auts.size() - 1).minimize(ba, MinimizationAlgorithm.HOPCROFT_ARRAY).stateCount() == 6);
+	}
+
 	@Test
 	public void testDeterminization() throws TimeoutException {
 		SFA<CharPred, Character> detAutA = autA.determinize(ba);
@@ -155,6 +314,147 @@ public class SFAUnitTest {
 		assertFalse(autA.isDeterministic(ba));
 	}
 
+	@Test
+	public void testDeterminizationParallel() throws TimeoutException {
+		// [a-z]*a[a-z]{5}, its determinization has 64 states
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 0, alpha));
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, a));
+		for (int i = 1; i <= 5; i++)
+			transitions.add(new SFAInputMove<CharPred, Character>(i, i + 1, alpha));
+		SFA<CharPred, Character> nfa = SFA.MkSFA(transitions, 0, Arrays.asList(6), ba);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (SFA<CharPred, Character> aut : Arrays.asList(nfa, autA, autA.unionWith(autB, ba))) {
+				SFA<CharPred, Character> det = aut.determinize(ba);
+				SFA<CharPred, Character> detPar = aut.determinizeParallel(ba, executor, Long.MAX_VALUE);
+
+				assertTrue(detPar.isDeterministic(ba));
+				assertTrue(det.getInitialState().equals(detPar.getInitialState()));
+				assertTrue(det.getFinalStates().equals(detPar.getFinalStates()));
+				assertTrue(movesToStrings(det).equals(movesToStrings(detPar)));
+				assertTrue(detPar.isEquivalentTo(aut, ba));
+			}
+			assertTrue(nfa.determinizeParallel(ba, executor, Long.MAX_VALUE).stateCount() == 64);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDeadline() throws TimeoutException {
+		// [a-z]*a[a-z]{5}, its determinization has 64 states
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 0, alpha));
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, a));
+		for (int i = 1; i <= 5; i++)
+			transitions.add(new SFAInputMove<CharPred, Character>(i, i + 1, alpha));
+		SFA<CharPred, Character> nfa = SFA.MkSFA(transitions, 0, Arrays.asList(6), ba);
+
+		Deadline steps = Deadline.none().withStepBudget(10);
+		Scope scope = steps.bind();
+		try {
+			assertTrue("Step budget exceeded".equals(timeoutOf(() -> nfa.determinize(ba))));
+		} finally {
+			scope.close();
+		}
+		// the sequential determinization checks the deadline in a fixed
+		// order, so it stops at the first check past the budget of 10 steps
+		assertTrue(steps.getSteps() == 11);
+
+		// the parallel tasks see the deadline of the calling thread
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		scope = Deadline.none().withStepBudget(1).bind();
+		try {
+			assertTrue("Step budget exceeded"
+					.equals(timeoutOf(() -> nfa.determinizeParallel(ba, executor, Long.MAX_VALUE))));
+		} finally {
+			scope.close();
+			executor.shutdown();
+		}
+
+		Deadline cancelled = Deadline.none();
+		cancelled.cancel();
+		scope = cancelled.bind();
+		try {
+			assertTrue("Cancelled".equals(timeoutOf(() -> nfa.isHopcroftKarpEquivalentTo(autA, ba))));
+			assertTrue("Cancelled".equals(timeoutOf(() -> SFA.getMinimalOf(nfa, ba))));
+		} finally {
+			scope.close();
+		}
+
+		Deadline expired = Deadline.after(0, TimeUnit.MILLISECONDS);
+		scope = expired.bind();
+		try {
+			assertTrue("Timeout".equals(timeoutOf(() -> nfa.determinize(ba))));
+			assertTrue(expired.remainingMillis() == 0);
+		} finally {
+			scope.close();
+		}
+
+		// once the scope is closed the algorithms run unbounded
+		assertTrue(Deadline.current() == null);
+		assertTrue(nfa.determinize(ba).stateCount() == 64);
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		// concurrent checks bound to their own contexts do not interfere, the
+		// automata are built by every task since SFAs are not thread-safe
+		long globalStates = AutomataMetrics.global().getCount(AutomataMetrics.Counter.EXPLORED_STATES);
+		AutomataMetrics sequential = new AutomataMetrics();
+		Scope scope = sequential.bind();
+		try {
+			assertFalse(SFA.areHKEquivalentNondet(evenAs(), oddAs(), ba, Long.MAX_VALUE));
+		} finally {
+			scope.close();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<AutomataMetrics>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				results.add(executor.submit(() -> {
+					AutomataMetrics metrics = new AutomataMetrics();
+					Scope taskScope = metrics.bind();
+					try {
+						SFA.areHKEquivalentNondet(evenAs(), oddAs(), ba, Long.MAX_VALUE);
+					} finally {
+						taskScope.close();
+					}
+					return metrics;
+				}));
+			for (Future<AutomataMetrics> result : results)
+				for (AutomataMetrics.Counter counter : AutomataMetrics.Counter.values())
+					assertTrue(result.get().getCount(counter) == sequential.getCount(counter));
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(AutomataMetrics.global().getCount(AutomataMetrics.Counter.EXPLORED_STATES) == globalStates);
+		assertTrue(AutomataMetrics.current() == AutomataMetrics.global());
+	}
+
+	// Returns the message of the TimeoutException thrown by task, null if it
+	// returns normally
+	private String timeoutOf(Callable<?> task) {
+		try {
+			task.call();
+			return null;
+		} catch (TimeoutException e) {
+			return e.getMessage();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private HashSet<String> movesToStrings(SFA<CharPred, Character> aut) {
+		HashSet<String> moves = new HashSet<>();
+		for (SFAMove<CharPred, Character> move : aut.getTransitions())
+			moves.add(move.toString());
+		return moves;
+	}
+
 	@Test
 	public void testMkTotal() throws TimeoutException {
 		SFA<CharPred, Character> autcSfa = getSFAc(ba);
@@ -262,6 +562,24 @@ public class SFAUnitTest {
 		
 	}
 	
+	@Test
+	public void testEquivalenceHKPartial() throws TimeoutException {
+		// {ε, a}
+		Collection<SFAMove<CharPred, Character>> transitions1 = new LinkedList<>();
+		transitions1.add(new SFAInputMove<>(0, 1, new CharPred('a')));
+		SFA<CharPred, Character> aut1 = SFA.MkSFA(transitions1, 0, Arrays.asList(0, 1), ba, false, false);
+
+		// {ε}, with a move on b to a state that is not final
+		Collection<SFAMove<CharPred, Character>> transitions2 = new LinkedList<>();
+		transitions2.add(new SFAInputMove<>(0, 1, new CharPred('b')));
+		SFA<CharPred, Character> aut2 = SFA.MkSFA(transitions2, 0, Arrays.asList(0), ba, false, false);
+
+		assertFalse(aut1.isEquivalentTo(aut2, ba));
+		assertFalse(SFA.areHKEquivalentNondet(aut1, aut2, ba, Long.MAX_VALUE));
+		assertFalse(SFA.areHKEquivalentNondet(aut2, aut1, ba, Long.MAX_VALUE));
+		assertTrue(SFA.areHKEquivalentNondet(aut1, aut1, ba, Long.MAX_VALUE));
+	}
+
 	public SFA<CharPred, Character> getEmptySFA() throws TimeoutException {
 		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
 
@@ -332,6 +650,293 @@ public class SFAUnitTest {
 		assertFalse(sfaPlusMA.isEmpty());
 	}
 
+	@Test
+	public void testCompile() throws TimeoutException {
+		CompiledCharDFA compA = SFA.compile(autA, ba);
+		CompiledCharDFA compB = SFA.compile(autB, ba);
+
+		for (String s : Arrays.asList("aa", "a3", "a", "44", "", "a33", "\u00e0", "a\u0663"))
+			assertTrue(compA.matches(s) == autA.accepts(lOfS(s), ba)
+					&& compB.matches(s) == autB.accepts(lOfS(s), ba));
+
+		SFA<CharPred, Character> unicode = SFA.MkSFA(
+				Arrays.<SFAMove<CharPred, Character>> asList(
+						new SFAInputMove<CharPred, Character>(0, 1, new CharPred('\u0100', '\uffff')),
+						new SFAInputMove<CharPred, Character>(1, 1, new CharPred('\u0400', '\u04ff'))),
+				0, Arrays.asList(1), ba);
+		CompiledCharDFA compU = SFA.compile(unicode, ba);
+		assertTrue(compU.matches("\uffff\u0400\u04ff"));
+		assertFalse(compU.matches("\u0100\u0500"));
+		assertFalse(compU.matches("a"));
+		assertFalse(compU.matches(""));
+	}
+
+	@Test
+	public void testStreamingMatcher() throws TimeoutException, IOException {
+		// [a-z][0-9]*
+		StreamingCharMatcher m = StreamingCharMatcher.of(autB, ba);
+		assertFalse(m.isAccepting());
+
+		m.feed('a');
+		assertTrue(m.isAccepting());
+		StreamingCharMatcher.Snapshot afterA = m.snapshot();
+
+		m.feed(CharBuffer.wrap("0123"));
+		m.feed(CharBuffer.wrap(new char[] { '4', '5' }));
+		m.feed(new StringReader("6789"));
+		assertTrue(m.isAccepting());
+		assertTrue(m.getPosition() == 11);
+
+		m.feed("x");
+		assertTrue(m.isDead() && !m.isAccepting());
+		m.feed("1");
+		assertTrue(m.isDead());
+
+		m.restore(afterA);
+		assertTrue(m.isAccepting() && m.getPosition() == 1);
+		m.reset();
+		assertFalse(m.isAccepting());
+		assertTrue(m.getPosition() == 0);
+
+		// a file with non-ASCII characters, one character from 0x100 on followed by
+		// Cyrillic characters
+		SFA<CharPred, Character> unicode = SFA.MkSFA(
+				Arrays.<SFAMove<CharPred, Character>> asList(
+						new SFAInputMove<CharPred, Character>(0, 1, new CharPred('\u0100', '\uffff')),
+						new SFAInputMove<CharPred, Character>(1, 1, new CharPred('\u0400', '\u04ff'))),
+				0, Arrays.asList(1), ba);
+		StringBuilder sb = new StringBuilder("\u20ac");
+		for (int i = 0; i < 10000; i++)
+			sb.append('\u0416');
+		Path file = Files.createTempFile("stream", ".txt");
+		try {
+			Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+			StreamingCharMatcher mu = SFA.compile(unicode, ba).matcher();
+			mu.feed(file, StandardCharsets.UTF_8);
+			assertTrue(mu.isAccepting());
+			assertTrue(mu.getPosition() == sb.length());
+
+			Files.write(file, (sb.toString() + "a").getBytes(StandardCharsets.UTF_8));
+			mu.reset();
+			mu.feed(file, StandardCharsets.UTF_8);
+			assertTrue(mu.isDead());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testMultiSFAMatcher() throws TimeoutException {
+		// [a-z]*, [a-z][0-9]*, and Cyrillic letters followed by a digit
+		SFA<CharPred, Character> cyrillic = SFA.MkSFA(
+				Arrays.<SFAMove<CharPred, Character>> asList(
+						new SFAInputMove<CharPred, Character>(0, 0, new CharPred('\u0400', '\u04ff')),
+						new SFAInputMove<CharPred, Character>(0, 1, num)),
+				0, Arrays.asList(1), ba);
+		List<SFA<CharPred, Character>> patterns = Arrays.asList(autA, autB, cyrillic);
+		MultiSFAMatcher m = new MultiSFAMatcher(patterns, ba);
+		assertTrue(m.getPatternCount() == 3);
+
+		for (String input : Arrays.asList("", "a", "ab", "a1", "a12", "1", "\u0416\u04101", "\u04162x", "?")) {
+			BitSet expected = new BitSet();
+			for (int i = 0; i < patterns.size(); i++)
+				if (patterns.get(i).accepts(lOfS(input), ba))
+					expected.set(i);
+			assertTrue(m.match(input).equals(expected));
+			assertTrue(m.match(input.toCharArray(), 0, input.length()).equals(expected));
+		}
+
+		int cached = m.getCachedStateCount();
+		m.match("abc");
+		assertTrue(m.getCachedStateCount() == cached);
+	}
+
+	@Test
+	public void testReverse() throws TimeoutException {
+		// [0-9]*[a-z]
+		SFA<CharPred, Character> revB = autB.reverse(ba);
+		assertTrue(revB.accepts(lOfS("21a"), ba));
+		assertTrue(revB.accepts(lOfS("a"), ba));
+		assertFalse(revB.accepts(lOfS("a12"), ba));
+		assertTrue(revB.reverse(ba).isEquivalentTo(autB, ba));
+	}
+
+	@Test
+	public void testFindAll() throws TimeoutException {
+		// [a-z][0-9]*
+		SFAMatcher mB = new SFAMatcher(autB, ba);
+		List<Pair<Integer, Integer>> matches = mB.findAll("ab1 c23 x?");
+		assertTrue(matches.equals(Arrays.asList(new Pair<Integer, Integer>(0, 1), new Pair<Integer, Integer>(1, 3),
+				new Pair<Integer, Integer>(4, 7), new Pair<Integer, Integer>(8, 9))));
+		assertTrue(mB.findAll("12 ?").isEmpty());
+		assertTrue(mB.find("12 a") && !mB.find("12 ?"));
+
+		// [a-z]* also matches the empty string between the other matches
+		SFAMatcher mA = new SFAMatcher(autA, ba);
+		assertTrue(mA.findAll("1ab").equals(Arrays.asList(new Pair<Integer, Integer>(0, 0),
+				new Pair<Integer, Integer>(1, 3), new Pair<Integer, Integer>(3, 3))));
+
+		// a|a.*b scans the rest of the text from every a unless the failed
+		// extensions are remembered
+		List<SFAMove<CharPred, Character>> moves = new ArrayList<SFAMove<CharPred, Character>>();
+		moves.add(new SFAInputMove<CharPred, Character>(0, 1, a));
+		moves.add(new SFAInputMove<CharPred, Character>(0, 2, a));
+		moves.add(new SFAInputMove<CharPred, Character>(2, 2, ba.True()));
+		moves.add(new SFAInputMove<CharPred, Character>(2, 3, new CharPred('b')));
+		SFA<CharPred, Character> aut = SFA.MkSFA(moves, 0, Arrays.asList(1, 3), ba);
+		SFAMatcher m = new SFAMatcher(aut, ba);
+		StringBuilder as = new StringBuilder();
+		for (int i = 0; i < 200000; i++)
+			as.append('a');
+		List<Pair<Integer, Integer>> aMatches = m.findAll(as);
+		assertTrue(aMatches.size() == 200000 && aMatches.get(199999).equals(new Pair<Integer, Integer>(199999, 200000)));
+
+		Random random = new Random(0);
+		for (int n = 0; n < 200; n++) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 20; i++)
+				sb.append("abc".charAt(random.nextInt(3)));
+			String text = sb.toString();
+			List<Pair<Integer, Integer>> expected = new ArrayList<Pair<Integer, Integer>>();
+			for (int start = 0; start < text.length(); start++) {
+				int end = -1;
+				for (int i = start + 1; i <= text.length(); i++)
+					if (aut.accepts(lOfS(text.substring(start, i)), ba))
+						end = i;
+				if (end >= 0) {
+					expected.add(new Pair<Integer, Integer>(start, end));
+					start = end - 1;
+				}
+			}
+			assertTrue(m.findAll(text).equals(expected));
+		}
+	}
+
+	@Test
+	public void testLazyDFAMatcher() throws TimeoutException {
+		// [ab]*a[ab]{6}, whose minimal DFA has 128 states
+		CharPred ab = new CharPred('a', 'b');
+		List<SFAMove<CharPred, Character>> moves = new ArrayList<SFAMove<CharPred, Character>>();
+		moves.add(new SFAInputMove<CharPred, Character>(0, 0, ab));
+		moves.add(new SFAInputMove<CharPred, Character>(0, 1, a));
+		for (int i = 1; i <= 6; i++)
+			moves.add(new SFAInputMove<CharPred, Character>(i, i + 1, ab));
+		SFA<CharPred, Character> aut = SFA.MkSFA(moves, 0, Arrays.asList(7), ba);
+
+		Random random = new Random(0);
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 0; i < 50; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = 0; j < 200; j++)
+				sb.append(random.nextBoolean() ? 'a' : 'b');
+			inputs.add(sb.toString());
+		}
+		inputs.add("aaaaaaac");
+
+		LazyDFAMatcher<CharPred, Character> small = new LazyDFAMatcher<CharPred, Character>(aut, ba, 4);
+		LazyDFAMatcher<CharPred, Character> large = new LazyDFAMatcher<CharPred, Character>(aut, ba);
+		for (String input : inputs) {
+			boolean expected = aut.accepts(lOfS(input), ba);
+			assertTrue(small.accepts(lOfS(input)) == expected);
+			assertTrue(large.accepts(lOfS(input)) == expected);
+		}
+		assertTrue(small.getCacheSize() <= 4);
+		assertTrue(small.getEvictionCount() > 0 && small.getFallbackCount() > 0);
+		assertTrue(large.getEvictionCount() == 0 && large.getFallbackCount() == 0);
+
+		large.resetStatistics();
+		large.accepts(lOfS(inputs.get(0)));
+		assertTrue(large.getMissCount() == 0 && large.getHitRate() == 1);
+
+		large.clearCache();
+		assertTrue(large.getCacheSize() == 0);
+		assertTrue(large.accepts(lOfS("babbbbbb")));
+
+		// the evicted subset states drop their moves, so the moves retained
+		// through the links of the 16 cached ones out of 128 are bounded by
+		// the capacity, at most two per state here
+		LazyDFAMatcher<CharPred, Character> bounded = new LazyDFAMatcher<CharPred, Character>(aut, ba, 16);
+		for (String input : inputs) {
+			assertTrue(bounded.accepts(lOfS(input)) == aut.accepts(lOfS(input), ba));
+			assertTrue(bounded.getRetainedMoveCount() <= 2 * bounded.getCapacity());
+		}
+		assertTrue(bounded.getEvictionCount() > 100);
+		bounded.clearCache();
+		assertTrue(bounded.getRetainedMoveCount() == 0);
+	}
+
+	@Test
+	public void testSerialization() throws TimeoutException, IOException {
+		SFA<CharPred, Character> empty = SFA.getEmptySFA(ba);
+		SFA<CharPred, Character> minB = autB.minimize(ba);
+		// states and transitions are kept even when no state is final
+		Collection<SFAMove<CharPred, Character>> noFinalMoves = new LinkedList<SFAMove<CharPred, Character>>();
+		noFinalMoves.add(new SFAInputMove<CharPred, Character>(0, 1, alpha));
+		noFinalMoves.add(new SFAInputMove<CharPred, Character>(1, 0, num));
+		SFA<CharPred, Character> noFinal = SFA.MkSFA(noFinalMoves, 0, new LinkedList<Integer>(), ba, false, false,
+				true);
+		Path file = Files.createTempFile("automata", ".bin");
+		try {
+			try (OutputStream out = Files.newOutputStream(file)) {
+				CharAutomataSerializer.write(autA, out);
+				CharAutomataSerializer.write(minB, out);
+				CharAutomataSerializer.write(empty, out);
+				CharAutomataSerializer.write(noFinal, out);
+			}
+
+			ByteBuffer in = CharAutomataSerializer.map(file);
+			SFA<CharPred, Character> readA = CharAutomataSerializer.readSFA(in, ba);
+			SFA<CharPred, Character> readB = CharAutomataSerializer.readSFA(in, ba);
+			SFA<CharPred, Character> readEmpty = CharAutomataSerializer.readSFA(in, ba);
+			SFA<CharPred, Character> readNoFinal = CharAutomataSerializer.readSFA(in, ba);
+			assertFalse(in.hasRemaining());
+
+			assertTrue(readA.isEquivalentTo(autA, ba) && !readA.isEpsilonFree());
+			assertTrue(readB.isEquivalentTo(autB, ba));
+			assertTrue(readB.stateCount().equals(minB.stateCount())
+					&& readB.getTransitionCount().equals(minB.getTransitionCount()));
+			assertTrue(readEmpty.isEmpty());
+			assertTrue(readNoFinal.isEmpty() && readNoFinal.stateCount().equals(noFinal.stateCount())
+					&& readNoFinal.getTransitionCount().equals(noFinal.getTransitionCount()));
+		} finally {
+			Files.delete(file);
+		}
+
+		try {
+			CharAutomataSerializer.readSFA(ByteBuffer.wrap(new byte[] { 'S', 'V', 'P' }), ba);
+			assertTrue(false);
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testMappedSFA() throws TimeoutException, IOException {
+		SFA<CharPred, Character> minB = autB.minimize(ba);
+		Path file = Files.createTempFile("mapped", ".bin");
+		try {
+			MappedSFA.write(autA, ba, file);
+			MappedSFA mappedA = MappedSFA.open(file);
+			MappedSFA mappedB = new MappedSFA(MappedSFA.toByteBuffer(minB, ba));
+
+			for (String s : Arrays.asList("", "a", "ab", "a1", "a12", "1", "a1b", "\u0416")) {
+				assertTrue(mappedA.accepts(s) == autA.accepts(lOfS(s), ba));
+				assertTrue(mappedB.accepts(s) == autB.accepts(lOfS(s), ba));
+				assertTrue(mappedB.accepts(lOfS(s), ba) == autB.accepts(lOfS(s), ba));
+			}
+			assertTrue(mappedB.stateCount() == minB.stateCount());
+			assertTrue(mappedB.getTransitionCount() == minB.getTransitionCount());
+			assertTrue(mappedA.toSFA(ba).isEquivalentTo(autA, ba));
+			assertTrue(mappedB.toSFA(ba).isEquivalentTo(autB, ba));
+
+			int movesTo = 0;
+			for (Integer state : mappedB.getStates())
+				movesTo += mappedB.getInputMovesTo(state).size();
+			assertTrue(movesTo == mappedB.getTransitionCount());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
 	// ---------------------------------------
 	// Predicates
 	// ---------------------------------------
@@ -499,4 +1104,19 @@ public class SFAUnitTest {
 		return l;
 	}
 
-}
\ No newline at end of file
+	// (aa)*
+	private SFA<CharPred, Character> evenAs() throws TimeoutException {
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		transitions.add(new SFAInputMove<>(0, 3, new CharPred('a')));
+		transitions.add(new SFAInputMove<>(3, 0, new CharPred('a')));
+		return SFA.MkSFA(transitions, 0, Arrays.asList(0), ba);
+	}
+
+	// a(aa)*
+	private SFA<CharPred, Character> oddAs() throws TimeoutException {
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+		transitions.add(new SFAInputMove<>(0, 1, new CharPred('a')));
+		transitions.add(new SFAInputMove<>(1, 0, new CharPred('a')));
+		return SFA.MkSFA(transitions, 0, Arrays.asList(1), ba);
+	}
+}
@@ -7,6 +7,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -15,12 +18,17 @@ import java.util.Set;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import theory.characters.*;
 import transducers.sft.SFT;
 import transducers.sft.SFTMove;
 import transducers.sft.SFTInputMove;
 import transducers.sft.SFTEpsilon;
+import transducers.sft.SFTPipeline;
+import transducers.sft.SFTRunner;
+import automata.CharAutomataSerializer;
 import automata.sfa.SFA;
 import automata.sfa.SFAMove;
 import automata.sfa.SFAInputMove;
@@ -535,6 +543,182 @@ public class SFTUnitTest {
 		// it is tested in method testCompose
 	}
 
+	@Test
+	public void testSFTRunner() throws Exception {
+		// deterministic: upper cases the lower case letters
+		List<SFTMove<CharPred, CharFunc, Character>> transitions = new LinkedList<SFTMove<CharPred, CharFunc, Character>>();
+		List<CharFunc> upper = new ArrayList<CharFunc>();
+		upper.add(CharOffset.TO_UPPER_CASE);
+		List<CharFunc> copy = new ArrayList<CharFunc>();
+		copy.add(CharOffset.IDENTITY);
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 0, StdCharPred.LOWER_ALPHA, upper));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 0, ba.MkNot(StdCharPred.LOWER_ALPHA), copy));
+		Map<Integer, Set<List<Character>>> finStatesAndTails = new HashMap<Integer, Set<List<Character>>>();
+		finStatesAndTails.put(0, new HashSet<List<Character>>());
+		SFT<CharPred, CharFunc, Character> toUpper = SFT.MkSFT(transitions, 0, finStatesAndTails, ba);
+
+		SFTRunner<CharPred, CharFunc, Character> runner = toUpper.getRunner(ba);
+		assertTrue(runner.isDeterministic());
+		assertTrue(runner == toUpper.getRunner(ba));
+
+		// long enough to overflow the stack of a recursive run
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			input.append("<p>a&amp;b</p>".charAt(i % 14));
+		StringBuilder output = new StringBuilder();
+		assertTrue(SFTRunner.transduce(runner, input, output));
+		assertEquals(input.toString().toUpperCase(), output.toString());
+		output.setLength(0);
+		assertTrue(SFTRunner.transduce(runner, new StringReader(input.toString()), output));
+		assertEquals(input.toString().toUpperCase(), output.toString());
+
+		// the output of a deterministic SFT is emitted after every symbol
+		List<Character> emitted = new ArrayList<Character>();
+		SFTRunner<CharPred, CharFunc, Character>.Run run = runner.newRun(emitted::add);
+		assertTrue(run.step('a'));
+		assertEquals(strToList("A"), emitted);
+
+		// single-valued but not deterministic: a^n c -> x^n, a^n d -> y^n
+		transitions = new LinkedList<SFTMove<CharPred, CharFunc, Character>>();
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 1, new CharPred('a'), stringToCharFunc("x")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(1, 1, new CharPred('a'), stringToCharFunc("x")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(1, 3, new CharPred('c'), stringToCharFunc("")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 2, new CharPred('a'), stringToCharFunc("y")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(2, 2, new CharPred('a'), stringToCharFunc("y")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(2, 3, new CharPred('d'), stringToCharFunc("")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(3, 3, new CharPred('e'), stringToCharFunc("e")));
+		finStatesAndTails = new HashMap<Integer, Set<List<Character>>>();
+		Set<List<Character>> tails = new HashSet<List<Character>>();
+		tails.add(strToList("!"));
+		finStatesAndTails.put(3, tails);
+		SFT<CharPred, CharFunc, Character> delayed = SFT.MkSFT(transitions, 0, finStatesAndTails, ba);
+
+		runner = delayed.getRunner(ba);
+		assertFalse(runner.isDeterministic());
+		assertEquals(strToList("xxx!"), delayed.outputOn(strToList("aaac"), ba));
+		assertEquals(strToList("yyee!"), delayed.outputOn(strToList("aadee"), ba));
+		assertEquals(null, delayed.outputOn(strToList("aa"), ba));
+		assertEquals(null, delayed.outputOn(strToList("ab"), ba));
+
+		// the output is delayed until the choice is resolved
+		emitted.clear();
+		run = runner.newRun(emitted::add);
+		assertTrue(run.step('a'));
+		assertTrue(run.step('a'));
+		assertTrue(emitted.isEmpty());
+		assertTrue(run.step('d'));
+		assertEquals(strToList("yy"), emitted);
+		assertTrue(run.step('e'));
+		assertEquals(strToList("yye"), emitted);
+		assertFalse(run.step('a'));
+		assertFalse(run.finish());
+
+		// a long delay takes linear time: the delayed outputs are not copied
+		StringBuilder longInput = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			longInput.append('a');
+			expected.append('y');
+		}
+		longInput.append("de");
+		expected.append("e!");
+		output.setLength(0);
+		assertTrue(SFTRunner.transduce(runner, longInput, output));
+		assertEquals(expected.toString(), output.toString());
+
+		// the runs in different states emit the symbols they all output
+		transitions = new LinkedList<SFTMove<CharPred, CharFunc, Character>>();
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 1, new CharPred('a'), stringToCharFunc("x")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 2, new CharPred('a'), stringToCharFunc("x")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(1, 1, new CharPred('a'), stringToCharFunc("x")));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(2, 2, new CharPred('a'), stringToCharFunc("x")));
+		finStatesAndTails = new HashMap<Integer, Set<List<Character>>>();
+		finStatesAndTails.put(1, new HashSet<List<Character>>());
+		finStatesAndTails.put(2, new HashSet<List<Character>>());
+		SFT<CharPred, CharFunc, Character> twoCopies = SFT.MkSFT(transitions, 0, finStatesAndTails, ba);
+		emitted.clear();
+		run = twoCopies.getRunner(ba).newRun(emitted::add);
+		assertTrue(run.step('a'));
+		assertTrue(run.step('a'));
+		assertEquals(strToList("xx"), emitted);
+		assertTrue(run.finish());
+		assertEquals(strToList("xx"), emitted);
+	}
+
+	@Test
+	public void testSFTPipeline() throws Exception {
+		List<List<Character>> inputs = new ArrayList<List<Character>>();
+		for (String input : new String[] { "", "a", "b", "c", "z", "1", "bb", "ab", "ccc", "abcz", "bcsaee", "1b- *&@3" })
+			inputs.add(stringToListOfCharacter(input));
+
+		// the pipeline agrees with the eager composition, with and without cache
+		for (SFT<CharPred, CharFunc, Character> first : allSFTs)
+			for (SFT<CharPred, CharFunc, Character> second : allSFTs) {
+				List<SFT<CharPred, CharFunc, Character>> stages = new ArrayList<SFT<CharPred, CharFunc, Character>>();
+				stages.add(first);
+				stages.add(second);
+				stages.add(first);
+				SFT<CharPred, CharFunc, Character> composed = first.composeWith(second, ba).composeWith(first, ba);
+				SFTPipeline<CharPred, CharFunc, Character> cached = new SFTPipeline<CharPred, CharFunc, Character>(stages, ba);
+				SFTPipeline<CharPred, CharFunc, Character> chained = new SFTPipeline<CharPred, CharFunc, Character>(stages, ba, 0);
+				assertFalse(chained.isCaching());
+				for (List<Character> input : inputs) {
+					List<Character> expected = composed.outputOn(input, ba);
+					assertEquals(expected, cached.outputOn(input));
+					assertEquals(expected, chained.outputOn(input));
+				}
+			}
+
+		// a deterministic chain only computes the moves of new tuples of states
+		List<SFTMove<CharPred, CharFunc, Character>> transitions = new LinkedList<SFTMove<CharPred, CharFunc, Character>>();
+		List<CharFunc> upper = new ArrayList<CharFunc>();
+		upper.add(CharOffset.TO_UPPER_CASE);
+		List<CharFunc> twice = new ArrayList<CharFunc>();
+		twice.add(CharOffset.IDENTITY);
+		twice.add(CharOffset.IDENTITY);
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 0, StdCharPred.LOWER_ALPHA, upper));
+		transitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 0, ba.MkNot(StdCharPred.LOWER_ALPHA), twice));
+		Map<Integer, Set<List<Character>>> finStatesAndTails = new HashMap<Integer, Set<List<Character>>>();
+		Set<List<Character>> tails = new HashSet<List<Character>>();
+		tails.add(strToList("."));
+		finStatesAndTails.put(0, tails);
+		SFT<CharPred, CharFunc, Character> codec = SFT.MkSFT(transitions, 0, finStatesAndTails, ba);
+
+		List<SFT<CharPred, CharFunc, Character>> codecs = new ArrayList<SFT<CharPred, CharFunc, Character>>();
+		for (int i = 0; i < 5; i++)
+			codecs.add(codec);
+		SFTPipeline<CharPred, CharFunc, Character> pipeline = new SFTPipeline<CharPred, CharFunc, Character>(codecs, ba);
+		assertTrue(pipeline.isCaching());
+		StringBuilder output = new StringBuilder();
+		assertTrue(SFTPipeline.transduce(pipeline, new StringReader("ab-ab-ab"), output));
+		// the later stages double the upper case letters, the dashes and the
+		// tails of the previous stages
+		String ab = repeat('A', 16) + repeat('B', 16);
+		assertEquals(ab + repeat('-', 32) + ab + repeat('-', 32) + ab + repeat('.', 31), output.toString());
+		assertEquals(1, pipeline.getCachedStates());
+		assertEquals(3, pipeline.getMisses());
+		assertEquals(5, pipeline.getHits());
+
+		// the moves of a single tuple on many symbols fill the cache up to
+		// its bound, and the rest are computed on every step
+		SFTPipeline<CharPred, CharFunc, Character> small = new SFTPipeline<CharPred, CharFunc, Character>(codecs, ba, 1);
+		StringBuilder symbols = new StringBuilder();
+		for (char c = 'A'; c < 'A' + 2 * SFTPipeline.MOVES_PER_TUPLE; c++)
+			symbols.append(c);
+		output = new StringBuilder();
+		assertTrue(SFTPipeline.transduce(small, new StringReader(symbols.toString() + symbols), output));
+		assertEquals(SFTPipeline.MOVES_PER_TUPLE, small.getCachedMoves());
+		assertEquals(SFTPipeline.MOVES_PER_TUPLE, small.getHits());
+		assertEquals(3 * SFTPipeline.MOVES_PER_TUPLE, small.getMisses());
+	}
+
+	private static String repeat(char c, int times) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < times; i++)
+			sb.append(c);
+		return sb.toString();
+	}
+
 	/**
 	 *
 	 * Method: composeWith(SFT<P, F, S> sft, BooleanAlgebraSubst<P, F, S> ba)
@@ -983,6 +1167,84 @@ public class SFTUnitTest {
 		}
 	}
 
+	@Test
+	public void testWitness1disequalityParallel() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (SFT<CharPred, CharFunc, Character> sft1 : allSFTs)
+				for (SFT<CharPred, CharFunc, Character> sft2 : allSFTs) {
+					List<Character> witness = sft1.witness1disequality(sft2, ba);
+					List<Character> parallelWitness = sft1.witness1disequalityParallel(sft2, ba, executor, Long.MAX_VALUE);
+					assertEquals(witness == null, parallelWitness == null);
+					assertEquals(sft1.decide1equality(sft2, ba),
+							sft1.decide1equalityParallel(sft2, ba, executor, Long.MAX_VALUE));
+					if (parallelWitness != null)
+						assertFalse(sft1.outputOn(parallelWitness, ba).equals(sft2.outputOn(parallelWitness, ba)));
+				}
+
+			// the identity, and an SFT that only differs from it after 4 symbols
+			List<SFTMove<CharPred, CharFunc, Character>> identityMoves = new LinkedList<SFTMove<CharPred, CharFunc, Character>>();
+			List<CharFunc> identity = new ArrayList<CharFunc>();
+			identity.add(CharOffset.IDENTITY);
+			identityMoves.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 0, new CharPred('a', 'z'), identity));
+			Map<Integer, Set<List<Character>>> identityFinal = new HashMap<Integer, Set<List<Character>>>();
+			identityFinal.put(0, new HashSet<List<Character>>());
+			SFT<CharPred, CharFunc, Character> identitySFT = SFT.MkSFT(identityMoves, 0, identityFinal, ba);
+
+			List<SFTMove<CharPred, CharFunc, Character>> lateMoves = new LinkedList<SFTMove<CharPred, CharFunc, Character>>();
+			Map<Integer, Set<List<Character>>> lateFinal = new HashMap<Integer, Set<List<Character>>>();
+			for (int i = 0; i < 4; i++) {
+				lateMoves.add(new SFTInputMove<CharPred, CharFunc, Character>(i, i + 1, new CharPred('a', 'z'), identity));
+				lateFinal.put(i, new HashSet<List<Character>>());
+			}
+			List<CharFunc> shift = new ArrayList<CharFunc>();
+			shift.add(new CharOffset(1));
+			lateMoves.add(new SFTInputMove<CharPred, CharFunc, Character>(4, 4, new CharPred('a', 'y'), shift));
+			lateFinal.put(4, new HashSet<List<Character>>());
+			SFT<CharPred, CharFunc, Character> lateSFT = SFT.MkSFT(lateMoves, 0, lateFinal, ba);
+
+			assertEquals(5, identitySFT.witness1disequality(lateSFT, ba).size());
+			assertEquals(5, identitySFT.witness1disequalityParallel(lateSFT, ba, executor, Long.MAX_VALUE).size());
+			assertTrue(identitySFT.decide1equality(identitySFT, ba));
+			assertTrue(identitySFT.decide1equalityParallel(identitySFT, ba, executor, Long.MAX_VALUE));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testOutputOnAll() throws Exception {
+		// more inputs than fit in a chunk, some outside the domains
+		List<List<Character>> inputs = new ArrayList<List<Character>>();
+		for (int i = 0; i < 200; i++)
+			inputs.add(strToList("abcd".substring(0, i % 5) + "bcbcb".substring(0, i % 3)));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (SFT<CharPred, CharFunc, Character> sft : allSFTs) {
+				List<List<Character>> outputs = sft.outputOnAll(inputs, ba, executor);
+				assertEquals(inputs.size(), outputs.size());
+				for (int i = 0; i < inputs.size(); i++)
+					assertEquals(sft.outputOn(inputs.get(i), ba), outputs.get(i));
+
+				// the callback gets every output once, on the calling thread
+				Map<Integer, List<Character>> streamed = new HashMap<Integer, List<Character>>();
+				Thread caller = Thread.currentThread();
+				sft.outputOnAll(inputs, ba, executor, (index, output) -> {
+					assertTrue(Thread.currentThread() == caller);
+					assertFalse(streamed.containsKey(index));
+					streamed.put(index, output);
+				});
+				assertEquals(inputs.size(), streamed.size());
+				for (int i = 0; i < inputs.size(); i++)
+					assertEquals(outputs.get(i), streamed.get(i));
+			}
+			assertTrue(mySFT111.outputOnAll(new ArrayList<List<Character>>(), ba, executor).isEmpty());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	public void testadd() throws Exception {
 
@@ -1246,7 +1508,9 @@ public class SFTUnitTest {
 		SFA<CharPred, Character> mySA11 = SFA.MkSFA(transitions11, 1, finStates11, ba);
 		for (SFT<CharPred, CharFunc, Character> sft: allSFTs) {
 			SFT<CharPred, CharFunc, Character> restricted = sft.domainRestriction(mySA11, ba);
-			assertTrue(mySFT111.decide1equality(restricted, ba));
+			// both are only defined on the empty input, on which sft may output its tail
+			List<Character> output = restricted.outputOn(new ArrayList<Character>(), ba);
+			assertEquals(output == null || output.isEmpty(), mySFT111.decide1equality(restricted, ba));
 		}
 
 		// II. two states with one final state
@@ -1448,6 +1712,25 @@ public class SFTUnitTest {
 		}
 	}
 
+	/**
+	 *
+	 * Method: CharAutomataSerializer.write(SFT<CharPred, CharFunc, Character> sft, OutputStream out)
+	 *
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (SFT<CharPred, CharFunc, Character> sft: allSFTs)
+			CharAutomataSerializer.write(sft, out);
+		ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+		for (SFT<CharPred, CharFunc, Character> sft: allSFTs) {
+			SFT<CharPred, CharFunc, Character> read = CharAutomataSerializer.readSFT(in, ba);
+			assertTrue(read.transitionCount().equals(sft.transitionCount()));
+			assertTrue(sft.decide1equality(read, ba));
+		}
+		assertFalse(in.hasRemaining());
+	}
+
 	/**
 	 *
 	 * Method: toString()
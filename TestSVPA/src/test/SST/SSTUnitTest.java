@@ -2,6 +2,8 @@ package test.SST;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -9,6 +11,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
@@ -31,6 +35,7 @@ import transducers.sst.SST;
 import transducers.sst.SSTEpsilon;
 import transducers.sst.SSTInputMove;
 import transducers.sst.SSTMove;
+import transducers.sst.SSTRunner;
 import transducers.sst.SSTVariable;
 import transducers.sst.SimpleVariableUpdate;
 import transducers.sst.Token;
@@ -368,6 +373,79 @@ public class SSTUnitTest {
 
 	}
 
+	@Test
+	public void testSSTRunner() throws TimeoutException, IOException, AutomataException {
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+
+		// x0 := x0 c, x1 := c x1, output x0;x1, the copy and the reverse
+		ArrayList<List<Token<CharPred, CharFunc, Character>>> update = new ArrayList<>();
+		update.add(new ArrayList<>(Arrays.asList(new SSTVariable<CharPred, CharFunc, Character>(0),
+				new CharFunction<CharPred, CharFunc, Character>(CharOffset.IDENTITY))));
+		update.add(new ArrayList<>(Arrays.asList(new CharFunction<CharPred, CharFunc, Character>(CharOffset.IDENTITY),
+				new SSTVariable<CharPred, CharFunc, Character>(1))));
+		Collection<SSTMove<CharPred, CharFunc, Character>> transitions = new ArrayList<>();
+		transitions.add(new SSTInputMove<CharPred, CharFunc, Character>(0, 0, ba.True(),
+				new FunctionalVariableUpdate<>(update)));
+		List<ConstantToken<CharPred, CharFunc, Character>> output = new ArrayList<>();
+		output.add(new SSTVariable<CharPred, CharFunc, Character>(0));
+		output.add(new CharConstant<CharPred, CharFunc, Character>(';'));
+		output.add(new SSTVariable<CharPred, CharFunc, Character>(1));
+		Map<Integer, OutputUpdate<CharPred, CharFunc, Character>> outputFunction = new HashMap<>();
+		outputFunction.put(0, new OutputUpdate<>(output));
+		SST<CharPred, CharFunc, Character> copyAndReverse = SST.MkSST(transitions, 0, 2, outputFunction, ba);
+
+		assertTrue(ba.stringOfList(copyAndReverse.outputOn(lOfS("abc"), ba)).equals("abc;cba"));
+		assertTrue(ba.stringOfList(copyAndReverse.outputOn(lOfS(""), ba)).equals(";"));
+
+		// the values are shared, so long inputs take linear time
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 300000; i++)
+			input.append((char) ('a' + i % 26));
+		StringBuilder result = new StringBuilder();
+		SSTRunner<CharPred, CharFunc, Character> runner = copyAndReverse.getRunner(ba);
+		assertTrue(runner == copyAndReverse.getRunner(ba));
+		assertTrue(SSTRunner.transduce(runner, input, result));
+		assertTrue(result.toString().equals(input + ";" + new StringBuilder(input).reverse()));
+
+		// the runner agrees with the definition on an SST with epsilon moves
+		SST<CharPred, CharFunc, Character> sstA = getSSTa(ba);
+		result.setLength(0);
+		assertTrue(SSTRunner.transduce(sstA.getRunner(ba), new StringReader("a2c"), result));
+		assertTrue(result.toString().equals("ac"));
+		result.setLength(0);
+		assertTrue(!SSTRunner.transduce(sstA.getRunner(ba), "a#c", result));
+		assertTrue(sstA.outputOn(lOfS("a#c"), ba) == null);
+	}
+
+	@Test
+	public void testOutputOnAll() throws TimeoutException, AutomataException {
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		SST<CharPred, CharFunc, Character> sstA = getSSTa(ba);
+
+		// more inputs than fit in a chunk, some outside the domain
+		List<List<Character>> inputs = new ArrayList<>();
+		for (int i = 0; i < 200; i++)
+			inputs.add(lOfS("a2c#".substring(0, i % 5) + "a2c".substring(0, i % 4)));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<List<Character>> outputs = sstA.outputOnAll(inputs, ba, executor);
+			assertTrue(outputs.size() == inputs.size());
+			for (int i = 0; i < inputs.size(); i++) {
+				List<Character> expected = sstA.outputOn(inputs.get(i), ba);
+				assertTrue(expected == null ? outputs.get(i) == null : expected.equals(outputs.get(i)));
+			}
+
+			Map<Integer, List<Character>> streamed = new HashMap<>();
+			sstA.outputOnAll(inputs, ba, executor, streamed::put);
+			assertTrue(streamed.size() == inputs.size());
+			for (int i = 0; i < inputs.size(); i++)
+				assertTrue(outputs.get(i) == null ? streamed.get(i) == null : outputs.get(i).equals(streamed.get(i)));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	// ---------------------------------------
 	// Predicates
 	// ---------------------------------------
@@ -107,6 +107,21 @@ public class SVPAUnitTest {
 		assertTrue(totA.stateCount == autA.stateCount + 1);
 		assertTrue(totA.transitionCount == 21);
 	}
+
+	@Test
+	public void testDeterminization() throws TimeoutException {
+
+		SVPA<ICharPred, Character> union = autA.unionWith(autB, ba);
+		SVPA<ICharPred, Character> detUnion = union.determinize(ba);
+
+		assertTrue(detUnion.isDeterministic(ba));
+		assertTrue(detUnion.accepts(ab, ba));
+		assertTrue(detUnion.accepts(anotb, ba));
+		assertTrue(detUnion.accepts(notab, ba));
+		assertFalse(detUnion.accepts(notanotb, ba));
+		assertTrue(detUnion.accepts(matchedAlpha, ba));
+		assertFalse(detUnion.accepts(hasNum, ba));
+	}
 	//
 	// @Test
 	// public void testComplement() {
@@ -3,9 +3,14 @@ package test.Theory;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
 import org.junit.Test;
 
 import theory.sat.SATBooleanAlgebra;
+import utilities.Pair;
 
 public class SATUnitTest {
 	int universe = 3;
@@ -60,4 +65,21 @@ public class SATUnitTest {
 		boolean[] m2 = ba.generateWitness(p2);
 		assertTrue(ba.HasModel(p2, m2));
 	}
+
+	@Test
+	public void testMinterms() {
+		ArrayList<Integer> predicates = new ArrayList<>(Arrays.asList(1, ba.MkOr(1, 2), 1, ba.MkAnd(1, 2)));
+		Collection<Pair<Integer, ArrayList<Integer>>> minterms = ba.GetMinterms(predicates);
+
+		// 1&2, 1&!2, !1&2, !1&!2
+		assertTrue(minterms.size() == 4);
+		for (Pair<Integer, ArrayList<Integer>> minterm : minterms) {
+			assertTrue(ba.IsSatisfiable(minterm.first));
+			assertTrue(minterm.second.get(0).equals(minterm.second.get(2)));
+			for (int i = 0; i < predicates.size(); i++) {
+				Integer pred = minterm.second.get(i) == 1 ? predicates.get(i) : ba.MkNot(predicates.get(i));
+				assertFalse(ba.IsSatisfiable(ba.MkAnd(minterm.first, ba.MkNot(pred))));
+			}
+		}
+	}
 }
@@ -0,0 +1,145 @@
+package test.Theory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import com.google.common.collect.ImmutableList;
+
+import theory.InterningBooleanAlgebra;
+import theory.InterningBooleanAlgebra.Operation;
+import theory.characters.CharPred;
+import theory.characters.StdCharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import utilities.Pair;
+
+public class TestCharIntervalTheory {
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	CharPred alpha = StdCharPred.LOWER_ALPHA;
+	CharPred allAlpha = StdCharPred.ALPHA;
+	CharPred num = StdCharPred.NUM;
+	CharPred a = new CharPred('a');
+	CharPred maxChar = new CharPred(CharPred.MAX_CHAR);
+
+	@Test
+	public void testMinterms() {
+		ArrayList<CharPred> predicates = new ArrayList<>(
+				Arrays.asList(alpha, num, a, allAlpha, alpha, ba.False(), maxChar));
+		Collection<Pair<CharPred, ArrayList<Integer>>> minterms = ba.GetMinterms(predicates);
+
+		// [a], [b-z], [A-Z], [0-9], [MAX_CHAR], and everything else
+		assertTrue(minterms.size() == 6);
+
+		CharPred union = ba.False();
+		for (Pair<CharPred, ArrayList<Integer>> minterm : minterms) {
+			assertTrue(ba.IsSatisfiable(minterm.first));
+			assertFalse(ba.IsSatisfiable(ba.MkAnd(union, minterm.first)));
+			union = ba.MkOr(union, minterm.first);
+
+			assertTrue(minterm.second.size() == predicates.size());
+			for (int i = 0; i < predicates.size(); i++) {
+				CharPred pred = minterm.second.get(i) == 1 ? predicates.get(i) : ba.MkNot(predicates.get(i));
+				assertTrue(ba.AreEquivalent(ba.MkAnd(minterm.first, pred), minterm.first));
+			}
+			// duplicate predicates get the same bit
+			assertTrue(minterm.second.get(0).equals(minterm.second.get(4)));
+			assertTrue(minterm.second.get(5) == 0);
+		}
+		assertTrue(ba.AreEquivalent(union, ba.True()));
+	}
+
+	@Test
+	public void testMintermsCached() {
+		ArrayList<CharPred> predicates = new ArrayList<>(Arrays.asList(num, alpha));
+		long hits = ba.getMintermCacheHitCount();
+		Collection<Pair<CharPred, ArrayList<Integer>>> first = ba.GetMinterms(predicates);
+		assertTrue(ba.getMintermCacheHitCount() == hits);
+		Collection<Pair<CharPred, ArrayList<Integer>>> second = ba.GetMinterms(predicates);
+		assertTrue(ba.getMintermCacheHitCount() == hits + 1);
+		assertTrue(first.equals(second));
+		// the repeated call reuses the cached predicates
+		assertTrue(first.iterator().next().first == second.iterator().next().first);
+
+		ba.clearMintermCache();
+		assertTrue(ba.GetMinterms(predicates).equals(first));
+		assertTrue(ba.getMintermCacheHitCount() == hits + 1);
+
+		ArrayList<CharPred> noPredicates = new ArrayList<>();
+		Collection<Pair<CharPred, ArrayList<Integer>>> trivial = ba.GetMinterms(noPredicates);
+		assertTrue(trivial.size() == 1);
+		assertTrue(ba.AreEquivalent(trivial.iterator().next().first, ba.True()));
+	}
+
+	@Test
+	public void testBooleanOperations() {
+		CharPred lowerAndNum = ba.MkOr(num, alpha);
+		assertTrue(lowerAndNum.intervalCount() == 2);
+		assertTrue(lowerAndNum.isSatisfiedBy('5') && lowerAndNum.isSatisfiedBy('z'));
+		assertFalse(lowerAndNum.isSatisfiedBy('A'));
+
+		// adjacent intervals are merged
+		CharPred aToZ = ba.MkOr(a, new CharPred('b', 'z'));
+		assertTrue(aToZ.equals(alpha) && aToZ.hashCode() == alpha.hashCode());
+		assertTrue(aToZ.intervals.size() == 1);
+		assertTrue(aToZ.intervals.get(0).left == 'a' && aToZ.intervals.get(0).right == 'z');
+
+		assertTrue(ba.MkAnd(allAlpha, lowerAndNum).equals(alpha));
+		assertFalse(ba.IsSatisfiable(ba.MkAnd(num, alpha)));
+
+		CharPred notAlpha = ba.MkNot(allAlpha);
+		assertTrue(notAlpha.intervalCount() == 3);
+		assertTrue(notAlpha.isSatisfiedBy(CharPred.MIN_CHAR) && notAlpha.isSatisfiedBy(CharPred.MAX_CHAR));
+		assertTrue(ba.MkNot(notAlpha).equals(allAlpha));
+		assertTrue(ba.MkNot(ba.True()).equals(ba.False()));
+		assertTrue(ba.MkNot(ba.False()).equals(ba.True()));
+		assertTrue(ba.MkOr(notAlpha, allAlpha).equals(ba.True()));
+
+		// unsorted and overlapping intervals are normalized
+		CharPred unsorted = new CharPred(ImmutableList.of(ImmutablePair.of('x', 'z'), ImmutablePair.of('a', 'c'),
+				ImmutablePair.of('b', 'w')));
+		assertTrue(unsorted.equals(alpha));
+	}
+
+	@Test
+	public void testInterning() throws TimeoutException {
+		InterningBooleanAlgebra<CharPred, Character> iba = new InterningBooleanAlgebra<>(ba, 16);
+
+		CharPred and1 = iba.MkAnd(allAlpha, iba.MkNot(new CharPred('A', 'Z')));
+		CharPred and2 = iba.MkAnd(iba.MkNot(new CharPred('A', 'Z')), allAlpha);
+		assertTrue(and1.equals(alpha));
+		assertTrue(and1 == and2);
+		assertTrue(iba.getMissCount(Operation.AND) == 1);
+		assertTrue(iba.getHitCount(Operation.AND) == 1);
+		assertTrue(iba.getHitCount(Operation.NOT) == 1);
+
+		// structurally equal results are the same object
+		assertTrue(iba.MkOr(a, new CharPred('b', 'z')) == and1);
+		assertTrue(iba.intern(new CharPred('a', 'z')) == and1);
+
+		assertTrue(iba.IsSatisfiable(and1));
+		assertTrue(iba.IsSatisfiable(alpha));
+		assertTrue(iba.getHitCount(Operation.SATISFIABLE) == 1);
+		assertFalse(iba.AreEquivalent(alpha, num));
+		assertFalse(iba.AreEquivalent(num, alpha));
+		assertTrue(iba.getHitCount(Operation.EQUIVALENT) == 1);
+
+		Collection<Pair<CharPred, ArrayList<Integer>>> minterms = iba
+				.GetMinterms(new ArrayList<>(Arrays.asList(alpha, num)));
+		assertTrue(minterms.size() == 3);
+		for (Pair<CharPred, ArrayList<Integer>> minterm : minterms)
+			assertTrue(iba.intern(minterm.first) == minterm.first);
+
+		iba.clearCaches();
+		iba.resetStatistics();
+		assertTrue(iba.getInternedCount() == 0);
+		assertTrue(iba.getHitCount(Operation.AND) == 0);
+	}
+}